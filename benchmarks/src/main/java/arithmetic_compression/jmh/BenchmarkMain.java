@@ -0,0 +1,63 @@
+package arithmetic_compression.jmh;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+/**
+ * Runs the benchmarks like JMH's own main class, with the same command line
+ * options, and afterwards prints the results as ns/symbol and MB/s. All
+ * benchmarks report their score per symbol, i.e. per byte for the coders and
+ * transforms and per call for the bit streams, so MB/s is 1000 / score times
+ * the bytes per symbol.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers()
+				|| options.shouldListResultFormats() || options.shouldListWithParams()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		Collection<RunResult> results = new Runner(options).run();
+
+		System.out.println();
+		System.out.println(String.format(Locale.ROOT, "%-45s %-40s %12s %10s %10s", "benchmark", "params",
+				"ns/symbol", "error", "MB/s"));
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			Result<?> score = result.getPrimaryResult();
+
+			String name = params.getBenchmark();
+			name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+
+			StringBuilder param_str = new StringBuilder();
+			for (String key : params.getParamsKeys()) {
+				param_str.append(param_str.length() == 0 ? "" : ", ").append(key).append('=')
+						.append(params.getParam(key));
+			}
+
+			System.out.println(String.format(Locale.ROOT, "%-45s %-40s %12.3f %10.3f %10.1f", name, param_str,
+					score.getScore(), score.getScoreError(), bytes_per_symbol(params) * 1000 / score.getScore()));
+		}
+	}
+
+	/**
+	 * The bit stream benchmarks have a bits parameter, everything else codes
+	 * bytes.
+	 */
+	private static double bytes_per_symbol(BenchmarkParams params) {
+		String bits = params.getParam("bits");
+		return (bits == null) ? 1 : Integer.parseInt(bits) / 8.0;
+	}
+}
@@ -0,0 +1,100 @@
+package arithmetic_compression.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * BitOutputStream and BitInputStream on byte array streams, writing and
+ * reading CALL_COUNT many values of the given number of bits each. bits = 1
+ * takes the single-bit path, write(int) and read(), all others the multi-bit
+ * path, write(int, int) and read(int). Scores are ns per call; BenchmarkMain
+ * converts them to MB/s of bitstream with the bits parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(BitStreamBenchmark.CALL_COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitStreamBenchmark {
+
+	public static final int CALL_COUNT = 1 << 20;
+
+	@Param({"1", "8", "13", "32"})
+	int bits;
+
+	int[] values;
+
+	ByteArrayOutputStream bytes_out;
+
+	byte[] encoded;
+
+	@Setup
+	public void setup() {
+		Random rng = new Random(0);
+		values = new int[CALL_COUNT];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = rng.nextInt();
+		}
+
+		bytes_out = new ByteArrayOutputStream(CALL_COUNT * 4);
+		write();
+		encoded = bytes_out.toByteArray();
+	}
+
+	@Benchmark
+	public int write() {
+		bytes_out.reset();
+		BitOutputStream sink = new BitOutputStream(bytes_out);
+
+		if (bits == 1) {
+			for (int i = 0; i < values.length; i++) {
+				sink.write(values[i]);
+			}
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				sink.write(values[i], bits);
+			}
+		}
+		sink.flushAll();
+
+		return bytes_out.size();
+	}
+
+	@Benchmark
+	public int read() {
+		BitInputStream source = new BitInputStream(new ByteArrayInputStream(encoded));
+
+		int checksum = 0;
+		if (bits == 1) {
+			for (int i = 0; i < values.length; i++) {
+				checksum += source.read();
+			}
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				checksum += source.read(bits);
+			}
+		}
+
+		return checksum;
+	}
+}
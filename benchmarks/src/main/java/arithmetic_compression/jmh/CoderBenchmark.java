@@ -0,0 +1,100 @@
+package arithmetic_compression.jmh;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.ByteBufferBitInputStream;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
+
+/**
+ * Encoding and decoding of SYMBOL_COUNT many bytes with a static
+ * distribution, the histogram of the input, which is built in the setup.
+ * Scores are ns per symbol. The coder defaults to ARITHMETIC; any
+ * EntropyCoderType can be given with -p coder=RANGE,RANS_X4 etc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CoderBenchmark.SYMBOL_COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoderBenchmark {
+
+	public static final int SYMBOL_COUNT = 1 << 20;
+
+	@Param({"UNIFORM", "ZIPF", "GEOMETRIC", "SKEWED", "IMAGE_RESIDUALS"})
+	String input;
+
+	@Param({"ARITHMETIC"})
+	EntropyCoderType coder;
+
+	byte[] data;
+
+	SymbolProbabilityDistribution dist;
+
+	byte[] encoded;
+
+	byte[] decoded;
+
+	@Setup
+	public void setup() {
+		data = Inputs.create(input, SYMBOL_COUNT);
+		dist = new SymbolProbabilityDistribution(Inputs.histogram(data));
+
+		encoded = new byte[(int) coder.create(dist).max_encoded_size(SYMBOL_COUNT)];
+		encode();
+
+		decoded = new byte[SYMBOL_COUNT];
+		decode();
+		if (!Arrays.equals(data, decoded)) {
+			throw new IllegalStateException(coder + " fails to decode " + input);
+		}
+	}
+
+	/**
+	 * Returns the size of the encoded data.
+	 */
+	@Benchmark
+	public int encode() {
+		EntropyCoder encoder = coder.create(dist);
+		ByteBufferBitOutputStream sink = new ByteBufferBitOutputStream(encoded, 0, encoded.length);
+
+		for (int i = 0; i < data.length; i++) {
+			encoder.encode(data[i] & 0xff, sink);
+		}
+		encoder.finish_encoding(sink);
+		sink.flushAll();
+
+		return sink.buffer().position();
+	}
+
+	@Benchmark
+	public byte[] decode() {
+		EntropyCoder decoder = coder.create(dist);
+		ByteBufferBitInputStream source = new ByteBufferBitInputStream(encoded, 0, encoded.length);
+
+		decoder.start_decoding(source);
+		for (int i = 0; i < decoded.length; i++) {
+			decoded[i] = (byte) decoder.decode(source);
+		}
+
+		return decoded;
+	}
+}
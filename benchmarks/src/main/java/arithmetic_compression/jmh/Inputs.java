@@ -0,0 +1,183 @@
+package arithmetic_compression.jmh;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+
+import arithmetic_compression.ImageUtil;
+import arithmetic_compression.coder.DeltaCoder;
+import arithmetic_compression.coder.SubtractGreenTransform;
+import arithmetic_compression.coder.ZigzagCoder;
+
+/**
+ * The byte data the benchmarks run on, selected by name through a JMH
+ * parameter. The synthetic inputs are drawn from fixed distributions over 256
+ * symbols with a fixed seed, so they are the same in every run:
+ * <ul>
+ * <li>UNIFORM: all symbols equally likely, about 8 bits/symbol.</li>
+ * <li>ZIPF: p(k) proportional to 1 / (k + 1), about 6.2 bits/symbol.</li>
+ * <li>GEOMETRIC: p(k) proportional to 0.8^k, about 3.6 bits/symbol.</li>
+ * <li>SKEWED: symbol 0 with p = 0.99, the rest uniform, about 0.16
+ * bits/symbol.</li>
+ * </ul>
+ * IMAGE and IMAGE_RESIDUALS are the raw bytes of a real image and the
+ * residuals which DesktopApp feeds to the coder (subtract green, delta,
+ * zigzag). The image is the bundled one, or the file given by the system
+ * property benchmark.image.
+ */
+public class Inputs {
+
+	public static final String IMAGE_PROPERTY = "benchmark.image";
+
+	public static final String BUNDLED_IMAGE = "p1000238_cropped_1920.png";
+
+	/**
+	 * Returns len bytes of the named input; images are repeated or cut to
+	 * len.
+	 */
+	public static byte[] create(String name, int len) {
+		Random rng = new Random(0);
+
+		switch (name) {
+		case "UNIFORM":
+			return sample(rng, uniform(), len);
+		case "ZIPF":
+			return sample(rng, zipf(), len);
+		case "GEOMETRIC":
+			return sample(rng, geometric(0.8), len);
+		case "SKEWED":
+			return sample(rng, skewed(0.99), len);
+		case "IMAGE":
+			return repeat(image_bytes(false), len);
+		case "IMAGE_RESIDUALS":
+			return repeat(image_bytes(true), len);
+		default:
+			throw new IllegalArgumentException("unknown input " + name);
+		}
+	}
+
+	/**
+	 * Returns the image, 3 bytes per pixel.
+	 */
+	public static BufferedImage image() {
+		String path = System.getProperty(IMAGE_PROPERTY);
+
+		URL url;
+		if (path != null) {
+			try {
+				url = new File(path).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException("invalid " + IMAGE_PROPERTY + " " + path, e);
+			}
+		} else {
+			url = Inputs.class.getClassLoader().getResource(BUNDLED_IMAGE);
+		}
+
+		return ImageUtil.loadImage(url);
+	}
+
+	/**
+	 * Returns the w x h pixels at the top left of the image, 3 bytes per
+	 * pixel, row wise; the image is tiled if it is smaller.
+	 */
+	public static byte[] image_region(int w, int h) {
+		BufferedImage img = image();
+		byte[] src = data(img);
+		int src_stride = 3 * img.getWidth();
+
+		byte[] region = new byte[3 * w * h];
+		for (int y = 0; y < h; y++) {
+			int src_row = (y % img.getHeight()) * src_stride;
+			for (int x = 0; x < 3 * w; x += src_stride) {
+				System.arraycopy(src, src_row, region, 3 * w * y + x, Math.min(src_stride, 3 * w - x));
+			}
+		}
+
+		return region;
+	}
+
+	private static byte[] data(BufferedImage img) {
+		return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+	}
+
+	private static byte[] image_bytes(boolean residuals) {
+		BufferedImage img = image();
+		byte[] data = data(img).clone();
+
+		if (residuals) {
+			SubtractGreenTransform.INSTANCE.encode(data);
+			DeltaCoder.INSTANCE.encode(data, img.getWidth(), img.getHeight());
+			ZigzagCoder.INSTANCE.enc(data);
+		}
+
+		return data;
+	}
+
+	private static byte[] repeat(byte[] src, int len) {
+		byte[] dst = Arrays.copyOf(src, len);
+		for (int i = src.length; i < len; i += src.length) {
+			System.arraycopy(src, 0, dst, i, Math.min(src.length, len - i));
+		}
+		return dst;
+	}
+
+	private static double[] uniform() {
+		double[] p = new double[256];
+		Arrays.fill(p, 1);
+		return p;
+	}
+
+	private static double[] zipf() {
+		double[] p = new double[256];
+		for (int k = 0; k < p.length; k++) {
+			p[k] = 1.0 / (k + 1);
+		}
+		return p;
+	}
+
+	private static double[] geometric(double ratio) {
+		double[] p = new double[256];
+		for (int k = 0; k < p.length; k++) {
+			p[k] = Math.pow(ratio, k);
+		}
+		return p;
+	}
+
+	private static double[] skewed(double p0) {
+		double[] p = new double[256];
+		Arrays.fill(p, (1 - p0) / 255);
+		p[0] = p0;
+		return p;
+	}
+
+	/**
+	 * Draws len symbols with probabilities proportional to weight.
+	 */
+	private static byte[] sample(Random rng, double[] weight, int len) {
+		double[] cum = new double[weight.length];
+		double sum = 0;
+		for (int k = 0; k < weight.length; k++) {
+			sum += weight[k];
+			cum[k] = sum;
+		}
+
+		byte[] data = new byte[len];
+		for (int i = 0; i < len; i++) {
+			int k = Arrays.binarySearch(cum, rng.nextDouble() * sum);
+			data[i] = (byte) Math.min((k >= 0) ? k : -k - 1, weight.length - 1);
+		}
+		return data;
+	}
+
+	public static int[] histogram(byte[] data) {
+		int[] hist = new int[256];
+		for (byte b : data) {
+			hist[b & 0xff]++;
+		}
+		return hist;
+	}
+}
@@ -0,0 +1,124 @@
+package arithmetic_compression.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import arithmetic_compression.coder.DeltaCoder;
+import arithmetic_compression.coder.FusedImageTransform;
+import arithmetic_compression.coder.SubtractGreenTransform;
+import arithmetic_compression.coder.ZigzagCoder;
+
+/**
+ * The image transforms in place on a WIDTH x HEIGHT region of the image, or
+ * on synthetic bytes of the same size. Each invocation transforms the result
+ * of the previous one, which is as fast as transforming the original, since
+ * none of the transforms has data dependent branches. Scores are ns per byte.
+ * chained_* run the three transforms one after the other, plus the histogram
+ * when encoding, to compare them with {@link FusedImageTransform}; the region
+ * fits into the cache, so this shows the cost of the computation rather than
+ * of the memory traffic saved. hist only accumulates and may wrap around.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(3 * TransformBenchmark.WIDTH * TransformBenchmark.HEIGHT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+
+	public static final int WIDTH = 1024;
+
+	public static final int HEIGHT = 512;
+
+	@Param({"IMAGE", "UNIFORM"})
+	String input;
+
+	byte[] data;
+
+	int[] hist = new int[256];
+
+	@Setup
+	public void setup() {
+		data = input.equals("IMAGE") ? Inputs.image_region(WIDTH, HEIGHT) : Inputs.create(input, 3 * WIDTH * HEIGHT);
+	}
+
+	@Benchmark
+	public byte[] subtract_green_encode() {
+		SubtractGreenTransform.INSTANCE.encode(data);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] subtract_green_decode() {
+		SubtractGreenTransform.INSTANCE.decode(data);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] delta_encode() {
+		DeltaCoder.INSTANCE.encode(data, WIDTH, HEIGHT);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] delta_decode() {
+		DeltaCoder.INSTANCE.decode(data, WIDTH, HEIGHT);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] zigzag_encode() {
+		ZigzagCoder.INSTANCE.enc(data);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] zigzag_decode() {
+		ZigzagCoder.INSTANCE.dec(data);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] chained_encode() {
+		SubtractGreenTransform.INSTANCE.encode(data);
+		DeltaCoder.INSTANCE.encode(data, WIDTH, HEIGHT);
+		ZigzagCoder.INSTANCE.enc(data);
+		for (byte b : data) {
+			hist[b & 0xff]++;
+		}
+		return data;
+	}
+
+	@Benchmark
+	public byte[] chained_decode() {
+		ZigzagCoder.INSTANCE.dec(data);
+		DeltaCoder.INSTANCE.decode(data, WIDTH, HEIGHT);
+		SubtractGreenTransform.INSTANCE.decode(data);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] fused_encode() {
+		FusedImageTransform.INSTANCE.encode(data, WIDTH, HEIGHT, hist);
+		return data;
+	}
+
+	@Benchmark
+	public byte[] fused_decode() {
+		FusedImageTransform.INSTANCE.decode(data, WIDTH, HEIGHT);
+		return data;
+	}
+}
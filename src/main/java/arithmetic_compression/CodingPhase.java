@@ -0,0 +1,70 @@
+package arithmetic_compression;
+
+/**
+ * Records the phases of the compression pipeline as {@link CodingPhaseEvent}s
+ * if the JVM has Java Flight Recorder, and does nothing otherwise. The core
+ * classes go through this class instead of using the event directly, so
+ * that they still load on Java 8 runtimes before 8u262, which lack jdk.jfr:
+ * CodingPhaseEvent is only loaded once JFR was found to be there.
+ * <p>
+ * Usage: Object event = start() before the phase, finish(event, ...) after
+ * it.
+ * </p>
+ */
+public final class CodingPhase {
+
+	public static final String COLOR_TRANSFORM = "color transform";
+
+	public static final String DELTA = "delta";
+
+	public static final String ZIGZAG = "zigzag";
+
+	/**
+	 * Color transform, delta and zigzag in one pass, see FusedImageTransform.
+	 */
+	public static final String FUSED_TRANSFORM = "fused transform";
+
+	public static final String HISTOGRAM = "histogram";
+
+	public static final String MODEL = "model";
+
+	public static final String ENCODE = "encode";
+
+	public static final String DECODE = "decode";
+
+	public static final String FLUSH = "flush";
+
+
+	static final boolean JFR_AVAILABLE = jfr_available();
+
+	private CodingPhase() {
+	}
+
+	private static boolean jfr_available() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a begun CodingPhaseEvent, or null without JFR. The type is
+	 * Object so that callers don't refer to the event class.
+	 */
+	public static Object start() {
+		return JFR_AVAILABLE ? CodingPhaseEvent.start() : null;
+	}
+
+	/**
+	 * Ends the event returned by start() and commits it with the specified
+	 * values if a recording wants it, see CodingPhaseEvent.finish(...).
+	 */
+	public static void finish(Object event, String phase, Object coder, long bytes_in, long bytes_out,
+			long symbols) {
+		if (event != null) {
+			((CodingPhaseEvent) event).finish(phase, coder, bytes_in, bytes_out, symbols);
+		}
+	}
+}
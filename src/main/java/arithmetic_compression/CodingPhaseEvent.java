@@ -0,0 +1,74 @@
+package arithmetic_compression;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one phase of the compression pipeline, e.g.
+ * one call of a transform or the coding of one container block, with the
+ * bytes going in and out, the symbols and the coder.
+ * <p>
+ * Usage: start() before the phase, finish(...) after it. While no recording
+ * has the event enabled, begin() and shouldCommit() do nothing and the
+ * fields aren't even set, so instrumented code costs nothing measurable
+ * then. Needs a JVM with JFR, i.e. Java 11 or 8u262 and later, so the
+ * coders don't use this class directly but {@link CodingPhase}, which only
+ * touches it if JFR is there. The phase names are those in CodingPhase.
+ * </p>
+ */
+@Name("arithmetic_compression.CodingPhase")
+@Label("Coding Phase")
+@Category("Arithmetic Compression")
+@Description("A phase of the compression pipeline")
+@StackTrace(false)
+public class CodingPhaseEvent extends Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Coder")
+	@Description("The entropy coder, null for phases without one")
+	String coder;
+
+	@Label("Bytes In")
+	@DataAmount
+	long bytes_in;
+
+	@Label("Bytes Out")
+	@DataAmount
+	long bytes_out;
+
+	@Label("Symbols")
+	long symbols;
+
+	/**
+	 * Returns a new event, begun.
+	 */
+	public static CodingPhaseEvent start() {
+		CodingPhaseEvent event = new CodingPhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the event and commits it with the specified values if a recording
+	 * wants it. coder is null for phases without an entropy coder.
+	 */
+	public void finish(String phase, Object coder, long bytes_in, long bytes_out, long symbols) {
+		end();
+
+		if (shouldCommit()) {
+			this.phase = phase;
+			this.coder = (coder == null) ? null : coder.toString();
+			this.bytes_in = bytes_in;
+			this.bytes_out = bytes_out;
+			this.symbols = symbols;
+			commit();
+		}
+	}
+}
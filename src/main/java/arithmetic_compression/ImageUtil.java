@@ -0,0 +1,88 @@
+package arithmetic_compression;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Loading and storing of images without any dependency on a display, so that
+ * it can be used in headless environments as well.
+ */
+public class ImageUtil {
+
+	public static void writePngFullCompression(BufferedImage img, String dstFilename) {
+		File dstFile = new File(dstFilename);
+		writePngFullCompression(img, dstFile);
+	}
+
+	public static void writePngFullCompression(BufferedImage img, File dstFile) {
+		try (FileOutputStream fileOutputStream = new FileOutputStream(dstFile)) {
+			writePngFullCompression(img, fileOutputStream);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes the image as PNG with the highest deflate level to dst, which is
+	 * left open.
+	 */
+	public static void writePngFullCompression(BufferedImage img, OutputStream dst) {
+		Iterator<ImageWriter> imgWriterIter = ImageIO.getImageWritersByFormatName("png");
+		ImageWriter imgWriter = imgWriterIter.next();
+
+		ImageWriteParam params = imgWriter.getDefaultWriteParam();
+		params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		params.setCompressionQuality(0.0f); // 0.0 means "high compression"
+		params.setCompressionType("Deflate");
+
+		try {
+			ImageOutputStream imgOutputStream = ImageIO.createImageOutputStream(dst);
+			imgWriter.setOutput(imgOutputStream);
+			imgWriter.write(null, new IIOImage(img, null, null), params);
+			imgOutputStream.flush();
+			imgWriter.dispose();
+			imgOutputStream.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Loads the image and converts it to {@link BufferedImage#TYPE_3BYTE_BGR},
+	 * i.e. 3 bytes per pixel, row wise.
+	 */
+	public static BufferedImage loadImage(URL srcUrl) {
+		BufferedImage img;
+		try {
+			img = ImageIO.read(srcUrl);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		img = convertTo(img, BufferedImage.TYPE_3BYTE_BGR);
+
+		return img;
+	}
+
+	public static BufferedImage convertTo(BufferedImage src, int type) {
+		BufferedImage result = new BufferedImage(src.getWidth(), src.getHeight(), type);
+
+		Graphics g = result.createGraphics();
+		g.drawImage(src, 0, 0, null);
+		g.dispose();
+
+		return result;
+	}
+}
@@ -0,0 +1,532 @@
+package arithmetic_compression.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+
+import arithmetic_compression.ImageUtil;
+import arithmetic_compression.TimeDurationFormatter;
+import arithmetic_compression.coder.FusedImageTransform;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.container.ContainerDecoder;
+import arithmetic_compression.container.ContainerEncoder;
+
+/**
+ * Runs the full pipeline on every file of a directory, recursively, and
+ * compares it with {@link Deflater} at several levels and, for images, with
+ * PNG as written by {@link ImageUtil#writePngFullCompression}.
+ * <p>
+ * Files which ImageIO can read are images: their raw data are the pixels, 3
+ * bytes each, and the pipeline is the one of DesktopApp (subtract green,
+ * delta and zigzag in one pass, then the container). All other files are raw
+ * data as is and only go through the container. Deflater compresses the raw
+ * data, PNG the image.
+ * Everything runs in the calling thread, decoded data is checked against the
+ * raw data, and the best of the rounds is reported.
+ * </p>
+ * <p>
+ * A row per file and method is printed to stdout as CSV or JSON, with the
+ * ratio raw size / compressed size, encode and decode speed in MB/s of raw
+ * data, and bits per pixel for images. A summary over all files per method
+ * follows on stderr, so stdout can be redirected to a file as is.
+ * </p>
+ * <p>
+ * Arguments: dir-or-file [--format=csv|json] [--rounds=n, default 3]
+ * [--coders=ARITHMETIC,RANS_X4,..., default all] [--levels=1,6,9]
+ * </p>
+ */
+public class CorpusBenchmark {
+
+	public static final String PIPELINE = "pipeline ";
+
+	public static final String DEFLATE = "deflate ";
+
+	public static final String PNG = "png";
+
+	/**
+	 * One file, loaded.
+	 */
+	public static class Input {
+
+		public final String name;
+
+		/**
+		 * The pixels of an image, or the file's bytes.
+		 */
+		public final byte[] raw;
+
+		/**
+		 * The image, null for other files.
+		 */
+		public final BufferedImage img;
+
+		Input(String name, byte[] raw, BufferedImage img) {
+			this.name = name;
+			this.raw = raw;
+			this.img = img;
+		}
+
+		public long pixel_count() {
+			return (img == null) ? 0 : (long) img.getWidth() * img.getHeight();
+		}
+	}
+
+	/**
+	 * The outcome of one method on one file; the durations are those of the
+	 * best round.
+	 */
+	public static class Result {
+
+		public final String file;
+
+		public final String method;
+
+		public final long raw_size;
+
+		public final long compressed_size;
+
+		/**
+		 * 0 for files which are no images.
+		 */
+		public final long pixel_count;
+
+		public final long encode_ns;
+
+		public final long decode_ns;
+
+		Result(String file, String method, long raw_size, long compressed_size, long pixel_count, long encode_ns,
+				long decode_ns) {
+			this.file = file;
+			this.method = method;
+			this.raw_size = raw_size;
+			this.compressed_size = compressed_size;
+			this.pixel_count = pixel_count;
+			this.encode_ns = encode_ns;
+			this.decode_ns = decode_ns;
+		}
+
+		public double ratio() {
+			return (double) raw_size / compressed_size;
+		}
+
+		/**
+		 * Returns NaN for files which are no images.
+		 */
+		public double bits_per_pixel() {
+			return (pixel_count == 0) ? Double.NaN : compressed_size * 8.0 / pixel_count;
+		}
+
+		public double encode_mb_per_s() {
+			return mbPerS(raw_size, encode_ns);
+		}
+
+		public double decode_mb_per_s() {
+			return mbPerS(raw_size, decode_ns);
+		}
+	}
+
+	/**
+	 * A way to compress an input. decode(...) returns the raw data.
+	 */
+	interface Method {
+
+		String name();
+
+		boolean applies_to(Input input);
+
+		byte[] encode(Input input);
+
+		byte[] decode(byte[] encoded, Input input);
+	}
+
+	public static void main(String[] args) {
+		String format = "csv";
+		int rounds = 3;
+		List<EntropyCoderType> coders = Arrays.asList(EntropyCoderType.values());
+		int[] levels = { 1, 6, 9 };
+		Path path = null;
+
+		for (String arg : args) {
+			if (arg.startsWith("--format=")) {
+				format = value(arg);
+			} else if (arg.startsWith("--rounds=")) {
+				rounds = Integer.parseInt(value(arg));
+			} else if (arg.startsWith("--coders=")) {
+				coders = Arrays.stream(value(arg).split(",")).map(EntropyCoderType::valueOf)
+						.collect(Collectors.toList());
+			} else if (arg.startsWith("--levels=")) {
+				levels = Arrays.stream(value(arg).split(",")).mapToInt(Integer::parseInt).toArray();
+			} else if (!arg.startsWith("--") && path == null) {
+				path = Paths.get(arg);
+			} else {
+				throw new IllegalArgumentException("unknown argument " + arg);
+			}
+		}
+
+		if (path == null) {
+			System.err.println("usage: " + CorpusBenchmark.class.getName()
+					+ " dir-or-file [--format=csv|json] [--rounds=n] [--coders=A,B,...] [--levels=1,6,9]");
+			System.exit(1);
+		}
+		if (!format.equals("csv") && !format.equals("json")) {
+			throw new IllegalArgumentException("unknown format " + format);
+		}
+
+		List<Result> results = run(files(path), methods(coders, levels), rounds);
+
+		if (format.equals("csv")) {
+			write_csv(results, System.out);
+		} else {
+			write_json(results, System.out);
+		}
+		System.out.flush();
+
+		write_summary(results, System.err);
+	}
+
+	private static String value(String arg) {
+		return arg.substring(arg.indexOf('=') + 1);
+	}
+
+	/**
+	 * Returns the regular files below path, sorted, or path itself if it is a
+	 * file.
+	 */
+	public static List<Path> files(Path path) {
+		try (Stream<Path> stream = Files.walk(path)) {
+			return stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the pipeline for each coder, Deflater for each level and PNG.
+	 */
+	static List<Method> methods(List<EntropyCoderType> coders, int[] levels) {
+		List<Method> methods = new ArrayList<>();
+		for (EntropyCoderType coder : coders) {
+			methods.add(new PipelineMethod(coder));
+		}
+		for (int level : levels) {
+			methods.add(new DeflateMethod(level));
+		}
+		methods.add(new PngMethod());
+		return methods;
+	}
+
+	public static List<Result> run(List<Path> files, List<EntropyCoderType> coders, int[] levels, int rounds) {
+		return run(files, methods(coders, levels), rounds);
+	}
+
+	static List<Result> run(List<Path> files, List<Method> methods, int rounds) {
+		List<Result> results = new ArrayList<>();
+
+		for (Path file : files) {
+			Input input = load(file);
+			for (Method method : methods) {
+				if (method.applies_to(input)) {
+					results.add(run(input, method, rounds));
+				}
+			}
+		}
+
+		return results;
+	}
+
+	static Result run(Input input, Method method, int rounds) {
+		long encode_ns = Long.MAX_VALUE;
+		long decode_ns = Long.MAX_VALUE;
+		byte[] encoded = null;
+
+		for (int round = 0; round < rounds; round++) {
+			long t = System.nanoTime();
+			encoded = method.encode(input);
+			encode_ns = Math.min(encode_ns, System.nanoTime() - t);
+
+			t = System.nanoTime();
+			byte[] decoded = method.decode(encoded, input);
+			decode_ns = Math.min(decode_ns, System.nanoTime() - t);
+
+			if (!Arrays.equals(input.raw, decoded)) {
+				throw new IllegalStateException(method.name() + ": decoded data of " + input.name + " differs from input");
+			}
+		}
+
+		return new Result(input.name, method.name(), input.raw.length, encoded.length, input.pixel_count(), encode_ns,
+				decode_ns);
+	}
+
+	/**
+	 * Loads the file, as an image if ImageIO can read it.
+	 */
+	public static Input load(Path file) {
+		byte[] bytes;
+		BufferedImage img;
+		try {
+			bytes = Files.readAllBytes(file);
+			img = ImageIO.read(new ByteArrayInputStream(bytes));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (img == null) {
+			return new Input(file.toString(), bytes, null);
+		}
+
+		img = ImageUtil.convertTo(img, BufferedImage.TYPE_3BYTE_BGR);
+		return new Input(file.toString(), data(img), img);
+	}
+
+	private static byte[] data(BufferedImage img) {
+		return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+	}
+
+	static class PipelineMethod implements Method {
+
+		final EntropyCoderType coder;
+
+		PipelineMethod(EntropyCoderType coder) {
+			this.coder = coder;
+		}
+
+		@Override
+		public String name() {
+			return PIPELINE + coder;
+		}
+
+		@Override
+		public boolean applies_to(Input input) {
+			return true;
+		}
+
+		@Override
+		public byte[] encode(Input input) {
+			byte[] data = input.raw;
+			if (input.img != null) {
+				data = data.clone();
+				FusedImageTransform.INSTANCE.encode(data, input.img.getWidth(), input.img.getHeight(), null);
+			}
+			return new ContainerEncoder(coder).encode(data);
+		}
+
+		@Override
+		public byte[] decode(byte[] encoded, Input input) {
+			byte[] data = new ContainerDecoder(encoded).decode();
+			if (input.img != null) {
+				FusedImageTransform.INSTANCE.decode(data, input.img.getWidth(), input.img.getHeight());
+			}
+			return data;
+		}
+	}
+
+	static class DeflateMethod implements Method {
+
+		final int level;
+
+		DeflateMethod(int level) {
+			this.level = level;
+		}
+
+		@Override
+		public String name() {
+			return DEFLATE + level;
+		}
+
+		@Override
+		public boolean applies_to(Input input) {
+			return true;
+		}
+
+		@Override
+		public byte[] encode(Input input) {
+			Deflater deflater = new Deflater(level);
+			deflater.setInput(input.raw);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(input.raw.length / 2 + 64);
+			byte[] buf = new byte[64 * 1024];
+			while (!deflater.finished()) {
+				out.write(buf, 0, deflater.deflate(buf));
+			}
+			deflater.end();
+
+			return out.toByteArray();
+		}
+
+		@Override
+		public byte[] decode(byte[] encoded, Input input) {
+			Inflater inflater = new Inflater();
+			inflater.setInput(encoded);
+
+			byte[] data = new byte[input.raw.length];
+			try {
+				int n = 0;
+				while (n < data.length && !inflater.finished()) {
+					n += inflater.inflate(data, n, data.length - n);
+				}
+			} catch (DataFormatException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				inflater.end();
+			}
+
+			return data;
+		}
+	}
+
+	static class PngMethod implements Method {
+
+		@Override
+		public String name() {
+			return PNG;
+		}
+
+		@Override
+		public boolean applies_to(Input input) {
+			return input.img != null;
+		}
+
+		@Override
+		public byte[] encode(Input input) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(input.raw.length / 2);
+			ImageUtil.writePngFullCompression(input.img, out);
+			return out.toByteArray();
+		}
+
+		@Override
+		public byte[] decode(byte[] encoded, Input input) {
+			BufferedImage img;
+			try {
+				img = ImageIO.read(new ByteArrayInputStream(encoded));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			if (img.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+				img = ImageUtil.convertTo(img, BufferedImage.TYPE_3BYTE_BGR);
+			}
+			return data(img);
+		}
+	}
+
+	public static void write_csv(List<Result> results, PrintStream out) {
+		out.println("file,method,raw_bytes,compressed_bytes,ratio,bits_per_pixel,encode_mb_per_s,decode_mb_per_s,"
+				+ "encode_ns,decode_ns");
+
+		for (Result r : results) {
+			out.println(String.format(Locale.US, "%s,%s,%d,%d,%.4f,%s,%.2f,%.2f,%d,%d", //
+					csv_field(r.file), csv_field(r.method), r.raw_size, r.compressed_size, r.ratio(), //
+					Double.isNaN(r.bits_per_pixel()) ? "" : String.format(Locale.US, "%.4f", r.bits_per_pixel()), //
+					r.encode_mb_per_s(), r.decode_mb_per_s(), r.encode_ns, r.decode_ns));
+		}
+	}
+
+	private static String csv_field(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+			return s;
+		}
+		return '"' + s.replace("\"", "\"\"") + '"';
+	}
+
+	public static void write_json(List<Result> results, PrintStream out) {
+		out.println("[");
+
+		for (int i = 0; i < results.size(); i++) {
+			Result r = results.get(i);
+			out.print(String.format(Locale.US,
+					"  {\"file\": %s, \"method\": %s, \"raw_bytes\": %d, \"compressed_bytes\": %d, \"ratio\": %.4f, "
+							+ "\"bits_per_pixel\": %s, \"encode_mb_per_s\": %.2f, \"decode_mb_per_s\": %.2f, "
+							+ "\"encode_ns\": %d, \"decode_ns\": %d}", //
+					json_string(r.file), json_string(r.method), r.raw_size, r.compressed_size, r.ratio(), //
+					Double.isNaN(r.bits_per_pixel()) ? "null" : String.format(Locale.US, "%.4f", r.bits_per_pixel()), //
+					r.encode_mb_per_s(), r.decode_mb_per_s(), r.encode_ns, r.decode_ns));
+			out.println((i < results.size() - 1) ? "," : "");
+		}
+
+		out.println("]");
+	}
+
+	private static String json_string(String s) {
+		StringBuilder buf = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				buf.append('\\').append(c);
+			} else if (c < 0x20) {
+				buf.append(String.format("\\u%04x", (int) c));
+			} else {
+				buf.append(c);
+			}
+		}
+		return buf.append('"').toString();
+	}
+
+	/**
+	 * Prints the totals over all files per method: ratio, bits per pixel over
+	 * the images, speed and the total time of the best rounds.
+	 */
+	public static void write_summary(List<Result> results, PrintStream out) {
+		Map<String, List<Result>> by_method = new LinkedHashMap<>();
+		for (Result r : results) {
+			by_method.computeIfAbsent(r.method, k -> new ArrayList<>()).add(r);
+		}
+
+		out.println("method         \tfiles\traw [byte]\tcompressed\tratio\tbits/pixel\tenc [MB/s]\tdec [MB/s]"
+				+ "\tenc time\tdec time");
+
+		for (Map.Entry<String, List<Result>> entry : by_method.entrySet()) {
+			long raw = 0;
+			long compressed = 0;
+			long image_compressed = 0;
+			long pixels = 0;
+			long encode_ns = 0;
+			long decode_ns = 0;
+			for (Result r : entry.getValue()) {
+				raw += r.raw_size;
+				compressed += r.compressed_size;
+				encode_ns += r.encode_ns;
+				decode_ns += r.decode_ns;
+				if (r.pixel_count > 0) {
+					image_compressed += r.compressed_size;
+					pixels += r.pixel_count;
+				}
+			}
+
+			String name = entry.getKey();
+			while (name.length() < 15) {
+				name = name + " ";
+			}
+
+			out.println(String.format(Locale.US, "%s\t%d\t%d\t%d\t%.4f\t%s\t\t%.2f\t\t%.2f\t\t%s\t%s", //
+					name, entry.getValue().size(), raw, compressed, (double) raw / compressed, //
+					(pixels == 0) ? "-" : String.format(Locale.US, "%.4f", image_compressed * 8.0 / pixels), //
+					mbPerS(raw, encode_ns), mbPerS(raw, decode_ns), //
+					TimeDurationFormatter.formatDura(encode_ns), TimeDurationFormatter.formatDura(decode_ns)));
+		}
+	}
+
+	private static double mbPerS(long byteCount, long duraNs) {
+		return (byteCount / (1000.0D * 1000.0D)) / (duraNs / (1000.0D * 1000.0D * 1000.0D));
+	}
+}
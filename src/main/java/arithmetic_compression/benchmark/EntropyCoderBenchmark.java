@@ -0,0 +1,192 @@
+package arithmetic_compression.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import arithmetic_compression.ImageUtil;
+import arithmetic_compression.TimeDurationFormatter;
+import arithmetic_compression.coder.DeltaCoder;
+import arithmetic_compression.coder.SubtractGreenTransform;
+import arithmetic_compression.coder.ZigzagCoder;
+import arithmetic_compression.coder.arithmetic.AdaptiveContextModel;
+import arithmetic_compression.coder.arithmetic.AdaptiveRangeCoder;
+import arithmetic_compression.coder.arithmetic.BitTreeCoder;
+import arithmetic_compression.coder.arithmetic.ContextModel;
+import arithmetic_compression.coder.arithmetic.ContextRangeCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.InterleavedRansCoder;
+import arithmetic_compression.coder.arithmetic.StaticContextModel;
+import arithmetic_compression.coder.arithmetic.SymbolContext;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.coder.arithmetic.mixing.ContextMixingCoder;
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.ByteBufferBitInputStream;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
+
+/**
+ * Compares the speed of all {@link EntropyCoderType}s on the bundled image,
+ * once on the raw bytes and once on the residuals which DesktopApp feeds to
+ * the coder (subtract green, delta, zigzag). All coders of a run use the same
+ * histogram, first as is, then normalized to a total count of
+ * 2^NORMALIZED_TOTAL_BITS. The {@link AdaptiveRangeCoder} and the
+ * {@link BitTreeCoder} need no histogram and run after them, followed by the
+ * {@link ContextRangeCoder} with order-1 and order-2 contexts (the latter with
+ * the colour channel and 16 levels of the second symbol), and finally by the
+ * {@link ContextMixingCoder} with and without APM stage. The sizes of static
+ * models are not included in the reported sizes. Decoded data is checked
+ * against the input.
+ * <p>
+ * Arguments: [rounds], default 5. The best round is reported.
+ * </p>
+ */
+public class EntropyCoderBenchmark {
+
+	public static final int NORMALIZED_TOTAL_BITS = 15;
+
+	public static void main(String[] args) {
+		int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+
+		URL srcUrl = EntropyCoderBenchmark.class.getClassLoader().getResource("p1000238_cropped_1920.png");
+		System.out.println("src image: " + srcUrl);
+
+		BufferedImage img = ImageUtil.loadImage(srcUrl);
+		byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+		int w = img.getWidth();
+		int h = img.getHeight();
+
+		System.out.println();
+		System.out.println("raw bytes (" + data.length + " symbols)");
+		runAll(Arrays.copyOf(data, data.length), rounds);
+
+		SubtractGreenTransform.INSTANCE.encode(data);
+		DeltaCoder.INSTANCE.encode(data, w, h);
+		ZigzagCoder.INSTANCE.enc(data);
+
+		System.out.println();
+		System.out.println("residuals (" + data.length + " symbols)");
+		runAll(data, rounds);
+	}
+
+	public static void runAll(byte[] data, int rounds) {
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(calcHistogram(data));
+
+		System.out.println("histogram as is");
+		runAll(data, dist, rounds);
+
+		System.out.println("histogram normalized to 2^" + NORMALIZED_TOTAL_BITS);
+		runAll(data, dist.normalized(NORMALIZED_TOTAL_BITS), rounds);
+
+		System.out.println("adaptive model");
+		printHeader();
+		run("ADAPTIVE_RANGE", () -> new AdaptiveRangeCoder(256), data, rounds, false);
+		run("BIT_TREE", () -> new BitTreeCoder(8), data, rounds, false);
+
+		System.out.println("context models");
+		printHeader();
+		SymbolContext order1 = new SymbolContext(256, 1);
+		SymbolContext order2 = new SymbolContext(256, 2, 3, 16);
+		runContextModels("ORDER1", order1, data, rounds);
+		runContextModels("ORDER2", order2, data, rounds);
+
+		System.out.println("context mixing");
+		printHeader();
+		run("CM", () -> new ContextMixingCoder(3, false), data, rounds, false);
+		run("CM + APM", () -> new ContextMixingCoder(3, true), data, rounds, false);
+	}
+
+	private static void runContextModels(String name, SymbolContext context, byte[] data, int rounds) {
+		ContextModel staticModel = new StaticContextModel(StaticContextModel.histogram(data, context));
+		run(name + " static", () -> new ContextRangeCoder(staticModel, context), data, rounds, false);
+		run(name + " adapt", () -> new ContextRangeCoder(new AdaptiveContextModel(context.context_count(), 256), context),
+				data, rounds, false);
+	}
+
+	public static void runAll(byte[] data, SymbolProbabilityDistribution dist, int rounds) {
+		printHeader();
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			run(type.toString(), () -> type.create(dist), data, rounds, false);
+			if (type.create(dist) instanceof InterleavedRansCoder) {
+				run(type.toString(), () -> type.create(dist), data, rounds, true);
+			}
+		}
+	}
+
+	private static void printHeader() {
+		System.out.println("coder          \tsize [byte]\tbits/symbol\tenc [MB/s]\tdec [MB/s]\tdec/symbol");
+	}
+
+	public static void run(String name, Supplier<EntropyCoder> coderFactory, byte[] data, int rounds,
+			boolean bulk) {
+		long encodeDura = Long.MAX_VALUE;
+		long decodeDura = Long.MAX_VALUE;
+		byte[] encoded = new byte[(int) coderFactory.get().max_encoded_size(data.length)];
+		int encodedLen = 0;
+		byte[] decoded = new byte[data.length];
+
+		for (int round = 0; round < rounds; round++) {
+			long t = System.nanoTime();
+			{
+				ByteBufferBitOutputStream bitStream = new ByteBufferBitOutputStream(encoded, 0, encoded.length);
+
+				EntropyCoder coder = coderFactory.get();
+				for (int i = 0; i < data.length; i++) {
+					coder.encode(data[i] & 0xff, bitStream);
+				}
+				coder.finish_encoding(bitStream);
+				bitStream.flushAll();
+
+				encodedLen = bitStream.buffer().position();
+			}
+			encodeDura = Math.min(encodeDura, System.nanoTime() - t);
+
+			t = System.nanoTime();
+			{
+				BitInputStream bitStream = new ByteBufferBitInputStream(encoded, 0, encodedLen);
+
+				EntropyCoder coder = coderFactory.get();
+				coder.start_decoding(bitStream);
+				if (bulk) {
+					((InterleavedRansCoder) coder).decode(decoded, 0, decoded.length, bitStream);
+				} else {
+					for (int i = 0; i < decoded.length; i++) {
+						decoded[i] = (byte) coder.decode(bitStream);
+					}
+				}
+			}
+			decodeDura = Math.min(decodeDura, System.nanoTime() - t);
+
+			if (!Arrays.equals(data, decoded)) {
+				throw new IllegalStateException(name + ": decoded data differs from input");
+			}
+		}
+
+		if (bulk) {
+			name = name + " (bulk)";
+		}
+		while (name.length() < 15) {
+			name = name + " ";
+		}
+
+		System.out.println(String.format(Locale.US, "%s\t%d\t%.4f\t\t%.2f\t\t%.2f\t\t%s", //
+				name, encodedLen, encodedLen * 8.0 / data.length, //
+				mbPerS(data.length, encodeDura), mbPerS(data.length, decodeDura), //
+				TimeDurationFormatter.formatDura(((double) decodeDura) / data.length)));
+	}
+
+	public static int[] calcHistogram(byte[] a) {
+		int[] hist = new int[256];
+		for (int i = 0; i < a.length; i++) {
+			hist[a[i] & 0xff]++;
+		}
+		return hist;
+	}
+
+	private static double mbPerS(long byteCount, long duraNs) {
+		return (byteCount / (1000.0D * 1000.0D)) / (duraNs / (1000.0D * 1000.0D * 1000.0D));
+	}
+}
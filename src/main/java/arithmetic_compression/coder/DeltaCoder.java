@@ -1,5 +1,7 @@
 package arithmetic_compression.coder;
 
+import arithmetic_compression.CodingPhase;
+
 public class DeltaCoder {
 
 	public static final DeltaCoder INSTANCE = new DeltaCoder();
@@ -8,16 +10,24 @@ public class DeltaCoder {
 	 * data is expected to be in (r,g,b) format, 3 bytes per pixel, row wise.
 	 */
 	public void encode(byte[] data, int w, int h) {
+		Object event = CodingPhase.start();
+
 		encode_rowswise(data, w, h);
 		encode_col0(data, w, h);
+
+		CodingPhase.finish(event, CodingPhase.DELTA, null, data.length, data.length, data.length);
 	}
 
 	/**
 	 * data is expected to be in (r,g,b) format, 3 bytes per pixel, row wise.
 	 */
 	public void decode(byte[] data, int w, int h) {
+		Object event = CodingPhase.start();
+
 		decode_col0(data, w, h);
 		decode_rowswise(data, w, h);
+
+		CodingPhase.finish(event, CodingPhase.DELTA, null, data.length, data.length, data.length);
 	}
 
 	private static void encode_rowswise(byte[] data, int w, int h) {
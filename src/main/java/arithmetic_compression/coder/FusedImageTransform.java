@@ -0,0 +1,153 @@
+package arithmetic_compression.coder;
+
+import arithmetic_compression.CodingPhase;
+
+/**
+ * {@link SubtractGreenTransform}, {@link DeltaCoder} and {@link ZigzagCoder}
+ * in one pass over the image, plus the histogram of the result when encoding.
+ * The output is identical to that of the chained transforms, but each byte is
+ * read and written once instead of once per transform, which matters for
+ * images which don't fit into the cache.
+ * <p>
+ * The chained delta coder works on the subtract green values of the left
+ * pixel, or of the pixel above for column 0. Those are overwritten by the
+ * time they'd be needed here, so they are kept in locals: the left pixel's
+ * while going along a row, the one of column 0 from one row to the next.
+ * </p>
+ */
+public class FusedImageTransform {
+
+	public static final FusedImageTransform INSTANCE = new FusedImageTransform();
+
+	/**
+	 * data is expected to be in (r,g,b) format, 3 bytes per pixel, row wise,
+	 * w x h pixels. The number of occurences of each resulting byte value is
+	 * added to hist[value & 0xff], unless hist is null.
+	 */
+	public void encode(byte[] data, int w, int h, int[] hist) {
+		check_size(data, w, h);
+		if (data.length == 0) {
+			return;
+		}
+
+		Object event = CodingPhase.start();
+
+		// one histogram per channel, since neighbouring bytes often have the
+		// same value and incrementing the same counter again right away has
+		// to wait for the previous increment
+		int[] hist_r = new int[256];
+		int[] hist_g = new int[256];
+		int[] hist_b = new int[256];
+
+		// subtract green values of the left pixel and of column 0 in the row
+		// above
+		int left_r = 0, left_g = 0, left_b = 0;
+		int above_r = 0, above_g = 0, above_b = 0;
+
+		for (int y = 0, i = 0; y < h; y++) {
+			// column 0 is predicted from the pixel above, or from 0 in row 0;
+			// the subtract green values of column 0 are taken before the row
+			// is overwritten, so the loop doesn't need to handle it apart
+			left_r = above_r;
+			left_g = above_g;
+			left_b = above_b;
+			above_g = data[i + 1];
+			above_r = data[i] - above_g;
+			above_b = data[i + 2] - above_g;
+
+			for (int end = i + 3 * w; i < end; i += 3) {
+				int g = data[i + 1];
+				int r = data[i] - g;
+				int b = data[i + 2] - g;
+
+				int zr = zigzag(r - left_r);
+				int zg = zigzag(g - left_g);
+				int zb = zigzag(b - left_b);
+				left_r = r;
+				left_g = g;
+				left_b = b;
+
+				data[i] = (byte) zr;
+				data[i + 1] = (byte) zg;
+				data[i + 2] = (byte) zb;
+
+				hist_r[zr]++;
+				hist_g[zg]++;
+				hist_b[zb]++;
+			}
+		}
+
+		if (hist != null) {
+			for (int v = 0; v < 256; v++) {
+				hist[v] += hist_r[v] + hist_g[v] + hist_b[v];
+			}
+		}
+
+		CodingPhase.finish(event, CodingPhase.FUSED_TRANSFORM, null, data.length, data.length, data.length);
+	}
+
+	/**
+	 * Reverses encode(...).
+	 */
+	public void decode(byte[] data, int w, int h) {
+		check_size(data, w, h);
+		if (data.length == 0) {
+			return;
+		}
+
+		Object event = CodingPhase.start();
+
+		int left_r = 0, left_g = 0, left_b = 0;
+		int above_r = 0, above_g = 0, above_b = 0;
+
+		for (int y = 0, i = 0; y < h; y++) {
+			left_r = above_r;
+			left_g = above_g;
+			left_b = above_b;
+			int row = i;
+
+			for (int end = i + 3 * w; i < end; i += 3) {
+				int r = (byte) (left_r + unzigzag(data[i]));
+				int g = (byte) (left_g + unzigzag(data[i + 1]));
+				int b = (byte) (left_b + unzigzag(data[i + 2]));
+				left_r = r;
+				left_g = g;
+				left_b = b;
+
+				data[i] = (byte) (r + g);
+				data[i + 1] = (byte) g;
+				data[i + 2] = (byte) (b + g);
+			}
+
+			// the subtract green values of column 0, for the next row
+			above_g = data[row + 1];
+			above_r = (byte) (data[row] - above_g);
+			above_b = (byte) (data[row + 2] - above_g);
+		}
+
+		CodingPhase.finish(event, CodingPhase.FUSED_TRANSFORM, null, data.length, data.length, data.length);
+	}
+
+	/**
+	 * Same as {@link ZigzagCoder#enc(byte)} of (byte) v, as an unsigned value.
+	 */
+	private static int zigzag(int v) {
+		v = (byte) v;
+		return ((v << 1) ^ (v >> 31)) & 0xff;
+	}
+
+	/**
+	 * Same as {@link ZigzagCoder#dec(byte)}, without wrapping to a byte.
+	 */
+	private static int unzigzag(byte v) {
+		int z = v & 0xff;
+		return (z >>> 1) ^ -(z & 1);
+	}
+
+	private static void check_size(byte[] data, int w, int h) {
+		if (w < 0 || h < 0 || data.length != 3L * w * h) {
+			throw new IllegalArgumentException(
+					"data of " + data.length + " bytes is not an image of " + w + " x " + h + " pixels");
+		}
+	}
+}
@@ -1,22 +1,32 @@
 package arithmetic_compression.coder;
 
+import arithmetic_compression.CodingPhase;
+
 public class SubtractGreenTransform {
 
 	public static final SubtractGreenTransform INSTANCE = new SubtractGreenTransform();
 
 	public void encode(byte[] data) {
+		Object event = CodingPhase.start();
+
 		for (int i = 0; i < data.length; i += 3) {
 			int g = data[i + 1];
 			data[i] = (byte) (data[i] - g);
 			data[i + 2] = (byte) (data[i + 2] - g);
 		}
+
+		CodingPhase.finish(event, CodingPhase.COLOR_TRANSFORM, null, data.length, data.length, data.length);
 	}
 
 	public void decode(byte[] data) {
+		Object event = CodingPhase.start();
+
 		for (int i = 0; i < data.length; i += 3) {
 			int g = data[i + 1];
 			data[i] = (byte) (data[i] + g);
 			data[i + 2] = (byte) (data[i + 2] + g);
 		}
+
+		CodingPhase.finish(event, CodingPhase.COLOR_TRANSFORM, null, data.length, data.length, data.length);
 	}
 }
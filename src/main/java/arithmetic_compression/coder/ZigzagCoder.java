@@ -1,19 +1,29 @@
 package arithmetic_compression.coder;
 
+import arithmetic_compression.CodingPhase;
+
 public class ZigzagCoder {
 
 	public static final ZigzagCoder INSTANCE = new ZigzagCoder();
 
 	public void enc(byte[] data) {
+		Object event = CodingPhase.start();
+
 		for (int i = 0; i < data.length; i++) {
 			data[i] = enc(data[i]);
 		}
+
+		CodingPhase.finish(event, CodingPhase.ZIGZAG, null, data.length, data.length, data.length);
 	}
 
 	public void dec(byte[] data) {
+		Object event = CodingPhase.start();
+
 		for (int i = 0; i < data.length; i++) {
 			data[i] = dec(data[i]);
 		}
+
+		CodingPhase.finish(event, CodingPhase.ZIGZAG, null, data.length, data.length, data.length);
 	}
 
 	/**
@@ -0,0 +1,211 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.util.Arrays;
+
+/**
+ * {@link ContextModel} with one adaptive distribution per context, each
+ * working like {@link AdaptiveSymbolModel}: counts start at 1, each coded
+ * symbol adds increment to its count, and the counts of a context are halved
+ * when its total exceeds max_total_count.
+ * <p>
+ * To keep many contexts in cache, max_total_count is limited to 0xffff, so
+ * that the Fenwick trees of all contexts fit into a single char array with
+ * symbol_count + 1 entries per context (entry 0 of each row unused). Counts
+ * are not stored separately, count(ctx, symbol) is derived from the tree.
+ * With 256 symbols, this is 514 bytes per context: 128 KiB for order 1, 2
+ * MiB for order 2 with 16 levels for the second symbol.
+ * </p>
+ */
+public class AdaptiveContextModel implements ContextModel {
+
+	public static final int DEFAULT_INCREMENT = 32;
+
+	public static final int MAX_TOTAL_COUNT_LIMIT = Character.MAX_VALUE;
+
+	int context_count;
+
+	int symbol_count;
+
+	int increment;
+
+	int max_total_count;
+
+	char[] tree;
+
+	int row_length;
+
+	int[] total_count;
+
+	int top_step;
+
+	public AdaptiveContextModel(int context_count, int symbol_count) {
+		this(context_count, symbol_count, DEFAULT_INCREMENT, MAX_TOTAL_COUNT_LIMIT);
+	}
+
+	public AdaptiveContextModel(int context_count, int symbol_count, int increment, int max_total_count) {
+		if (symbol_count < 2) {
+			throw new IllegalArgumentException("symbol_count must be at least 2 (symbol_count = " + symbol_count + ")");
+		}
+
+		if (max_total_count > MAX_TOTAL_COUNT_LIMIT) {
+			throw new IllegalArgumentException("max_total_count must not exceed " + MAX_TOTAL_COUNT_LIMIT
+					+ " (max_total_count = " + max_total_count + ")");
+		}
+
+		if (increment < 1 || (long) symbol_count + increment > max_total_count) {
+			// guarantees total_count <= max_total_count after a rescale
+			throw new IllegalArgumentException("increment must be in range [1, max_total_count - symbol_count] "
+					+ "(increment = " + increment + ", max_total_count = " + max_total_count + ", symbol_count = "
+					+ symbol_count + ")");
+		}
+
+		this.context_count = context_count;
+		this.symbol_count = symbol_count;
+		this.increment = increment;
+		this.max_total_count = max_total_count;
+
+		row_length = symbol_count + 1;
+		tree = new char[Math.multiplyExact(context_count, row_length)];
+		total_count = new int[context_count];
+		top_step = Integer.highestOneBit(symbol_count);
+
+		reset();
+	}
+
+	/**
+	 * Sets all counts of all contexts back to 1.
+	 */
+	public void reset() {
+		int[] count = new int[symbol_count];
+		Arrays.fill(count, 1);
+
+		for (int ctx = 0; ctx < context_count; ctx++) {
+			build_row(ctx, count);
+		}
+	}
+
+	@Override
+	public int context_count() {
+		return context_count;
+	}
+
+	@Override
+	public int symbol_count() {
+		return symbol_count;
+	}
+
+	@Override
+	public int total_count(int ctx) {
+		return total_count[ctx];
+	}
+
+	@Override
+	public int max_total_count() {
+		return max_total_count;
+	}
+
+	@Override
+	public int cum_count(int ctx, int symbol) {
+		int row = ctx * row_length;
+		int sum = 0;
+		for (int i = symbol; i > 0; i -= i & -i) {
+			sum += tree[row + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public int count(int ctx, int symbol) {
+		// tree[i] covers (i - lowbit(i), i]; subtract the nodes which cover
+		// (i - lowbit(i), i - 1] to get the count of symbol i - 1
+		int row = ctx * row_length;
+		int i = symbol + 1;
+		int count = tree[row + i];
+		int stop = i - (i & -i);
+		for (int j = i - 1; j > stop; j -= j & -j) {
+			count -= tree[row + j];
+		}
+		return count;
+	}
+
+	@Override
+	public int symbol(int ctx, int cum) {
+		int row = ctx * row_length;
+		int pos = 0;
+		for (int step = top_step; step != 0; step >>>= 1) {
+			int next = pos + step;
+			if (next <= symbol_count && tree[row + next] <= cum) {
+				pos = next;
+				cum -= tree[row + next];
+			}
+		}
+
+		return pos;
+	}
+
+	@Override
+	public void update(int ctx, int symbol) {
+		total_count[ctx] += increment;
+
+		if (total_count[ctx] > max_total_count) {
+			int[] count = counts(ctx);
+			count[symbol] += increment;
+			for (int s = 0; s < symbol_count; s++) {
+				count[s] = (count[s] + 1) >>> 1;
+			}
+			build_row(ctx, count);
+			return;
+		}
+
+		int row = ctx * row_length;
+		for (int i = symbol + 1; i <= symbol_count; i += i & -i) {
+			tree[row + i] += increment;
+		}
+	}
+
+	/**
+	 * Returns the counts of the specified context, by undoing build_row().
+	 */
+	private int[] counts(int ctx) {
+		int row = ctx * row_length;
+		int[] count = new int[symbol_count];
+		for (int i = 1; i <= symbol_count; i++) {
+			count[i - 1] = tree[row + i];
+		}
+
+		for (int i = symbol_count; i >= 1; i--) {
+			int parent = i + (i & -i);
+			if (parent <= symbol_count) {
+				count[parent - 1] -= count[i - 1];
+			}
+		}
+
+		return count;
+	}
+
+	private void build_row(int ctx, int[] count) {
+		int row = ctx * row_length;
+		int[] sums = new int[row_length];
+		int total = 0;
+		for (int i = 1; i <= symbol_count; i++) {
+			sums[i] = count[i - 1];
+			total += count[i - 1];
+		}
+
+		for (int i = 1; i <= symbol_count; i++) {
+			int parent = i + (i & -i);
+			if (parent <= symbol_count) {
+				sums[parent] += sums[i];
+			}
+			tree[row + i] = (char) sums[i];
+		}
+
+		total_count[ctx] = total;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(context_count=" + context_count + ", symbol_count=" + symbol_count
+				+ ", increment=" + increment + ", max_total_count=" + max_total_count + ")";
+	}
+}
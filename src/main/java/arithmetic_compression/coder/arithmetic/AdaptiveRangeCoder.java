@@ -0,0 +1,81 @@
+package arithmetic_compression.coder.arithmetic;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * {@link RangeCoder} which takes the symbol intervals from an
+ * {@link AdaptiveSymbolModel} and updates the model after each symbol. No
+ * histogram is needed in advance, so data can be encoded in a single pass as
+ * it arrives, and nothing about the distribution has to be stored alongside
+ * the encoded data.
+ * <p>
+ * The model is part of the coder state: encoder and decoder each need their
+ * own model, created with the same parameters.
+ * </p>
+ */
+public class AdaptiveRangeCoder extends RangeCoder {
+
+	AdaptiveSymbolModel model;
+
+	public AdaptiveRangeCoder(int symbol_count) {
+		this(new AdaptiveSymbolModel(symbol_count));
+	}
+
+	public AdaptiveRangeCoder(AdaptiveSymbolModel model) {
+		this.model = model;
+	}
+
+	public AdaptiveSymbolModel model() {
+		return model;
+	}
+
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		long r = range / model.total_count();
+
+		int write_count = encode_interval(r, model.cum_count(symbol), model.count(symbol), sink);
+		model.update(symbol);
+
+		return write_count;
+	}
+
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return max_encoded_size(symbol_count, model.max_total_count);
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		read_initial_code(source);
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		long total_count = model.total_count();
+
+		long r = range / total_count;
+		int target_cum_count = (int) Math.min(code / r, total_count - 1);
+
+		int symbol = model.symbol(target_cum_count);
+
+		decode_interval(r, model.cum_count(symbol), model.count(symbol), source);
+		model.update(symbol);
+
+		return symbol;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    low        = ").append(Long.toHexString(low)).append("\n");
+		buf.append("    range      = ").append(Long.toHexString(range)).append("\n");
+		buf.append("    cache      = ").append(Integer.toHexString(cache)).append("\n");
+		buf.append("    cache_size = ").append(cache_size).append("\n");
+		buf.append("    model = ").append(model);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,195 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.util.Arrays;
+
+/**
+ * Symbol counts which are updated after every coded symbol, so that encoder
+ * and decoder learn the distribution on the fly instead of needing a
+ * histogram of the whole data in advance.
+ * <p>
+ * The counts are kept in a binary indexed tree (Fenwick tree): tree[i] holds
+ * the sum of the counts of the symbols in (i - lowbit(i), i], 1-based. Both
+ * the cumulative count of a symbol and the increment of a count touch
+ * O(log(symbol_count)) entries, and so does finding the symbol for a
+ * cumulative count.
+ * </p>
+ * <p>
+ * Each coded symbol adds increment to its count. When total_count exceeds
+ * max_total_count, all counts are halved (rounding up, so that no symbol
+ * drops to 0). A larger increment relative to max_total_count adapts faster
+ * to changing statistics, a smaller one gives more precise estimates of
+ * stationary ones.
+ * </p>
+ */
+public class AdaptiveSymbolModel {
+
+	public static final int DEFAULT_INCREMENT = 32;
+
+	public static final int DEFAULT_MAX_TOTAL_COUNT = 1 << 16;
+
+	/**
+	 * Upper limit for max_total_count, so that the coders keep enough
+	 * precision when dividing their range by total_count.
+	 */
+	public static final int MAX_TOTAL_COUNT_LIMIT = 1 << 24;
+
+	int symbol_count;
+
+	int increment;
+
+	int max_total_count;
+
+	/**
+	 * 1-based, tree[0] is unused.
+	 */
+	int[] tree;
+
+	int[] count;
+
+	int total_count;
+
+	/**
+	 * Highest power of 2 less or equal to symbol_count, the first step of the
+	 * search in symbol().
+	 */
+	int top_step;
+
+	public AdaptiveSymbolModel(int symbol_count) {
+		this(symbol_count, DEFAULT_INCREMENT, DEFAULT_MAX_TOTAL_COUNT);
+	}
+
+	public AdaptiveSymbolModel(int symbol_count, int increment, int max_total_count) {
+		if (symbol_count < 2) {
+			throw new IllegalArgumentException("symbol_count must be at least 2 (symbol_count = " + symbol_count + ")");
+		}
+
+		if (max_total_count > MAX_TOTAL_COUNT_LIMIT) {
+			throw new IllegalArgumentException("max_total_count must not exceed " + MAX_TOTAL_COUNT_LIMIT
+					+ " (max_total_count = " + max_total_count + ")");
+		}
+
+		if (increment < 1 || (long) symbol_count + increment > max_total_count) {
+			// guarantees total_count <= max_total_count after a rescale
+			throw new IllegalArgumentException("increment must be in range [1, max_total_count - symbol_count] "
+					+ "(increment = " + increment + ", max_total_count = " + max_total_count + ", symbol_count = "
+					+ symbol_count + ")");
+		}
+
+		this.symbol_count = symbol_count;
+		this.increment = increment;
+		this.max_total_count = max_total_count;
+
+		tree = new int[symbol_count + 1];
+		count = new int[symbol_count];
+		top_step = Integer.highestOneBit(symbol_count);
+
+		reset();
+	}
+
+	/**
+	 * Sets all counts back to 1, the state in which encoder and decoder start.
+	 */
+	public void reset() {
+		Arrays.fill(count, 1);
+		rebuild_tree();
+	}
+
+	public int symbol_count() {
+		return symbol_count;
+	}
+
+	public int total_count() {
+		return total_count;
+	}
+
+	public int count(int symbol) {
+		return count[symbol];
+	}
+
+	/**
+	 * Returns the sum of the counts of all symbols below the specified one.
+	 */
+	public int cum_count(int symbol) {
+		int sum = 0;
+		for (int i = symbol; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the symbol whose interval [cum_count(symbol), cum_count(symbol) +
+	 * count(symbol)) contains the specified cumulative count, which has to be
+	 * in the range [0, total_count).
+	 */
+	public int symbol(int cum) {
+		int pos = 0;
+		for (int step = top_step; step != 0; step >>>= 1) {
+			int next = pos + step;
+			if (next <= symbol_count && tree[next] <= cum) {
+				pos = next;
+				cum -= tree[next];
+			}
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Adds increment to the count of the specified symbol, and halves all
+	 * counts if total_count exceeds max_total_count then.
+	 */
+	public void update(int symbol) {
+		count[symbol] += increment;
+		total_count += increment;
+
+		if (total_count > max_total_count) {
+			rescale();
+			return;
+		}
+
+		for (int i = symbol + 1; i <= symbol_count; i += i & -i) {
+			tree[i] += increment;
+		}
+	}
+
+	private void rescale() {
+		for (int symbol = 0; symbol < symbol_count; symbol++) {
+			count[symbol] = (count[symbol] + 1) >>> 1;
+		}
+		rebuild_tree();
+	}
+
+	/**
+	 * Builds the tree from count in O(symbol_count) by pushing each partial
+	 * sum up to its parent.
+	 */
+	private void rebuild_tree() {
+		total_count = 0;
+		for (int i = 1; i <= symbol_count; i++) {
+			tree[i] = count[i - 1];
+			total_count += count[i - 1];
+		}
+
+		for (int i = 1; i <= symbol_count; i++) {
+			int parent = i + (i & -i);
+			if (parent <= symbol_count) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("(");
+		buf.append("total_count=").append(total_count);
+		buf.append(", increment=").append(increment);
+		buf.append(", max_total_count=").append(max_total_count);
+		buf.append(", count=").append(Arrays.toString(count));
+		buf.append(")");
+
+		return buf.toString();
+	}
+}
@@ -1,15 +1,24 @@
 package arithmetic_compression.coder.arithmetic;
 
-import java.util.Arrays;
-
 import arithmetic_compression.io.BitInputStream;
 import arithmetic_compression.io.BitOutputStream;
 import arithmetic_compression.io.twiddlingbits.BinaryFormatter;
 
-public class ArithmeticCoder {
+public class ArithmeticCoder implements EntropyCoder {
+
+	/**
+	 * Distributions with a larger total_count are normalized to a total_count
+	 * of 2^MAX_TOTAL_BITS, see the constructor.
+	 */
+	public static final int MAX_TOTAL_BITS = 27;
 
 	SymbolProbabilityDistribution dist;
 
+	/**
+	 * log2(total_count) if total_count is a power of 2, otherwise -1.
+	 */
+	int total_count_shift;
+
 	int wordSize;
 
 	/**
@@ -38,6 +47,16 @@ public class ArithmeticCoder {
 
 	int scale3;
 
+	/**
+	 * Only used for decoding.
+	 */
+	SymbolLookupTable symbol_lookup_table;
+
+	/**
+	 * Only used for encoding, null if no statistics are collected.
+	 */
+	CodingStatsSink stats;
+
 	public ArithmeticCoder(SymbolProbabilityDistribution dist) {
 		this.dist = new SymbolProbabilityDistribution(dist);
 
@@ -45,6 +64,15 @@ public class ArithmeticCoder {
 
 		ensureSaneTotalCount(total_count);
 
+		if (total_count > (1 << MAX_TOTAL_BITS)) {
+			// wordSize below needs 2 bits of margin space above total_count,
+			// and u - l + 1 must not overflow an int, i.e. wordSize <= 30
+			this.dist = this.dist.normalized(MAX_TOTAL_BITS);
+			total_count = this.dist.total_count;
+		}
+
+		total_count_shift = this.dist.total_count_shift();
+
 		// Introduction to Data Compression, Khalid Sayood, chapter 4, p. 104,
 		// section "Example 4.4.4":
 		// "In order to make sure that the endpoints of the intervals always
@@ -74,8 +102,18 @@ public class ArithmeticCoder {
 		u = maskWord;
 		t = 0;
 		scale3 = 0;
+	}
+
+	/**
+	 * Sets the sink which receives the statistics of encoding, or null for
+	 * none. Has to be set before the first symbol is encoded.
+	 */
+	public void set_stats(CodingStatsSink stats) {
+		this.stats = stats;
 
-		// log(0, toString());
+		if (stats != null) {
+			stats.start(dist);
+		}
 	}
 
 	/**
@@ -84,56 +122,56 @@ public class ArithmeticCoder {
 	 * sometimes not write any bits for a symbol and instead only modify the
 	 * internal status of the encoder.
 	 */
+	@Override
 	public int encode(int symbol, BitOutputStream sink) {
-//		log(0, "encode(" + symbol + ")");
-
 		long cum_count_prev = dist.cum_count[symbol];
 		long cum_count_symb = dist.cum_count[symbol + 1];
 		long total_count = dist.total_count;
 		int write_count = 0;
 
 		long diam = u - l + 1;
-		u = l + (int) (diam * cum_count_symb / total_count) - 1;
-		l = l + (int) (diam * cum_count_prev / total_count);
-//		log(1, "l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) + " (" + l + ")");
-//		log(1, "u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) + " (" + u + ")");
-
-		for (;;) {
-			if (is_msb_equal()) {
-				int b = (l >> shiftMsbToLsb) & 1;
-//				log(1, "msb_eq, write " + b);
-				sink.write(b);
-				write_count++;
-				l = ((l << 1) & maskWord);
-				u = ((u << 1) & maskWord) | 1;
-//				log(2, "l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) + " (" + l + ")");
-//				log(2, "u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) + " (" + u + ")");
-
-				write_count += write_scale3_if_gt_0(sink, b);
-
-			} else if (is_second_msb_close()) {
-//				log(1, "second_msb_close, scale3++");
-
-				try {
-					scale3 = Math.incrementExact(scale3);
-				} catch (ArithmeticException e) {
-					throw new RuntimeException("too many e3 scalings. can't encode data with this implementation.", e);
-				}
-
-				l = ((l << 1) & maskWord);
-				u = ((u << 1) & maskWord) | 1;
-				l ^= maskMsb;
-				u ^= maskMsb;
-
-//				log(2, "l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) + " (" + l + ")");
-//				log(2, "u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) + " (" + u + ")");
-
-			} else {
-				break;
+		if (total_count_shift >= 0) {
+			u = l + (int) ((diam * cum_count_symb) >>> total_count_shift) - 1;
+			l = l + (int) ((diam * cum_count_prev) >>> total_count_shift);
+		} else {
+			u = l + (int) (diam * cum_count_symb / total_count) - 1;
+			l = l + (int) (diam * cum_count_prev / total_count);
+		}
+
+		// E1/E2: the k leading bits which l and u agree on are settled and
+		// written at once, the first of them followed by the pending E3 bits
+		int k = leading_equal_bit_count();
+		if (k > 0) {
+			int b = (l >> shiftMsbToLsb) & 1;
+			sink.write(b);
+			write_count++;
+
+			write_count += write_scale3_if_gt_0(sink, b);
+
+			sink.write_msb_first(l >>> (wordSize - k), k - 1);
+			write_count += k - 1;
+
+			shift_out(k);
+		}
+
+		// E3: afterwards, the msbs of l and u differ; l = 01..., u = 10...
+		// each further 1 of l and 0 of u below the msb is one E3 scaling
+		int m = e3_scaling_count();
+		if (m > 0) {
+			try {
+				scale3 = Math.addExact(scale3, m);
+			} catch (ArithmeticException e) {
+				throw new RuntimeException("too many e3 scalings. can't encode data with this implementation.", e);
 			}
+
+			shift_out(m);
+			l ^= maskMsb;
+			u ^= maskMsb;
 		}
 
-//		log();
+		if (stats != null) {
+			stats.symbol(symbol, write_count, k + m, m, scale3);
+		}
 
 		return write_count;
 	}
@@ -145,26 +183,33 @@ public class ArithmeticCoder {
 		int write_count = 0;
 
 		if (scale3 > 0) {
-			int b = 1 - prev_bit;
-			do {
-//				log(1, "scale3=" + scale3 + ", write " + b);
-				sink.write(b);
-				write_count++;
-				scale3--;
-			} while (scale3 > 0);
+			sink.write_run(1 - prev_bit, scale3);
+			write_count = scale3;
+			scale3 = 0;
 		}
 
 		return write_count;
 	}
 
+	/**
+	 * Renormalization keeps u - l above a quarter of the 2^wordSize word,
+	 * which is more than total_count, so each symbol leaves an interval of at
+	 * least 1 and takes at most wordSize scalings, each emitting at most one
+	 * bit, directly or as pending E3 bit. finish_encoding() writes wordSize
+	 * more bits.
+	 */
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return ((symbol_count + 1) * wordSize + 7) / 8;
+	}
+
 	/**
 	 * After the last symbol was written to the sink, there might be additional
 	 * data required by the decoder. This method writes any such data to the
 	 * sink. Returned is the number of bits written by this method.
 	 */
+	@Override
 	public int finish_encoding(BitOutputStream sink) {
-//		log(0, "finish_encoding()");
-
 		// Introduction to Data Compression, Khalid Sayood, chapter 4, p. 106,
 		// section "Example 4.4.4":
 		// "If we wished to terminate the encoding at this point, we have to
@@ -185,134 +230,103 @@ public class ArithmeticCoder {
 
 		int write_count = 0;
 
-		// the BitOutputStream takes chunks of bits in little endian. However,
-		// we want to write out in big endian, so we have to write one by one
-		// bit in reverse order
+		// l is written msb first, the pending E3 bits after its msb
 		int i = wordSize - 1;
 
 		int b = (l >> i) & 1;
-		log(1, "write l[" + i + "]=" + BinaryFormatter.toBinStrBE_minLen(b, 1));
 		sink.write(b);
 		write_count++;
-		i--;
 
 		write_count += write_scale3_if_gt_0(sink, b);
 
-		for (; i >= 0; i--) {
-			b = (l >> i) & 1;
-//			log(1, "write l[" + i + "]=" + BinaryFormatter.toBinStrBE_minLen(b, 1));
-			sink.write(b);
-			write_count++;
-		}
+		sink.write_msb_first(l, i);
+		write_count += i;
 
-		// log();
+		if (stats != null) {
+			stats.finish(write_count);
+		}
 
 		return write_count;
 	}
 
 	/**
 	 */
+	@Override
 	public void start_decoding(BitInputStream source) {
-		for (int i = 0; i < wordSize; i++) {
-			t = (t << 1) | source.read();
-		}
+		symbol_lookup_table = dist.symbol_lookup_table();
+
+		t = source.read_msb_first(wordSize);
 	}
 
 	/**
 	 */
+	@Override
 	public int decode(BitInputStream source) {
-		// log("decode()");
-
 		long total_count = dist.total_count;
 
 		long num = (t - l + 1) * total_count - 1;
 		int target_cum_count = (int) (num / (u - l + 1));
 
-		// log(" target_cum_count=" + target_cum_count);
-
-		int symbol = Arrays.binarySearch(dist.cum_count, target_cum_count);
-		if (symbol < 0) {
-			symbol = -(symbol + 2);
-		}
-
-		// log(" symbol=" + symbol + " (dist.cum_count.length=" +
-		// dist.cum_count.length + ")");
+		int symbol = symbol_lookup_table.symbol(target_cum_count);
 
 		long cum_count_prev = dist.cum_count[symbol];
 		long cum_count_symb = dist.cum_count[symbol + 1];
 
 		long diam = u - l + 1;
-		u = l + (int) (diam * cum_count_symb / total_count) - 1;
-		l = l + (int) (diam * cum_count_prev / total_count);
-		// log(" l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) + " (" + l
-		// + ")");
-		// log(" u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) + " (" + u
-		// + ")");
-
-		for (;;) {
-			if (is_msb_equal()) {
-				// log(" msb_equal");
-
-				l = ((l << 1) & maskWord);
-				u = ((u << 1) & maskWord) | 1;
-				t = ((t << 1) & maskWord);
-
-				int b = source.read();
-				b = (1 - ((b + 1) & 1)); // #nobranch
-				t |= b;
-
-				// log(" l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) +
-				// " (" + l + ")");
-				// log(" u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) +
-				// " (" + u + ")");
-				// log(" t=" + BinaryFormatter.toBinStrBE_minLen(t, wordSize) +
-				// " (" + t + ")");
-
-			} else if (is_second_msb_close()) {
-				// log(" second_msb_close");
-
-				l = ((l << 1) & maskWord);
-				u = ((u << 1) & maskWord) | 1;
-				t = ((t << 1) & maskWord);
-
-				int b = source.read();
-				b = (1 - ((b + 1) & 1)); // #nobranch
-				t |= b;
-
-				l ^= maskMsb;
-				u ^= maskMsb;
-				t ^= maskMsb;
-
-				// log(" l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) +
-				// " (" + l + ")");
-				// log(" u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) +
-				// " (" + u + ")");
-				// log(" t=" + BinaryFormatter.toBinStrBE_minLen(t, wordSize) +
-				// " (" + t + ")");
-
-			} else {
-				break;
-			}
+		if (total_count_shift >= 0) {
+			u = l + (int) ((diam * cum_count_symb) >>> total_count_shift) - 1;
+			l = l + (int) ((diam * cum_count_prev) >>> total_count_shift);
+		} else {
+			u = l + (int) (diam * cum_count_symb / total_count) - 1;
+			l = l + (int) (diam * cum_count_prev / total_count);
+		}
+
+		// same scalings as in encode(...), t follows l and u and takes in
+		// the bits which the encoder wrote for them
+		int k = leading_equal_bit_count();
+		if (k > 0) {
+			t = ((t << k) & maskWord) | source.read_msb_first(k);
+			shift_out(k);
 		}
 
-		// log();
+		int m = e3_scaling_count();
+		if (m > 0) {
+			t = (((t << m) & maskWord) | source.read_msb_first(m)) ^ maskMsb;
+			shift_out(m);
+			l ^= maskMsb;
+			u ^= maskMsb;
+		}
 
 		return symbol;
 	}
 
 	/**
-	 * Checks if the second msb of l is high and that of u is low.
+	 * Returns the number of leading bits in which l and u are equal, which
+	 * are the bits of all E1 and E2 scalings due now; at most wordSize.
+	 */
+	private int leading_equal_bit_count() {
+		int diff = (l ^ u) << (32 - wordSize);
+		return (diff == 0) ? wordSize : Integer.numberOfLeadingZeros(diff);
+	}
+
+	/**
+	 * With the msb of l being 0 and that of u being 1, returns the number of
+	 * E3 scalings due now: the number of bits below the msb in which l is 1
+	 * and u is 0. Bits shifted in from below the word stop both counts.
 	 */
-	private boolean is_second_msb_close() {
-		return (l & mask2ndMsb) != 0 && (u & mask2ndMsb) == 0;
+	private int e3_scaling_count() {
+		int shift = 33 - wordSize;
+		int l_ones = Integer.numberOfLeadingZeros(~(l << shift));
+		int u_zeros = Integer.numberOfLeadingZeros((u << shift) | ((1 << shift) - 1));
+		return Math.min(l_ones, u_zeros);
 	}
 
 	/**
-	 * Returns true if, and only if, u and l are both in the first or both in
-	 * the second half of the scaled interval.
+	 * Shifts n bits out of l and u, shifting in 0s into l and 1s into u.
 	 */
-	private boolean is_msb_equal() {
-		return (l & maskMsb) == (u & maskMsb);
+	private void shift_out(int n) {
+		l = (l << n) & maskWord;
+		u = ((u << n) & maskWord) | ~(-1 << n);
 	}
 
 	private void ensureSaneTotalCount(int total_count) {
@@ -336,28 +350,6 @@ public class ArithmeticCoder {
 							+ ", thus entropy is 0 and arithmetic encoding is not applicable / is trivial "
 							+ "and always of length 0.");
 		}
-
-		if (Integer.numberOfLeadingZeros(total_count) < 3) {
-			throw new ArithmeticException("less than 2 bits of margin space above total number of occurences in "
-					+ SymbolProbabilityDistribution.class.getSimpleName()
-					+ ", thus this implementation can't do the arithmetic encoding; workaround: "
-					+ "use lower numbers of occurences in the probability distribution.");
-		}
-	}
-
-	private static final String INDENTATION_SPACE = "    ";
-
-	private static void log() {
-		System.out.println();
-		// throw new RuntimeException();
-	}
-
-	private static void log(int indentLevel, Object o) {
-		for (int i = 0; i < indentLevel; i++) {
-			System.out.print(INDENTATION_SPACE);
-		}
-		System.out.println(o);
-		// throw new RuntimeException();
 	}
 
 	public String toString() {
@@ -0,0 +1,200 @@
+package arithmetic_compression.coder.arithmetic;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Arithmetic coder with the state held in longs which renormalizes by whole
+ * bytes instead of single bits. Accepts the same distributions as
+ * {@link ArithmeticCoder}, but produces a different bitstream.
+ * <p>
+ * Instead of E3 scalings, an interval straddling a byte boundary while being
+ * too small is shrunk to the part below that boundary ("carryless range
+ * coder", Dmitry Subbotin). This costs a tiny bit of compression, but keeps
+ * the renormalization loop free of pending bits, so each iteration emits
+ * exactly one byte.
+ * </p>
+ */
+public class ArithmeticCoder64 implements EntropyCoder {
+
+	/**
+	 * Number of bits of low, range and code. A multiple of 8, so that bytes
+	 * can be shifted out without re-aligning, and below 63, so that low +
+	 * range never overflows a signed long.
+	 */
+	static final int STATE_BITS = 56;
+
+	static final long MASK_STATE = (1L << STATE_BITS) - 1;
+
+	/**
+	 * By how many bits to shift low to the right to get the byte to emit.
+	 */
+	static final int SHIFT_TOP_BYTE = STATE_BITS - 8;
+
+	/**
+	 * If low and low + range differ below this, the top byte is settled.
+	 */
+	static final long TOP = 1L << SHIFT_TOP_BYTE;
+
+	/**
+	 * Minimum range after renormalization. Any int total_count is far below
+	 * this, so range / total_count keeps at least 9 bits of precision.
+	 */
+	static final long BOT = 1L << (STATE_BITS - 16);
+
+	SymbolProbabilityDistribution dist;
+
+	/**
+	 * log2(total_count) if total_count is a power of 2, otherwise -1.
+	 */
+	int total_count_shift;
+
+	/**
+	 * Lower bound of the current interval, exclusive upper bound is low +
+	 * range. low + range never exceeds 2^STATE_BITS, thus there is never a
+	 * carry into already written bytes.
+	 */
+	long low;
+
+	long range;
+
+	/**
+	 * Only used for decoding; the STATE_BITS many bits of the encoded stream
+	 * aligned with low and range.
+	 */
+	long code;
+
+	/**
+	 * Only used for decoding.
+	 */
+	SymbolLookupTable symbol_lookup_table;
+
+	public ArithmeticCoder64(SymbolProbabilityDistribution dist) {
+		this.dist = new SymbolProbabilityDistribution(dist);
+
+		ensureSaneTotalCount(this.dist.total_count);
+
+		total_count_shift = this.dist.total_count_shift();
+
+		low = 0;
+		range = MASK_STATE;
+		code = 0;
+	}
+
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		long cum_count_prev = dist.cum_count[symbol];
+		long cum_count_symb = dist.cum_count[symbol + 1];
+
+		long r = (total_count_shift >= 0) ? (range >>> total_count_shift) : (range / dist.total_count);
+		low += r * cum_count_prev;
+		range = r * (cum_count_symb - cum_count_prev);
+
+		int write_count = 0;
+
+		for (;;) {
+			if ((low ^ (low + range)) >= TOP) {
+				if (range >= BOT) {
+					break;
+				}
+
+				range = -low & (BOT - 1);
+			}
+
+			sink.write((int) (low >>> SHIFT_TOP_BYTE), 8);
+			write_count += 8;
+			low = (low << 8) & MASK_STATE;
+			range <<= 8;
+		}
+
+		return write_count;
+	}
+
+	/**
+	 * When range is shrunk to the part below a byte boundary, it can get as
+	 * small as 1, which takes up to STATE_BITS / 8 bytes to renormalize.
+	 * finish_encoding() writes STATE_BITS / 8 more.
+	 */
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return (symbol_count + 1) * (STATE_BITS / 8);
+	}
+
+	@Override
+	public int finish_encoding(BitOutputStream sink) {
+		for (int i = 0; i < STATE_BITS; i += 8) {
+			sink.write((int) (low >>> SHIFT_TOP_BYTE), 8);
+			low = (low << 8) & MASK_STATE;
+		}
+
+		return STATE_BITS;
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		symbol_lookup_table = dist.symbol_lookup_table();
+
+		for (int i = 0; i < STATE_BITS; i += 8) {
+			code = (code << 8) | (source.read(8) & 0xff);
+		}
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		long total_count = dist.total_count;
+
+		long r = (total_count_shift >= 0) ? (range >>> total_count_shift) : (range / total_count);
+		int target_cum_count = (int) Math.min((code - low) / r, total_count - 1);
+
+		int symbol = symbol_lookup_table.symbol(target_cum_count);
+
+		long cum_count_prev = dist.cum_count[symbol];
+		long cum_count_symb = dist.cum_count[symbol + 1];
+
+		low += r * cum_count_prev;
+		range = r * (cum_count_symb - cum_count_prev);
+
+		for (;;) {
+			if ((low ^ (low + range)) >= TOP) {
+				if (range >= BOT) {
+					break;
+				}
+
+				range = -low & (BOT - 1);
+			}
+
+			code = ((code << 8) & MASK_STATE) | (source.read(8) & 0xff);
+			low = (low << 8) & MASK_STATE;
+			range <<= 8;
+		}
+
+		return symbol;
+	}
+
+	private void ensureSaneTotalCount(int total_count) {
+		if (total_count == 0) {
+			throw new ArithmeticException(
+					"total number of occurences in " + SymbolProbabilityDistribution.class.getSimpleName()
+							+ " is 0; this is not a valid probability distribution, thus cannot be used for encoding");
+		}
+
+		if (total_count == 1) {
+			throw new ArithmeticException(
+					"total number of occurences in " + SymbolProbabilityDistribution.class.getSimpleName() + " is 1"
+							+ ", thus entropy is 0 and arithmetic encoding is not applicable / is trivial "
+							+ "and always of length 0.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    low   = ").append(Long.toHexString(low)).append("\n");
+		buf.append("    range = ").append(Long.toHexString(range)).append("\n");
+		buf.append("    dist = ").append(dist);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,237 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.util.Arrays;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Adaptive binary arithmetic coder: codes single bits, each with the
+ * probability taken from an entry of a caller-provided probability array,
+ * and adapts that entry towards the coded bit. This is the building block for
+ * coding symbols as a sequence of binary decisions, see
+ * {@link BitTreeCoder}.
+ * <p>
+ * A probability is the chance of a 0 bit, scaled to PROB_BITS = 12 bits. The
+ * coded interval is split at (range >>> PROB_BITS) * p, and the update moves
+ * p by 1/2^adapt_shift of its distance to 0 or 2^PROB_BITS, so neither coding
+ * nor adapting needs a division. Smaller adapt_shift adapts faster, larger
+ * adapt_shift estimates stationary probabilities more precisely.
+ * </p>
+ * <p>
+ * The range coder part has a 32 bit range and resolves carries like
+ * {@link RangeCoder} (layout as in LZMA).
+ * </p>
+ */
+public class BinaryArithmeticCoder {
+
+	public static final int PROB_BITS = 12;
+
+	public static final int PROB_ONE = 1 << PROB_BITS;
+
+	/**
+	 * Initial probability: 0 and 1 equally likely.
+	 */
+	public static final char PROB_INIT = (char) (PROB_ONE / 2);
+
+	public static final int DEFAULT_ADAPT_SHIFT = 5;
+
+	static final long MASK_STATE = 0xffffffffL;
+
+	static final int SHIFT_TOP_BYTE = 24;
+
+	static final long TOP = 1L << SHIFT_TOP_BYTE;
+
+	int adapt_shift;
+
+	long low;
+
+	long range;
+
+	int cache;
+
+	long cache_size;
+
+	/**
+	 * Only used for decoding.
+	 */
+	long code;
+
+	public BinaryArithmeticCoder() {
+		this(DEFAULT_ADAPT_SHIFT);
+	}
+
+	public BinaryArithmeticCoder(int adapt_shift) {
+		if (adapt_shift < 1 || adapt_shift >= PROB_BITS) {
+			throw new IllegalArgumentException(
+					"adapt_shift must be in range [1, " + (PROB_BITS - 1) + "] (adapt_shift = " + adapt_shift + ")");
+		}
+
+		this.adapt_shift = adapt_shift;
+
+		low = 0;
+		range = MASK_STATE;
+		cache = 0;
+		cache_size = 1;
+		code = 0;
+	}
+
+	/**
+	 * Returns a probability array of the specified length with all entries in
+	 * the initial state.
+	 */
+	public static char[] new_probs(int length) {
+		char[] probs = new char[length];
+		Arrays.fill(probs, PROB_INIT);
+		return probs;
+	}
+
+	/**
+	 * Encodes bit (0 or 1) with the probability probs[idx], then adapts
+	 * probs[idx]. Returns the number of bits written.
+	 */
+	public int encode_bit(char[] probs, int idx, int bit, BitOutputStream sink) {
+		int p = probs[idx];
+		int write_count = encode_bit_prob(p, bit, sink);
+		probs[idx] = adapt(p, bit);
+		return write_count;
+	}
+
+	/**
+	 * Encodes bit (0 or 1) with the fixed probability prob of a 0 bit, which
+	 * has to be in the range [1, PROB_ONE - 1]. For callers which compute
+	 * probabilities themselves instead of using probability arrays. Returns
+	 * the number of bits written.
+	 */
+	public int encode_bit_prob(int prob, int bit, BitOutputStream sink) {
+		long bound = (range >>> PROB_BITS) * prob;
+
+		if (bit == 0) {
+			range = bound;
+		} else {
+			low += bound;
+			range -= bound;
+		}
+
+		int write_count = 0;
+
+		while (range < TOP) {
+			range <<= 8;
+			write_count += shift_low(sink);
+		}
+
+		return write_count;
+	}
+
+	private char adapt(int p, int bit) {
+		if (bit == 0) {
+			return (char) (p + ((PROB_ONE - p) >>> adapt_shift));
+		} else {
+			return (char) (p - (p >>> adapt_shift));
+		}
+	}
+
+	private int shift_low(BitOutputStream sink) {
+		int write_count = 0;
+
+		if (low < (0xffL << SHIFT_TOP_BYTE) || (low >>> 32) != 0) {
+			int carry = (int) (low >>> 32);
+			int b = cache;
+			do {
+				sink.write(b + carry, 8);
+				write_count += 8;
+				b = 0xff;
+			} while (--cache_size != 0);
+
+			cache = (int) (low >>> SHIFT_TOP_BYTE) & 0xff;
+		}
+
+		cache_size++;
+		low = (low & (TOP - 1)) << 8;
+
+		return write_count;
+	}
+
+	public int finish_encoding(BitOutputStream sink) {
+		int write_count = 0;
+
+		// the cached byte plus all bytes of low
+		for (int i = 0; i < 5; i++) {
+			write_count += shift_low(sink);
+		}
+
+		return write_count;
+	}
+
+	/**
+	 * Returns an upper bound of the number of bytes written by encoding
+	 * bit_count many bits followed by finish_encoding(...). A bit narrows
+	 * range to at least range / PROB_ONE - 1, i.e. costs at most a little more
+	 * than PROB_BITS bits, 13 are assumed. Each shifted byte is written once,
+	 * plus the initial cache byte and 5 bytes by finish_encoding().
+	 */
+	public static long max_encoded_size(long bit_count) {
+		return (bit_count * (PROB_BITS + 1) + 7) / 8 + 6;
+	}
+
+	public void start_decoding(BitInputStream source) {
+		range = MASK_STATE;
+		code = 0;
+
+		// the first byte is the initial cache, which is always 0
+		source.read(8);
+
+		for (int i = 0; i < 4; i++) {
+			code = (code << 8) | (source.read(8) & 0xff);
+		}
+	}
+
+	/**
+	 * Decodes a bit with the probability probs[idx], then adapts probs[idx]
+	 * like encode_bit(...) does.
+	 */
+	public int decode_bit(char[] probs, int idx, BitInputStream source) {
+		int p = probs[idx];
+		int bit = decode_bit_prob(p, source);
+		probs[idx] = adapt(p, bit);
+		return bit;
+	}
+
+	/**
+	 * Decoder counterpart of encode_bit_prob(...).
+	 */
+	public int decode_bit_prob(int prob, BitInputStream source) {
+		long bound = (range >>> PROB_BITS) * prob;
+
+		int bit;
+		if (code < bound) {
+			range = bound;
+			bit = 0;
+		} else {
+			code -= bound;
+			range -= bound;
+			bit = 1;
+		}
+
+		while (range < TOP) {
+			range <<= 8;
+			code = (code << 8) | (source.read(8) & 0xff);
+		}
+
+		return bit;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    low         = ").append(Long.toHexString(low)).append("\n");
+		buf.append("    range       = ").append(Long.toHexString(range)).append("\n");
+		buf.append("    cache       = ").append(Integer.toHexString(cache)).append("\n");
+		buf.append("    cache_size  = ").append(cache_size).append("\n");
+		buf.append("    adapt_shift = ").append(adapt_shift);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,89 @@
+package arithmetic_compression.coder.arithmetic;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Codes symbols of symbol_bits bits with a {@link BinaryArithmeticCoder}, as
+ * a path through a binary tree: the bits of the symbol are coded from the
+ * most significant one down, each with the probability of the tree node
+ * reached by the bits before it. For bytes, these are 255 nodes, so the
+ * probability of each bit depends on all higher bits of the same symbol,
+ * which models any order-0 distribution.
+ * <p>
+ * Needs no {@link SymbolProbabilityDistribution}: the probabilities start at
+ * 1/2 and adapt while coding. Encoder and decoder each need their own coder,
+ * created with the same parameters.
+ * </p>
+ */
+public class BitTreeCoder implements EntropyCoder {
+
+	int symbol_bits;
+
+	BinaryArithmeticCoder coder;
+
+	/**
+	 * Probability of node m at index m; the root is 1, the children of node m
+	 * are 2 * m and 2 * m + 1. Index 0 is unused.
+	 */
+	char[] probs;
+
+	public BitTreeCoder(int symbol_bits) {
+		this(symbol_bits, BinaryArithmeticCoder.DEFAULT_ADAPT_SHIFT);
+	}
+
+	public BitTreeCoder(int symbol_bits, int adapt_shift) {
+		if (symbol_bits < 1 || symbol_bits > 16) {
+			throw new IllegalArgumentException("symbol_bits must be in range [1, 16] (symbol_bits = " + symbol_bits + ")");
+		}
+
+		this.symbol_bits = symbol_bits;
+
+		coder = new BinaryArithmeticCoder(adapt_shift);
+		probs = BinaryArithmeticCoder.new_probs(1 << symbol_bits);
+	}
+
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		int write_count = 0;
+
+		int m = 1;
+		for (int i = symbol_bits - 1; i >= 0; i--) {
+			int bit = (symbol >>> i) & 1;
+			write_count += coder.encode_bit(probs, m, bit, sink);
+			m = (m << 1) | bit;
+		}
+
+		return write_count;
+	}
+
+	@Override
+	public int finish_encoding(BitOutputStream sink) {
+		return coder.finish_encoding(sink);
+	}
+
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return BinaryArithmeticCoder.max_encoded_size(symbol_count * symbol_bits);
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		coder.start_decoding(source);
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		int m = 1;
+		for (int i = 0; i < symbol_bits; i++) {
+			m = (m << 1) | coder.decode_bit(probs, m, source);
+		}
+
+		return m - (1 << symbol_bits);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(symbol_bits=" + symbol_bits + ")\n" + coder;
+	}
+}
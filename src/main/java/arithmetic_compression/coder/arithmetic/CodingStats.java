@@ -0,0 +1,135 @@
+package arithmetic_compression.coder.arithmetic;
+
+/**
+ * {@link CodingStatsSink} which counts symbols, bits, renormalizations and E3
+ * scalings, keeps the maximum number of pending E3 bits, and sums up the
+ * entropy bound of the symbols, i.e. their information content according to
+ * the distribution they were coded with. The coder's overhead is the
+ * difference between bit_count() and entropy_bound().
+ * <p>
+ * Counts add up over all streams an instance was set for; not thread safe.
+ * </p>
+ */
+public class CodingStats implements CodingStatsSink {
+
+	long stream_count;
+
+	long symbol_count;
+
+	long bit_count;
+
+	long renormalization_count;
+
+	long e3_scaling_count;
+
+	int max_pending_bits;
+
+	double entropy_bound;
+
+	/**
+	 * -log2(p(symbol)) per symbol of the current stream's distribution.
+	 */
+	double[] information;
+
+	@Override
+	public void start(SymbolProbabilityDistribution dist) {
+		stream_count++;
+
+		int symbol_count = dist.symbol_count();
+		if (information == null || information.length != symbol_count) {
+			information = new double[symbol_count];
+		}
+
+		double log2_total = Math.log(dist.total_count()) / Math.log(2);
+		for (int symbol = 0; symbol < symbol_count; symbol++) {
+			int count = dist.count(symbol);
+			information[symbol] = (count == 0) ? Double.POSITIVE_INFINITY
+					: log2_total - Math.log(count) / Math.log(2);
+		}
+	}
+
+	@Override
+	public void symbol(int symbol, int bits_written, int renormalizations, int e3_scalings, int pending_bits) {
+		symbol_count++;
+		bit_count += bits_written;
+		renormalization_count += renormalizations;
+		e3_scaling_count += e3_scalings;
+		max_pending_bits = Math.max(max_pending_bits, pending_bits);
+		entropy_bound += information[symbol];
+	}
+
+	@Override
+	public void finish(int bits_written) {
+		bit_count += bits_written;
+	}
+
+	public long stream_count() {
+		return stream_count;
+	}
+
+	public long symbol_count() {
+		return symbol_count;
+	}
+
+	/**
+	 * Returns the number of bits written, including those written by
+	 * finish_encoding(...).
+	 */
+	public long bit_count() {
+		return bit_count;
+	}
+
+	public long renormalization_count() {
+		return renormalization_count;
+	}
+
+	public long e3_scaling_count() {
+		return e3_scaling_count;
+	}
+
+	public int max_pending_bits() {
+		return max_pending_bits;
+	}
+
+	/**
+	 * Returns the least number of bits any coder needs for the symbols with
+	 * the distributions they were coded with.
+	 */
+	public double entropy_bound() {
+		return entropy_bound;
+	}
+
+	/**
+	 * Returns the bits written beyond the entropy bound, relative to it.
+	 */
+	public double overhead() {
+		return bit_count / entropy_bound - 1;
+	}
+
+	public void reset() {
+		stream_count = 0;
+		symbol_count = 0;
+		bit_count = 0;
+		renormalization_count = 0;
+		e3_scaling_count = 0;
+		max_pending_bits = 0;
+		entropy_bound = 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    streams          = ").append(stream_count).append("\n");
+		buf.append("    symbols          = ").append(symbol_count).append("\n");
+		buf.append("    bits             = ").append(bit_count).append("\n");
+		buf.append("    entropy bound    = ").append(String.format("%.1f", entropy_bound)) //
+				.append(String.format(" (overhead %.4f%%)", 100 * overhead())).append("\n");
+		buf.append("    renormalizations = ").append(renormalization_count).append("\n");
+		buf.append("    e3 scalings      = ").append(e3_scaling_count).append("\n");
+		buf.append("    max pending bits = ").append(max_pending_bits).append("\n");
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,29 @@
+package arithmetic_compression.coder.arithmetic;
+
+/**
+ * Receives what an encoder does per symbol, for statistics. Encoders only
+ * call a sink when one is set, so without one the instrumentation costs a
+ * null check per symbol. {@link CodingStats} collects the usual counters.
+ */
+public interface CodingStatsSink {
+
+	/**
+	 * Called once per stream before its first symbol, with the distribution
+	 * the encoder actually codes with, which may be a normalized version of
+	 * the one it was created with.
+	 */
+	void start(SymbolProbabilityDistribution dist);
+
+	/**
+	 * Called after each symbol with the number of bits written for it, the
+	 * number of renormalization steps, i.e. bits l and u were scaled by, how
+	 * many of those steps were E3 scalings, and the number of pending E3 bits
+	 * afterwards.
+	 */
+	void symbol(int symbol, int bits_written, int renormalizations, int e3_scalings, int pending_bits);
+
+	/**
+	 * Called by finish_encoding(...) with the number of bits it wrote.
+	 */
+	void finish(int bits_written);
+}
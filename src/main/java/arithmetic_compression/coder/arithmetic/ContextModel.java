@@ -0,0 +1,37 @@
+package arithmetic_compression.coder.arithmetic;
+
+/**
+ * One symbol distribution per context, as used by {@link ContextRangeCoder}.
+ * The context is an int in [0, context_count()), see {@link SymbolContext}.
+ */
+public interface ContextModel {
+
+	int context_count();
+
+	int symbol_count();
+
+	int total_count(int ctx);
+
+	/**
+	 * Upper bound of total_count(ctx) over all contexts, at any time.
+	 */
+	int max_total_count();
+
+	/**
+	 * Sum of the counts of all symbols below the specified one.
+	 */
+	int cum_count(int ctx, int symbol);
+
+	int count(int ctx, int symbol);
+
+	/**
+	 * Returns the symbol whose interval contains the specified cumulative
+	 * count, which has to be in the range [0, total_count(ctx)).
+	 */
+	int symbol(int ctx, int cum);
+
+	/**
+	 * Called after each coded symbol; no-op for static models.
+	 */
+	void update(int ctx, int symbol);
+}
@@ -0,0 +1,90 @@
+package arithmetic_compression.coder.arithmetic;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * {@link RangeCoder} which codes each symbol with the distribution of its
+ * context, as determined by a {@link SymbolContext} from the preceding
+ * symbols, and taken from a {@link ContextModel}.
+ * <p>
+ * Encoder and decoder each need their own coder. An adaptive model is part of
+ * the coder state and must not be shared either; a static model can be.
+ * </p>
+ */
+public class ContextRangeCoder extends RangeCoder {
+
+	ContextModel model;
+
+	SymbolContext context;
+
+	public ContextRangeCoder(ContextModel model, SymbolContext context) {
+		if (model.context_count() != context.context_count() || model.symbol_count() != context.symbol_count()) {
+			throw new IllegalArgumentException("model and context don't match: " + model + ", " + context);
+		}
+
+		this.model = model;
+		this.context = context.copy();
+	}
+
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		int ctx = context.context();
+		long r = range / model.total_count(ctx);
+
+		int count = model.count(ctx, symbol);
+		if (count == 0) {
+			throw new ArithmeticException("symbol " + symbol + " has count 0 in context " + ctx + " of " + model);
+		}
+
+		int write_count = encode_interval(r, model.cum_count(ctx, symbol), count, sink);
+
+		model.update(ctx, symbol);
+		context.push(symbol);
+
+		return write_count;
+	}
+
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return max_encoded_size(symbol_count, model.max_total_count());
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		read_initial_code(source);
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		int ctx = context.context();
+		long total_count = model.total_count(ctx);
+
+		long r = range / total_count;
+		int target_cum_count = (int) Math.min(code / r, total_count - 1);
+
+		int symbol = model.symbol(ctx, target_cum_count);
+
+		decode_interval(r, model.cum_count(ctx, symbol), model.count(ctx, symbol), source);
+
+		model.update(ctx, symbol);
+		context.push(symbol);
+
+		return symbol;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    low        = ").append(Long.toHexString(low)).append("\n");
+		buf.append("    range      = ").append(Long.toHexString(range)).append("\n");
+		buf.append("    cache      = ").append(Integer.toHexString(cache)).append("\n");
+		buf.append("    cache_size = ").append(cache_size).append("\n");
+		buf.append("    model   = ").append(model).append("\n");
+		buf.append("    context = ").append(context);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,39 @@
+package arithmetic_compression.coder.arithmetic;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Common lifecycle of the entropy coders in this package. Encoding: call
+ * encode(...) once per symbol, then finish_encoding(...) once. Decoding: call
+ * start_decoding(...) once, then decode(...) once per symbol. An instance is
+ * used either for encoding or for decoding a single stream, not for both.
+ */
+public interface EntropyCoder {
+
+	/**
+	 * Encodes the specified symbol and writes it to the sink, returns the
+	 * number of bits written. Note that it is normal for entropy coders to
+	 * sometimes not write any bits for a symbol and instead only modify the
+	 * internal status of the encoder.
+	 */
+	int encode(int symbol, BitOutputStream sink);
+
+	/**
+	 * After the last symbol was written to the sink, there might be additional
+	 * data required by the decoder. This method writes any such data to the
+	 * sink. Returned is the number of bits written by this method.
+	 */
+	int finish_encoding(BitOutputStream sink);
+
+	/**
+	 * Returns an upper bound of the number of bytes written by encoding
+	 * symbol_count many symbols followed by finish_encoding(...), no matter
+	 * which symbols. Meant for preallocating output buffers.
+	 */
+	long max_encoded_size(long symbol_count);
+
+	void start_decoding(BitInputStream source);
+
+	int decode(BitInputStream source);
+}
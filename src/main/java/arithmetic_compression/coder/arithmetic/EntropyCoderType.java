@@ -0,0 +1,105 @@
+package arithmetic_compression.coder.arithmetic;
+
+/**
+ * The selectable entropy coder implementations. All of them share the
+ * lifecycle described in {@link EntropyCoder}, but their bitstreams are not
+ * compatible with each other, so decoding has to use the same type as
+ * encoding.
+ * <p>
+ * Each type has a fixed format id, which is what containers store to tell
+ * the type. Unlike the ordinal, it doesn't change when constants are added
+ * or reordered, so new types get new ids and ids are never reused.
+ * </p>
+ */
+public enum EntropyCoderType {
+
+	/**
+	 * {@link ArithmeticCoder}, int state, renormalizes bit by bit.
+	 */
+	ARITHMETIC(0) {
+		@Override
+		public EntropyCoder create(SymbolProbabilityDistribution dist) {
+			return new ArithmeticCoder(dist);
+		}
+	},
+
+	/**
+	 * {@link ArithmeticCoder64}, long state, renormalizes byte by byte.
+	 */
+	ARITHMETIC_64(1) {
+		@Override
+		public EntropyCoder create(SymbolProbabilityDistribution dist) {
+			return new ArithmeticCoder64(dist);
+		}
+	},
+
+	/**
+	 * {@link RangeCoder}, long state, renormalizes byte by byte, propagates
+	 * carries instead of counting E3 scalings.
+	 */
+	RANGE(2) {
+		@Override
+		public EntropyCoder create(SymbolProbabilityDistribution dist) {
+			return new RangeCoder(dist);
+		}
+	},
+
+	/**
+	 * {@link RansCoder}, buffers all symbols until finish_encoding(...), fast
+	 * decoding.
+	 */
+	RANS(3) {
+		@Override
+		public EntropyCoder create(SymbolProbabilityDistribution dist) {
+			return new RansCoder(dist);
+		}
+	},
+
+	/**
+	 * {@link InterleavedRansCoder} with 4 states.
+	 */
+	RANS_X4(4) {
+		@Override
+		public EntropyCoder create(SymbolProbabilityDistribution dist) {
+			return new InterleavedRansCoder(dist, 4);
+		}
+	},
+
+	/**
+	 * {@link InterleavedRansCoder} with 8 states.
+	 */
+	RANS_X8(5) {
+		@Override
+		public EntropyCoder create(SymbolProbabilityDistribution dist) {
+			return new InterleavedRansCoder(dist, 8);
+		}
+	};
+
+	private final int format_id;
+
+	private EntropyCoderType(int format_id) {
+		this.format_id = format_id;
+	}
+
+	/**
+	 * Returns the id which identifies this type in stored data, 0 to 255.
+	 */
+	public int format_id() {
+		return format_id;
+	}
+
+	/**
+	 * Returns the type with the specified format id, or null if there is
+	 * none.
+	 */
+	public static EntropyCoderType from_format_id(int format_id) {
+		for (EntropyCoderType type : values()) {
+			if (type.format_id == format_id) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	public abstract EntropyCoder create(SymbolProbabilityDistribution dist);
+}
@@ -0,0 +1,178 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.util.Arrays;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * {@link RansCoder} with several independent states sharing one output
+ * stream. Consecutive symbols go round robin to the states, so the
+ * dependency chain of each state only covers every state_count-th symbol and
+ * the CPU can overlap the work on neighbouring symbols. For long streams,
+ * the output is larger than that of {@link RansCoder} only by the additional
+ * final states, i.e. 8 bytes per state.
+ * <p>
+ * The decoder has to use the same state_count as the encoder.
+ * </p>
+ */
+public class InterleavedRansCoder extends RansCoder {
+
+	long[] xs;
+
+	int mask_state_idx;
+
+	/**
+	 * Only used for decoding; number of symbols decoded so far.
+	 */
+	int decode_count;
+
+	/**
+	 * state_count has to be a power of 2, typically 4 or 8.
+	 */
+	public InterleavedRansCoder(SymbolProbabilityDistribution dist, int state_count) {
+		super(dist);
+
+		if (state_count <= 0 || Integer.bitCount(state_count) != 1) {
+			throw new IllegalArgumentException("state_count must be a power of 2 (state_count = " + state_count + ")");
+		}
+
+		xs = new long[state_count];
+		mask_state_idx = state_count - 1;
+	}
+
+	@Override
+	public int finish_encoding(BitOutputStream sink) {
+		int[] cum_count = dist.cum_count;
+		long total_count = dist.total_count;
+
+		// each symbol emits at most one word
+		int[] words = new int[symbol_count];
+		int word_count = 0;
+
+		Arrays.fill(xs, l_bound);
+
+		for (int i = symbol_count - 1; i >= 0; i--) {
+			int state_idx = i & mask_state_idx;
+			long x = xs[state_idx];
+
+			int symbol = symbols[i];
+			long cum_count_prev = cum_count[symbol];
+			long count = cum_count[symbol + 1] - cum_count_prev;
+
+			long x_max = (l_bound_per_total * count) << WORD_BITS;
+			if (x >= x_max) {
+				words[word_count++] = (int) x;
+				x >>>= WORD_BITS;
+			}
+
+			long q = x / count;
+			xs[state_idx] = q * total_count + (x - q * count) + cum_count_prev;
+		}
+
+		for (int state_idx = 0; state_idx < xs.length; state_idx++) {
+			sink.write((int) (xs[state_idx] >>> WORD_BITS), WORD_BITS);
+			sink.write((int) xs[state_idx], WORD_BITS);
+		}
+
+		for (int i = word_count - 1; i >= 0; i--) {
+			sink.write(words[i], WORD_BITS);
+		}
+
+		symbols = new int[1024];
+		symbol_count = 0;
+
+		return (2 * xs.length + word_count) * WORD_BITS;
+	}
+
+	/**
+	 * At most one word per symbol, plus the final states.
+	 */
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return (symbol_count + 2 * xs.length) * (WORD_BITS / 8);
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		symbol_lookup_table = dist.symbol_lookup_table();
+
+		for (int state_idx = 0; state_idx < xs.length; state_idx++) {
+			long x = (source.read(WORD_BITS) & MASK_WORD) << WORD_BITS;
+			x |= source.read(WORD_BITS) & MASK_WORD;
+			xs[state_idx] = x;
+		}
+
+		decode_count = 0;
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		int state_idx = decode_count & mask_state_idx;
+		decode_count++;
+
+		x = xs[state_idx];
+		int symbol = super.decode(source);
+		xs[state_idx] = x;
+
+		return symbol;
+	}
+
+	/**
+	 * Decodes len many symbols into dst, starting at off. Symbols have to be
+	 * in the range [0, 255]. Equivalent to calling decode(source) len many
+	 * times, but processes one symbol per state in each loop iteration.
+	 */
+	public void decode(byte[] dst, int off, int len, BitInputStream source) {
+		int[] cum_count = dist.cum_count;
+		long total_count = dist.total_count;
+		long[] xs = this.xs;
+		SymbolLookupTable symbol_lookup_table = this.symbol_lookup_table;
+		int state_count = xs.length;
+
+		int end = off + len;
+		int i = off;
+
+		// align to the state which is next in line, so that the main loop can
+		// start with state 0
+		while (i < end && (decode_count & mask_state_idx) != 0) {
+			dst[i++] = (byte) decode(source);
+		}
+
+		int main_loop_start = i;
+		for (; i + state_count <= end; i += state_count) {
+			for (int state_idx = 0; state_idx < state_count; state_idx++) {
+				long x = xs[state_idx];
+
+				long q;
+				int slot;
+				if (total_count_shift >= 0) {
+					q = x >>> total_count_shift;
+					slot = (int) x & (int) (total_count - 1);
+				} else {
+					q = x / total_count;
+					slot = (int) (x - q * total_count);
+				}
+
+				int symbol = symbol_lookup_table.symbol(slot);
+
+				long cum_count_prev = cum_count[symbol];
+				long count = cum_count[symbol + 1] - cum_count_prev;
+
+				x = count * q + slot - cum_count_prev;
+
+				if (x < l_bound) {
+					x = (x << WORD_BITS) | (source.read(WORD_BITS) & MASK_WORD);
+				}
+
+				xs[state_idx] = x;
+				dst[i + state_idx] = (byte) symbol;
+			}
+		}
+		decode_count += i - main_loop_start;
+
+		while (i < end) {
+			dst[i++] = (byte) decode(source);
+		}
+	}
+}
@@ -1,56 +1,105 @@
 package arithmetic_compression.coder.arithmetic;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import arithmetic_compression.io.BitInputStream;
 import arithmetic_compression.io.BitOutputStream;
-import arithmetic_compression.io.twiddlingbits.BinaryFormatter;
 
-public class PerfectArithmeticCoder {
-
-	SymbolProbabilityDistributionBig dist;
+/**
+ * Arithmetic coder without E3 scaling: instead of counting how often the
+ * interval straddles the middle, the precision of l and u simply grows by
+ * another bit, for as long as it takes until their most significant bits are
+ * equal and can be written. This makes it an exact reference for the other
+ * coders, at the cost of l and u being of unbounded length.
+ * <p>
+ * l, u and the decoder's tag t are kept in mutable arrays of 64 bit limbs,
+ * the least significant limb first, which only grow when an interval
+ * straddles the middle for longer than ever before. The width of the interval
+ * d = u - l + 1 is always less than 2^wordSize though, so all the arithmetic
+ * with the counts of the distribution is done on the least significant limb
+ * alone.
+ * </p>
+ */
+public class PerfectArithmeticCoder implements EntropyCoder {
+
+	SymbolProbabilityDistribution dist;
+
+	int total_count;
 
 	int wordSize;
 
 	/**
 	 * Lower bound for the bits to write.
 	 */
-	BigInteger l;
+	long[] l = new long[1];
 
 	/**
 	 * Upper bound for the bits to write.
 	 */
-	BigInteger u;
+	long[] u = new long[1];
+
+	/**
+	 * The bits read by the decoder, with l <= t <= u.
+	 */
+	long[] t = new long[1];
 
 	/**
 	 * l and u are used as bitsets and luMsbIdx is the index of the most
 	 * significant bit, i.e. the length-1 of each of these bitsets. This is
 	 * necessary because we need to remember that sometimes there are leading 0
-	 * bits in both of them and there is no other way of tracking this.
+	 * bits in both of them and there is no other way of tracking this. All
+	 * bits above luMsbIdx are 0.
 	 */
 	int luMsbIdx;
 
+	SymbolLookupTable symbol_lookup_table;
+
 	public PerfectArithmeticCoder(SymbolProbabilityDistribution dist) {
-		this.dist = new SymbolProbabilityDistributionBig(dist);
+		this.dist = new SymbolProbabilityDistribution(dist);
 		init();
 	}
 
+	/**
+	 * The total count of dist must not exceed Integer.MAX_VALUE.
+	 */
 	public PerfectArithmeticCoder(SymbolProbabilityDistributionBig dist) {
-		this.dist = new SymbolProbabilityDistributionBig(dist);
+		this.dist = to_small(dist);
 		init();
 	}
 
+	private static SymbolProbabilityDistribution to_small(SymbolProbabilityDistributionBig dist) {
+		if (dist.total_count.bitLength() > 31) {
+			throw new ArithmeticException("total number of occurences in "
+					+ SymbolProbabilityDistributionBig.class.getSimpleName() + " exceeds Integer.MAX_VALUE: "
+					+ dist.total_count + ", thus this implementation can't do the arithmetic encoding;"
+					+ " workaround: use lower numbers of occurences in the probability distribution.");
+		}
+
+		int[] count = new int[dist.cum_count.length - 1];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = dist.cum_count[i + 1].subtract(dist.cum_count[i]).intValue();
+		}
+
+		return new SymbolProbabilityDistribution(count);
+	}
+
 	private void init() {
 		ensureSaneTotalCount(dist.total_count);
 
-		wordSize = dist.total_count.bitLength() + 2;
+		total_count = dist.total_count;
+		wordSize = 32 - Integer.numberOfLeadingZeros(total_count) + 2;
+
+		reset();
+	}
 
-		l = BigInteger.ZERO;
-		u = BigInteger.ONE;
+	private void reset() {
+		Arrays.fill(l, 0);
+		Arrays.fill(u, 0);
+		Arrays.fill(t, 0);
 
+		u[0] = 1;
 		luMsbIdx = 0;
-
-		System.out.println(this);
 	}
 
 	/**
@@ -59,65 +108,23 @@ public class PerfectArithmeticCoder {
 	 * sometimes not write any bits for a symbol and instead only modify the
 	 * internal status of the encoder.
 	 */
+	@Override
 	public int encode(int symbol, BitOutputStream sink) {
-		log(0, "encode(" + symbol + ")");
-
-		BigInteger cum_count_prev = dist.cum_count[symbol];
-		BigInteger cum_count_symb = dist.cum_count[symbol + 1];
-		BigInteger total_count = dist.total_count;
-		int write_count = 0;
-
-		// long d = u - l + 1;
-		BigInteger d = u.subtract(l).add(BigInteger.ONE);
-
-		log(1, "d=u-l+1=" + BinaryFormatter.toBinStrBE_minLen(d, luMsbIdx + 1) + " (" + d + ")");
-
-		while (d.bitLength() < wordSize) { // maybe while (d < total_count * 4)
-											// is enough
-			log(1, "d.bitLength() < wordSize (" + d.bitLength() + " < " + wordSize + ")");
-
-			l = l.shiftLeft(1);
-			u = u.shiftLeft(1).or(BigInteger.ONE);
-			d = u.subtract(l).add(BigInteger.ONE);
-
-			luMsbIdx++;
-
-			log(2, "l=" + BinaryFormatter.toBinStrBE_minLen(l, luMsbIdx + 1) + " (" + l + ")");
-			log(2, "u=" + BinaryFormatter.toBinStrBE_minLen(u, luMsbIdx + 1) + " (" + u + ")");
-			log(2, "d=" + BinaryFormatter.toBinStrBE_minLen(d, luMsbIdx + 1) + " (" + d + ")");
+		int k = expansion_count();
+		if (k > 0) {
+			int limb_count = limb_count(luMsbIdx + k);
+			shift_left(l, limb_count, k, 0);
+			shift_left(u, limb_count, k, (1 << k) - 1);
+			luMsbIdx += k;
 		}
 
-		// u = l + (int) (diam * cum_count_symb / total_count) - 1;
-		// l = l + (int) (diam * cum_count_prev / total_count);
-		BigInteger l_prev = l;
-		l = l_prev.add(d.multiply(cum_count_prev).divide(total_count));
-		u = l_prev.add(d.multiply(cum_count_symb).divide(total_count).subtract(BigInteger.ONE));
-
-		log(1, "l = " + l_prev + " + " + d + " * " + cum_count_prev + " / " + total_count + "     = "
-				+ BinaryFormatter.toBinStrBE_minLen(l, luMsbIdx + 1) + " (" + l + ")");
-		log(1, "u = " + l_prev + " + " + d + " * " + cum_count_symb + " / " + total_count + " - 1 = "
-				+ BinaryFormatter.toBinStrBE_minLen(u, luMsbIdx + 1) + " (" + u + ")");
-
-		while (is_msb_equal()) {
-			int b = l.testBit(luMsbIdx) ? 1 : 0;
-			log(1, "msb_eq, write " + b);
-			sink.write(b);
-			write_count++;
-			// l = ((l << 1) & maskWord);
-			// u = ((u << 1) & maskWord) | 1;
-			if (b == 1) {
-				l = l.clearBit(luMsbIdx);
-				u = u.clearBit(luMsbIdx);
-			}
-			luMsbIdx--;
-
-			log(2, "l=" + BinaryFormatter.toBinStrBE_minLen(l, luMsbIdx + 1) + " (" + l + ")");
-			log(2, "u=" + BinaryFormatter.toBinStrBE_minLen(u, luMsbIdx + 1) + " (" + u + ")");
-		}
+		narrow(symbol);
 
-		log();
+		int n = leading_equal_bit_count();
+		write_bits(l, luMsbIdx, n, sink);
+		drop_leading_bits(n);
 
-		return write_count;
+		return n;
 	}
 
 	/**
@@ -125,139 +132,213 @@ public class PerfectArithmeticCoder {
 	 * data required by the decoder. This method writes any such data to the
 	 * sink. Returned is the number of bits written by this method.
 	 */
+	@Override
 	public int finish_encoding(BitOutputStream sink) {
-		log(0, "finish_encoding()");
-
 		// Introduction to Data Compression, Khalid Sayood, chapter 4, p. 106,
 		// section "Example 4.4.4":
 		// "If we wished to terminate the encoding at this point, we have to
 		// send the current status of the tag. This can be done by sending the
-		// value of the lower limit l." (it then goes on about how to handle
-		// scale3>0, for which additional writes need to be performed)
-		//
-		// for future improvements or understanding:
-		// can we send less bits?
-		// I think if we encounter a bit which is 0 in l and 1 in u, we can
-		// simply send the middle between 0 and 1, i.e. 0.5 = '01' in binary)
-		// and stop.
-		// Since by the design of the algorithm, the MSBs in l and u after the
-		// last write operation are always 0 and 1 respectively, shouldn't
-		// appending '01' in general be enough? if yes, that means it's always
-		// '01' anyways, so then, can we simply leave this finalization out
-		// alltogether?
-
-		int write_count = 0;
-
-		for (int i = luMsbIdx; i >= 0; i--) {
-			// b = (l >> i) & 1;
-			int b = l.testBit(i) ? 1 : 0;
-			log(1, "write l[" + i + "]=" + BinaryFormatter.toBinStrBE_minLen(b, 1));
-			sink.write(b);
-			write_count++;
-		}
+		// value of the lower limit l."
 
-		l = BigInteger.ZERO;
-		u = BigInteger.ONE;
-		luMsbIdx = 0;
+		int write_count = luMsbIdx + 1;
+		write_bits(l, luMsbIdx, write_count, sink);
 
-		// log();
+		reset();
 
 		return write_count;
 	}
 
 	/**
+	 * The bits written are 1 plus the number of bits l and u grow by. Each
+	 * symbol leaves d >= floor(2^(wordSize-1) / total_count) >= 2, so they
+	 * grow by at most wordSize - 2 bits per symbol.
 	 */
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return (symbol_count * (wordSize - 2) + 1 + 7) / 8;
+	}
+
+	@Override
 	public void start_decoding(BitInputStream source) {
+		reset();
+		symbol_lookup_table = dist.symbol_lookup_table();
+
+		t[0] = source.read_msb_first(1);
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		int k = expansion_count();
+		if (k > 0) {
+			int limb_count = limb_count(luMsbIdx + k);
+			shift_left(l, limb_count, k, 0);
+			shift_left(u, limb_count, k, (1 << k) - 1);
+			shift_left(t, limb_count, k, source.read_msb_first(k));
+			luMsbIdx += k;
+		}
+
+		// t - l and d fit into the least significant limb, see the class
+		// comment, and (offset + 1) * total_count < 2^64
+		long d = u[0] - l[0] + 1;
+		long offset = t[0] - l[0];
+		long target_cum_count = Long.divideUnsigned((offset + 1) * total_count - 1, d);
+
+		int symbol = symbol_lookup_table.symbol((int) target_cum_count);
+
+		narrow(symbol);
+
+		int n = leading_equal_bit_count();
+		drop_leading_bits(n);
+
+		return symbol;
 	}
 
-	// /**
-	// */
-	// public int decode(BitInputStream source) {
-	// // log("decode()");
-	//
-	// long total_count = dist.total_count;
-	//
-	// long num = (t - l + 1) * total_count - 1;
-	// int target_cum_count = (int) (num / (u - l + 1));
-	//
-	// // log(" target_cum_count=" + target_cum_count);
-	//
-	// int symbol = Arrays.binarySearch(dist.cum_count, target_cum_count);
-	// if (symbol < 0) {
-	// symbol = -(symbol + 2);
-	// }
-	//
-	// // log(" symbol=" + symbol + " (dist.cum_count.length=" +
-	// // dist.cum_count.length + ")");
-	//
-	// long cum_count_prev = dist.cum_count[symbol];
-	// long cum_count_symb = dist.cum_count[symbol + 1];
-	//
-	// long diam = u - l + 1;
-	// u = l + (int) (diam * cum_count_symb / total_count) - 1;
-	// l = l + (int) (diam * cum_count_prev / total_count);
-	// // log(" l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) + " (" + l
-	// // + ")");
-	// // log(" u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) + " (" + u
-	// // + ")");
-	//
-	// for (;;) {
-	// if (is_msb_equal()) {
-	// // log(" msb_equal");
-	//
-	// l = ((l << 1) & maskWord);
-	// u = ((u << 1) & maskWord) | 1;
-	// t = ((t << 1) & maskWord);
-	//
-	// int b = source.read(1);
-	// b = (1 - ((b + 1) & 1)); // #nobranch
-	// t |= b;
-	//
-	// // log(" l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) +
-	// // " (" + l + ")");
-	// // log(" u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) +
-	// // " (" + u + ")");
-	// // log(" t=" + BinaryFormatter.toBinStrBE_minLen(t, wordSize) +
-	// // " (" + t + ")");
-	//
-	// } else if (is_second_msb_close()) {
-	// // log(" second_msb_close");
-	//
-	// l = ((l << 1) & maskWord);
-	// u = ((u << 1) & maskWord) | 1;
-	// t = ((t << 1) & maskWord);
-	//
-	// int b = source.read(1);
-	// b = (1 - ((b + 1) & 1)); // #nobranch
-	// t |= b;
-	//
-	// l ^= maskMsb;
-	// u ^= maskMsb;
-	// t ^= maskMsb;
-	//
-	// // log(" l=" + BinaryFormatter.toBinStrBE_minLen(l, wordSize) +
-	// // " (" + l + ")");
-	// // log(" u=" + BinaryFormatter.toBinStrBE_minLen(u, wordSize) +
-	// // " (" + u + ")");
-	// // log(" t=" + BinaryFormatter.toBinStrBE_minLen(t, wordSize) +
-	// // " (" + t + ")");
-	//
-	// } else {
-	// break;
-	// }
-	// }
-	//
-	// // log();
-	//
-	// return symbol;
-	// }
+	/**
+	 * Returns by how many bits l and u have to grow so that d has wordSize
+	 * bits.
+	 */
+	private int expansion_count() {
+		long d = u[0] - l[0] + 1;
+		return Math.max(0, wordSize - (64 - Long.numberOfLeadingZeros(d)));
+	}
 
 	/**
-	 * Returns true if, and only if, u and l are both in the first or both in
-	 * the second half of the scaled interval.
+	 * Narrows [l, u] to the part of the specified symbol.
 	 */
-	private boolean is_msb_equal() {
-		return l.testBit(luMsbIdx) == u.testBit(luMsbIdx);
+	private void narrow(int symbol) {
+		long d = u[0] - l[0] + 1;
+
+		// d < 2^wordSize and cum_count < 2^(wordSize-2) with wordSize <= 33,
+		// so the products fit into 64 bits unsigned
+		long lower = Long.divideUnsigned(d * dist.cum_count[symbol], total_count);
+		long upper = Long.divideUnsigned(d * dist.cum_count[symbol + 1], total_count);
+
+		// u = l + upper - 1 = u - (d - upper), then l = l + lower
+		subtract(u, d - upper);
+		add(l, lower);
+	}
+
+	/**
+	 * Returns the number of bits from luMsbIdx downwards which are equal in l
+	 * and u. Since l <= t <= u, t has the same bits there.
+	 */
+	private int leading_equal_bit_count() {
+		int limb = luMsbIdx >>> 6;
+		int n = -(63 - (luMsbIdx & 63));
+
+		for (; limb >= 0; limb--) {
+			long diff = l[limb] ^ u[limb];
+			if (diff != 0) {
+				return n + Long.numberOfLeadingZeros(diff);
+			}
+			n += 64;
+		}
+
+		return luMsbIdx + 1;
+	}
+
+	/**
+	 * Removes the n most significant bits of l, u and t, which are equal.
+	 */
+	private void drop_leading_bits(int n) {
+		if (n == 0) {
+			return;
+		}
+
+		int top_limb = luMsbIdx >>> 6;
+		luMsbIdx -= n;
+		int new_top_limb = luMsbIdx >>> 6;
+
+		for (int limb = new_top_limb + 1; limb <= top_limb; limb++) {
+			l[limb] = 0;
+			u[limb] = 0;
+			t[limb] = 0;
+		}
+
+		long mask = -1L >>> (63 - (luMsbIdx & 63));
+		l[new_top_limb] &= mask;
+		u[new_top_limb] &= mask;
+		t[new_top_limb] &= mask;
+	}
+
+	/**
+	 * Returns the number of limbs for bits up to msb, growing all arrays if
+	 * needed.
+	 */
+	private int limb_count(int msb) {
+		int limb_count = (msb >>> 6) + 1;
+
+		if (limb_count > l.length) {
+			int length = Math.max(limb_count, 2 * l.length);
+			l = Arrays.copyOf(l, length);
+			u = Arrays.copyOf(u, length);
+			t = Arrays.copyOf(t, length);
+		}
+
+		return limb_count;
+	}
+
+	/**
+	 * Shifts the first limb_count limbs of a left by 0 < k < 32 bits and sets
+	 * the k least significant bits to those of fill.
+	 */
+	private static void shift_left(long[] a, int limb_count, int k, int fill) {
+		for (int limb = limb_count - 1; limb > 0; limb--) {
+			a[limb] = (a[limb] << k) | (a[limb - 1] >>> (64 - k));
+		}
+		a[0] = (a[0] << k) | (fill & 0xffffffffL);
+	}
+
+	private static void add(long[] a, long val) {
+		long sum = a[0] + val;
+		boolean carry = Long.compareUnsigned(sum, val) < 0;
+		a[0] = sum;
+
+		for (int limb = 1; carry; limb++) {
+			carry = ++a[limb] == 0;
+		}
+	}
+
+	private static void subtract(long[] a, long val) {
+		boolean borrow = Long.compareUnsigned(a[0], val) < 0;
+		a[0] -= val;
+
+		for (int limb = 1; borrow; limb++) {
+			borrow = a[limb]-- == 0;
+		}
+	}
+
+	/**
+	 * Writes the n bits of a from bit msb downwards, the most significant one
+	 * first.
+	 */
+	private static void write_bits(long[] a, int msb, int n, BitOutputStream sink) {
+		while (n > 0) {
+			int len = Math.min(n, 32);
+			int lsb = msb - len + 1;
+
+			long bits = a[lsb >>> 6] >>> (lsb & 63);
+			if ((lsb & 63) + len > 64) {
+				bits |= a[(lsb >>> 6) + 1] << (64 - (lsb & 63));
+			}
+
+			sink.write_msb_first((int) bits & (int) (-1L >>> (64 - len)), len);
+
+			msb -= len;
+			n -= len;
+		}
+	}
+
+	private static String to_bin_str(long[] a, int msb) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = msb; i >= 0; i--) {
+			buf.append((a[i >>> 6] >>> (i & 63)) & 1);
+		}
+		return buf.toString();
+	}
+
+	private static BigInteger to_big_integer(long[] a, int msb) {
+		return new BigInteger("0" + to_bin_str(a, msb), 2);
 	}
 
 	public String toString() {
@@ -266,48 +347,33 @@ public class PerfectArithmeticCoder {
 		buf.append(getClass().getSimpleName()).append("\n");
 		buf.append("    wordSize = ").append(wordSize).append("\n");
 		buf.append("    luMsbIdx = ").append(luMsbIdx).append("\n");
-		buf.append("    l        = ").append(BinaryFormatter.toBinStrBE_minLen(l, luMsbIdx + 1)) //
-				.append(" (").append(l).append(")\n");
-		buf.append("    u        = ").append(BinaryFormatter.toBinStrBE_minLen(u, luMsbIdx + 1)) //
-				.append(" (").append(u).append(")\n");
+		buf.append("    l        = ").append(to_bin_str(l, luMsbIdx)) //
+				.append(" (").append(to_big_integer(l, luMsbIdx)).append(")\n");
+		buf.append("    u        = ").append(to_bin_str(u, luMsbIdx)) //
+				.append(" (").append(to_big_integer(u, luMsbIdx)).append(")\n");
 		buf.append("    dist = ").append(dist);
 
 		return buf.toString();
 	}
 
-	private void ensureSaneTotalCount(BigInteger total_count) {
-		if (total_count.signum() < 0) {
+	private void ensureSaneTotalCount(int total_count) {
+		if (total_count < 0) {
 			throw new ArithmeticException("total number of occurences in "
-					+ SymbolProbabilityDistributionBig.class.getSimpleName()
+					+ SymbolProbabilityDistribution.class.getSimpleName()
 					+ " is negative (probably exceeds Integer.MAX_VALUE): " + total_count
 					+ ", thus this implementation can't do the arithmetic encoding; workaround: use lower numbers of occurences in the probability distribution.");
 		}
 
-		if (total_count.signum() == 0) {
+		if (total_count == 0) {
 			throw new ArithmeticException("total number of occurences in "
-					+ SymbolProbabilityDistributionBig.class.getSimpleName()
+					+ SymbolProbabilityDistribution.class.getSimpleName()
 					+ " is 0; this is not a valid probability distribution" + ", thus cannot be used for encoding");
 		}
 
-		if (total_count.equals(BigInteger.ONE)) {
+		if (total_count == 1) {
 			throw new ArithmeticException("total number of occurences in "
-					+ SymbolProbabilityDistributionBig.class.getSimpleName() + " is 1"
+					+ SymbolProbabilityDistribution.class.getSimpleName() + " is 1"
 					+ ", thus entropy is 0 and arithmetic encoding is not applicable / is trivial and always of length 0.");
 		}
 	}
-
-	private static final String INDENTATION_SPACE = "    ";
-
-	private static void log() {
-		System.out.println();
-		// throw new RuntimeException();
-	}
-
-	private static void log(int indentLevel, Object o) {
-		for (int i = 0; i < indentLevel; i++) {
-			System.out.print(INDENTATION_SPACE);
-		}
-		System.out.println(o);
-		// throw new RuntimeException();
-	}
 }
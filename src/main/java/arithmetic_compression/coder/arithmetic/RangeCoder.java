@@ -0,0 +1,263 @@
+package arithmetic_compression.coder.arithmetic;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Range coder which resolves underflow by propagating carries into bytes that
+ * have already been produced, instead of counting E3 scalings like
+ * {@link ArithmeticCoder} does. Produced bytes are held back as long as a
+ * carry could still reach them: the most recent byte below 0xff is kept in
+ * cache, the 0xff bytes following it are only counted in cache_size. A carry
+ * turns the cached byte into byte + 1 and the 0xff bytes into 0x00 bytes.
+ * <p>
+ * Per symbol, the encoder does a constant amount of work apart from writing
+ * out held back bytes, each of which is written exactly once. Nothing in the
+ * state can overflow, no matter the input. (Layout as in LZMA's range coder,
+ * scaled from 32 to 56 bit.)
+ * </p>
+ */
+public class RangeCoder implements EntropyCoder {
+
+	/**
+	 * Number of bits of range and code; low has one additional bit for the
+	 * carry.
+	 */
+	static final int STATE_BITS = 56;
+
+	static final long MASK_STATE = (1L << STATE_BITS) - 1;
+
+	static final int SHIFT_TOP_BYTE = STATE_BITS - 8;
+
+	/**
+	 * Renormalization keeps range at or above this. Any int total_count is far
+	 * below this, so range / total_count keeps at least 17 bits of precision.
+	 */
+	static final long TOP = 1L << SHIFT_TOP_BYTE;
+
+	SymbolProbabilityDistribution dist;
+
+	/**
+	 * log2(total_count) if total_count is a power of 2, otherwise -1.
+	 */
+	int total_count_shift;
+
+	/**
+	 * Lower bound of the current interval. Bit STATE_BITS is the carry into
+	 * the cached byte.
+	 */
+	long low;
+
+	long range;
+
+	/**
+	 * Oldest byte which is not written yet, because a carry could still change
+	 * it.
+	 */
+	int cache;
+
+	/**
+	 * Number of bytes not written yet: the cached byte and cache_size - 1 many
+	 * 0xff bytes after it. The very first cached byte is a 0 byte which the
+	 * decoder skips; it is only there to receive a carry, which can't occur
+	 * for the first byte, but the uniform handling keeps shift_low() simple.
+	 */
+	long cache_size;
+
+	/**
+	 * Only used for decoding; offset of the encoded value from low, which is
+	 * not tracked by the decoder.
+	 */
+	long code;
+
+	/**
+	 * Only used for decoding.
+	 */
+	SymbolLookupTable symbol_lookup_table;
+
+	public RangeCoder(SymbolProbabilityDistribution dist) {
+		this();
+
+		this.dist = new SymbolProbabilityDistribution(dist);
+
+		ensureSaneTotalCount(this.dist.total_count);
+
+		total_count_shift = this.dist.total_count_shift();
+	}
+
+	/**
+	 * For subclasses which determine the symbol intervals themselves; dist
+	 * stays null.
+	 */
+	RangeCoder() {
+		total_count_shift = -1;
+
+		low = 0;
+		range = MASK_STATE;
+		cache = 0;
+		cache_size = 1;
+		code = 0;
+	}
+
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		long cum_count_prev = dist.cum_count[symbol];
+		long cum_count_symb = dist.cum_count[symbol + 1];
+
+		long r = (total_count_shift >= 0) ? (range >>> total_count_shift) : (range / dist.total_count);
+
+		return encode_interval(r, cum_count_prev, cum_count_symb - cum_count_prev, sink);
+	}
+
+	/**
+	 * Narrows the interval to the part [cum_count_prev, cum_count_prev +
+	 * count) out of total_count many parts, r being range / total_count, and
+	 * renormalizes. Returns the number of bits written.
+	 */
+	final int encode_interval(long r, long cum_count_prev, long count, BitOutputStream sink) {
+		low += r * cum_count_prev;
+		range = r * count;
+
+		int write_count = 0;
+
+		while (range < TOP) {
+			range <<= 8;
+			write_count += shift_low(sink);
+		}
+
+		return write_count;
+	}
+
+	/**
+	 * Moves the top byte of low to the cache and writes out the previously
+	 * held back bytes if they are settled now. Returns the number of bits
+	 * written.
+	 */
+	private int shift_low(BitOutputStream sink) {
+		int write_count = 0;
+
+		if ((low & MASK_STATE) < (0xffL << SHIFT_TOP_BYTE) || (low >>> STATE_BITS) != 0) {
+			int carry = (int) (low >>> STATE_BITS);
+			int b = cache;
+			do {
+				sink.write(b + carry, 8);
+				write_count += 8;
+				b = 0xff;
+			} while (--cache_size != 0);
+
+			cache = (int) (low >>> SHIFT_TOP_BYTE) & 0xff;
+		}
+
+		cache_size++;
+		low = (low & (TOP - 1)) << 8;
+
+		return write_count;
+	}
+
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return max_encoded_size(symbol_count, dist.total_count);
+	}
+
+	/**
+	 * Bound for symbol intervals out of at most max_total_count many parts:
+	 * range is at least TOP before a symbol and at least range / total_count
+	 * after it, so renormalization shifts out at most bits(max_total_count) /
+	 * 8 + 1 bytes per symbol. Each shifted byte is written once, plus the
+	 * initial cache byte and 8 bytes by finish_encoding().
+	 */
+	static long max_encoded_size(long symbol_count, long max_total_count) {
+		int total_bits = 64 - Long.numberOfLeadingZeros(max_total_count);
+		return symbol_count * (total_bits / 8 + 1) + 9;
+	}
+
+	@Override
+	public int finish_encoding(BitOutputStream sink) {
+		int write_count = 0;
+
+		// the cached byte plus all bytes of low
+		for (int i = 0; i <= STATE_BITS; i += 8) {
+			write_count += shift_low(sink);
+		}
+
+		return write_count;
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		symbol_lookup_table = dist.symbol_lookup_table();
+
+		read_initial_code(source);
+	}
+
+	final void read_initial_code(BitInputStream source) {
+		range = MASK_STATE;
+		code = 0;
+
+		// the first byte is the initial cache, which is always 0
+		source.read(8);
+
+		for (int i = 0; i < STATE_BITS; i += 8) {
+			code = (code << 8) | (source.read(8) & 0xff);
+		}
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		long total_count = dist.total_count;
+
+		long r = (total_count_shift >= 0) ? (range >>> total_count_shift) : (range / total_count);
+		int target_cum_count = (int) Math.min(code / r, total_count - 1);
+
+		int symbol = symbol_lookup_table.symbol(target_cum_count);
+
+		long cum_count_prev = dist.cum_count[symbol];
+		long cum_count_symb = dist.cum_count[symbol + 1];
+
+		decode_interval(r, cum_count_prev, cum_count_symb - cum_count_prev, source);
+
+		return symbol;
+	}
+
+	/**
+	 * Decoder counterpart of encode_interval().
+	 */
+	final void decode_interval(long r, long cum_count_prev, long count, BitInputStream source) {
+		code -= r * cum_count_prev;
+		range = r * count;
+
+		while (range < TOP) {
+			range <<= 8;
+			code = (code << 8) | (source.read(8) & 0xff);
+		}
+	}
+
+	private void ensureSaneTotalCount(int total_count) {
+		if (total_count == 0) {
+			throw new ArithmeticException(
+					"total number of occurences in " + SymbolProbabilityDistribution.class.getSimpleName()
+							+ " is 0; this is not a valid probability distribution, thus cannot be used for encoding");
+		}
+
+		if (total_count == 1) {
+			throw new ArithmeticException(
+					"total number of occurences in " + SymbolProbabilityDistribution.class.getSimpleName() + " is 1"
+							+ ", thus entropy is 0 and arithmetic encoding is not applicable / is trivial "
+							+ "and always of length 0.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    low        = ").append(Long.toHexString(low)).append("\n");
+		buf.append("    range      = ").append(Long.toHexString(range)).append("\n");
+		buf.append("    cache      = ").append(Integer.toHexString(cache)).append("\n");
+		buf.append("    cache_size = ").append(cache_size).append("\n");
+		buf.append("    dist = ").append(dist);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,208 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.util.Arrays;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Range asymmetric numeral system (rANS) coder, see Jarek Duda, "Asymmetric
+ * numeral systems: entropy coding combining speed of Huffman coding with
+ * compression rate of arithmetic coding", 2013.
+ * <p>
+ * The whole coding state is the single number x. Decoding a symbol takes one
+ * division by total_count, a lookup of the symbol, a multiply-add and at most
+ * one read of a 32 bit word, without any renormalization loop.
+ * </p>
+ * <p>
+ * rANS decodes in the reverse order of encoding. To keep the lifecycle of
+ * {@link EntropyCoder}, encode(...) only buffers the symbols and never writes
+ * anything; finish_encoding(...) encodes the buffered symbols back to front
+ * and writes the result in the order the decoder consumes it.
+ * </p>
+ */
+public class RansCoder implements EntropyCoder {
+
+	/**
+	 * Number of bits emitted or consumed at once; x is kept in [l_bound,
+	 * l_bound << WORD_BITS).
+	 */
+	static final int WORD_BITS = 32;
+
+	static final long MASK_WORD = (1L << WORD_BITS) - 1;
+
+	SymbolProbabilityDistribution dist;
+
+	/**
+	 * Lower bound of the normalized interval of x. A multiple of total_count
+	 * below 2^31, so that x always stays below 2^63.
+	 */
+	long l_bound;
+
+	/**
+	 * l_bound / total_count.
+	 */
+	long l_bound_per_total;
+
+	/**
+	 * log2(total_count) if total_count is a power of 2, otherwise -1.
+	 */
+	int total_count_shift;
+
+	/**
+	 * Only used for encoding; symbols passed to encode(...) so far.
+	 */
+	int[] symbols;
+
+	int symbol_count;
+
+	/**
+	 * Only used for decoding.
+	 */
+	long x;
+
+	SymbolLookupTable symbol_lookup_table;
+
+	public RansCoder(SymbolProbabilityDistribution dist) {
+		this.dist = new SymbolProbabilityDistribution(dist);
+
+		int total_count = this.dist.total_count;
+
+		ensureSaneTotalCount(total_count);
+
+		l_bound_per_total = ((1L << (WORD_BITS - 1)) - 1) / total_count;
+		l_bound = l_bound_per_total * total_count;
+
+		total_count_shift = this.dist.total_count_shift();
+
+		symbols = new int[1024];
+		symbol_count = 0;
+	}
+
+	/**
+	 * Buffers the symbol for finish_encoding(...) and returns 0, because no
+	 * bits are written.
+	 */
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		if (symbol_count == symbols.length) {
+			symbols = Arrays.copyOf(symbols, symbols.length * 2);
+		}
+		symbols[symbol_count++] = symbol;
+
+		return 0;
+	}
+
+	@Override
+	public int finish_encoding(BitOutputStream sink) {
+		int[] cum_count = dist.cum_count;
+		long total_count = dist.total_count;
+
+		// each symbol emits at most one word
+		int[] words = new int[symbol_count];
+		int word_count = 0;
+
+		long x = l_bound;
+
+		for (int i = symbol_count - 1; i >= 0; i--) {
+			int symbol = symbols[i];
+			long cum_count_prev = cum_count[symbol];
+			long count = cum_count[symbol + 1] - cum_count_prev;
+
+			// x_max < 2^63, because l_bound_per_total * count <= l_bound
+			long x_max = (l_bound_per_total * count) << WORD_BITS;
+			if (x >= x_max) {
+				words[word_count++] = (int) x;
+				x >>>= WORD_BITS;
+			}
+
+			long q = x / count;
+			x = q * total_count + (x - q * count) + cum_count_prev;
+		}
+
+		sink.write((int) (x >>> WORD_BITS), WORD_BITS);
+		sink.write((int) x, WORD_BITS);
+
+		for (int i = word_count - 1; i >= 0; i--) {
+			sink.write(words[i], WORD_BITS);
+		}
+
+		symbols = new int[1024];
+		symbol_count = 0;
+
+		return (2 + word_count) * WORD_BITS;
+	}
+
+	/**
+	 * At most one word per symbol, plus the final state.
+	 */
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return (symbol_count + 2) * (WORD_BITS / 8);
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		symbol_lookup_table = dist.symbol_lookup_table();
+
+		x = (source.read(WORD_BITS) & MASK_WORD) << WORD_BITS;
+		x |= source.read(WORD_BITS) & MASK_WORD;
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		int[] cum_count = dist.cum_count;
+		long total_count = dist.total_count;
+
+		long q;
+		int slot;
+		if (total_count_shift >= 0) {
+			q = x >>> total_count_shift;
+			slot = (int) x & (int) (total_count - 1);
+		} else {
+			q = x / total_count;
+			slot = (int) (x - q * total_count);
+		}
+
+		int symbol = symbol_lookup_table.symbol(slot);
+
+		long cum_count_prev = cum_count[symbol];
+		long count = cum_count[symbol + 1] - cum_count_prev;
+
+		x = count * q + slot - cum_count_prev;
+
+		if (x < l_bound) {
+			x = (x << WORD_BITS) | (source.read(WORD_BITS) & MASK_WORD);
+		}
+
+		return symbol;
+	}
+
+	private void ensureSaneTotalCount(int total_count) {
+		if (total_count == 0) {
+			throw new ArithmeticException(
+					"total number of occurences in " + SymbolProbabilityDistribution.class.getSimpleName()
+							+ " is 0; this is not a valid probability distribution, thus cannot be used for encoding");
+		}
+
+		if (total_count == 1) {
+			throw new ArithmeticException(
+					"total number of occurences in " + SymbolProbabilityDistribution.class.getSimpleName() + " is 1"
+							+ ", thus entropy is 0 and rANS encoding is not applicable / is trivial "
+							+ "and always of length 0.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+
+		buf.append(getClass().getSimpleName()).append("\n");
+		buf.append("    l_bound      = ").append(l_bound).append("\n");
+		buf.append("    x            = ").append(x).append("\n");
+		buf.append("    symbol_count = ").append(symbol_count).append("\n");
+		buf.append("    dist = ").append(dist);
+
+		return buf.toString();
+	}
+}
@@ -0,0 +1,143 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.util.Arrays;
+
+/**
+ * {@link ContextModel} with fixed distributions, built from a histogram per
+ * context. Each distribution is normalized to a total count of
+ * 2^TOTAL_BITS, so that all cumulative counts fit into a char; the rows of
+ * all contexts are stored back to back in a single array. With 256 symbols,
+ * this is 514 bytes per context, i.e. 128 KiB for an order-1 model of bytes.
+ * <p>
+ * Contexts without any symbols in their histogram get a uniform
+ * distribution.
+ * </p>
+ */
+public class StaticContextModel implements ContextModel {
+
+	public static final int TOTAL_BITS = 15;
+
+	int context_count;
+
+	int symbol_count;
+
+	/**
+	 * symbol_count + 1 cumulative counts per context, starting at ctx *
+	 * row_length.
+	 */
+	char[] cum_count;
+
+	int row_length;
+
+	/**
+	 * histogram[ctx][symbol] is the number of occurrences of symbol in
+	 * context ctx.
+	 */
+	public StaticContextModel(int[][] histogram) {
+		context_count = histogram.length;
+		symbol_count = histogram[0].length;
+
+		if (symbol_count > (1 << TOTAL_BITS)) {
+			throw new IllegalArgumentException(
+					"symbol_count must not exceed 2^" + TOTAL_BITS + " (symbol_count = " + symbol_count + ")");
+		}
+
+		row_length = symbol_count + 1;
+		cum_count = new char[context_count * row_length];
+
+		int[] uniform = new int[symbol_count];
+		Arrays.fill(uniform, 1);
+
+		for (int ctx = 0; ctx < context_count; ctx++) {
+			int[] count = histogram[ctx];
+			boolean empty = true;
+			for (int symbol = 0; symbol < symbol_count && empty; symbol++) {
+				empty = (count[symbol] == 0);
+			}
+
+			SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(empty ? uniform : count)
+					.normalized(TOTAL_BITS);
+
+			for (int i = 0; i < row_length; i++) {
+				cum_count[ctx * row_length + i] = (char) dist.cum_count[i];
+			}
+		}
+	}
+
+	/**
+	 * Counts the symbols of data per context, as determined by a fresh copy of
+	 * the specified context.
+	 */
+	public static int[][] histogram(byte[] data, SymbolContext context) {
+		context = context.copy();
+
+		int[][] histogram = new int[context.context_count()][context.symbol_count()];
+		for (int i = 0; i < data.length; i++) {
+			int symbol = data[i] & 0xff;
+			histogram[context.context()][symbol]++;
+			context.push(symbol);
+		}
+
+		return histogram;
+	}
+
+	@Override
+	public int context_count() {
+		return context_count;
+	}
+
+	@Override
+	public int symbol_count() {
+		return symbol_count;
+	}
+
+	@Override
+	public int total_count(int ctx) {
+		return 1 << TOTAL_BITS;
+	}
+
+	@Override
+	public int max_total_count() {
+		return 1 << TOTAL_BITS;
+	}
+
+	@Override
+	public int cum_count(int ctx, int symbol) {
+		return cum_count[ctx * row_length + symbol];
+	}
+
+	@Override
+	public int count(int ctx, int symbol) {
+		int i = ctx * row_length + symbol;
+		return cum_count[i + 1] - cum_count[i];
+	}
+
+	@Override
+	public int symbol(int ctx, int cum) {
+		// binary search for the last entry <= cum within the row; a lookup
+		// table per context would take 2^TOTAL_BITS entries
+		int lo = ctx * row_length;
+		int hi = lo + symbol_count;
+		int row_start = lo;
+
+		while (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			if (cum_count[mid] <= cum) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+
+		return lo - row_start;
+	}
+
+	@Override
+	public void update(int ctx, int symbol) {
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(context_count=" + context_count + ", symbol_count=" + symbol_count + ")";
+	}
+}
@@ -0,0 +1,134 @@
+package arithmetic_compression.coder.arithmetic;
+
+/**
+ * Derives the context under which the next symbol is coded from the symbols
+ * coded before it. The context is made up of, from most to least
+ * significant:
+ * <ul>
+ * <li>the channel, i.e. the position of the symbol modulo channel_count, e.g.
+ * 3 for interleaved B, G, R bytes (1 = no channel context),</li>
+ * <li>for order &gt;= 1, the previous symbol,</li>
+ * <li>for order 2, the symbol before the previous one, clamped to
+ * prev2_levels - 1. Small symbols, like zigzagged residuals near 0, keep
+ * their own context, all larger ones share one. With prev2_levels =
+ * symbol_count, the full order-2 context is used.</li>
+ * </ul>
+ * Encoder and decoder each need their own instance, and have to push() the
+ * same symbols.
+ */
+public class SymbolContext {
+
+	int symbol_count;
+
+	int order;
+
+	int channel_count;
+
+	int prev2_levels;
+
+	int channel;
+
+	int prev1;
+
+	int prev2;
+
+	public SymbolContext(int symbol_count, int order) {
+		this(symbol_count, order, 1, symbol_count);
+	}
+
+	public SymbolContext(int symbol_count, int order, int channel_count, int prev2_levels) {
+		if (order < 0 || order > 2) {
+			throw new IllegalArgumentException("order must be in range [0, 2] (order = " + order + ")");
+		}
+
+		if (channel_count < 1) {
+			throw new IllegalArgumentException("channel_count must be at least 1 (channel_count = " + channel_count + ")");
+		}
+
+		if (prev2_levels < 1 || prev2_levels > symbol_count) {
+			throw new IllegalArgumentException("prev2_levels must be in range [1, symbol_count] (prev2_levels = "
+					+ prev2_levels + ", symbol_count = " + symbol_count + ")");
+		}
+
+		this.symbol_count = symbol_count;
+		this.order = order;
+		this.channel_count = channel_count;
+		this.prev2_levels = prev2_levels;
+
+		long context_count = channel_count;
+		if (order >= 1) {
+			context_count *= symbol_count;
+		}
+		if (order >= 2) {
+			context_count *= prev2_levels;
+		}
+		if (context_count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many contexts: " + context_count);
+		}
+	}
+
+	/**
+	 * Returns a new context with the same parameters, in the initial state.
+	 */
+	public SymbolContext copy() {
+		return new SymbolContext(symbol_count, order, channel_count, prev2_levels);
+	}
+
+	public int context_count() {
+		int count = channel_count;
+		if (order >= 1) {
+			count *= symbol_count;
+		}
+		if (order >= 2) {
+			count *= prev2_levels;
+		}
+		return count;
+	}
+
+	public int symbol_count() {
+		return symbol_count;
+	}
+
+	/**
+	 * Returns the context of the next symbol, in the range [0,
+	 * context_count()).
+	 */
+	public int context() {
+		int ctx = channel;
+		if (order >= 1) {
+			ctx = ctx * symbol_count + prev1;
+		}
+		if (order >= 2) {
+			ctx = ctx * prev2_levels + Math.min(prev2, prev2_levels - 1);
+		}
+		return ctx;
+	}
+
+	/**
+	 * Advances the context by the symbol which was just coded.
+	 */
+	public void push(int symbol) {
+		prev2 = prev1;
+		prev1 = symbol;
+
+		channel++;
+		if (channel == channel_count) {
+			channel = 0;
+		}
+	}
+
+	/**
+	 * Back to the initial state: channel 0, previous symbols 0.
+	 */
+	public void reset() {
+		channel = 0;
+		prev1 = 0;
+		prev2 = 0;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(order=" + order + ", channel_count=" + channel_count + ", prev2_levels="
+				+ prev2_levels + ", symbol_count=" + symbol_count + ")";
+	}
+}
@@ -0,0 +1,86 @@
+package arithmetic_compression.coder.arithmetic;
+
+/**
+ * Maps a cumulative count, i.e. a value in [0, total_count), to the symbol
+ * whose interval [cum_count[symbol], cum_count[symbol + 1]) contains it. This
+ * is what decoders have to find for every symbol; the table replaces the
+ * binary search over cum_count and its unpredictable branches.
+ * <p>
+ * For small total_count, the table has one entry per cumulative count and the
+ * lookup is a single array access. For larger total_count, the cumulative
+ * counts are grouped into buckets of 2^shift many values, and the table holds
+ * the symbol at the start of each bucket. There are at least 4 buckets per
+ * symbol, so on average, the lookup has to step over less than one symbol
+ * boundary from there.
+ * </p>
+ */
+public class SymbolLookupTable {
+
+	/**
+	 * Largest total_count for which a table with one entry per cumulative
+	 * count is built.
+	 */
+	public static final int MAX_DIRECT_TOTAL_COUNT = 1 << 16;
+
+	int[] cum_count;
+
+	/**
+	 * Symbol per cumulative count; null if bucketed.
+	 */
+	char[] direct;
+
+	/**
+	 * Symbol at the start of each bucket; null if direct.
+	 */
+	int[] bucket_symbol;
+
+	int shift;
+
+	public SymbolLookupTable(SymbolProbabilityDistribution dist) {
+		this.cum_count = dist.cum_count;
+
+		int total_count = dist.total_count;
+		int symbol_count = cum_count.length - 1;
+
+		if (total_count <= MAX_DIRECT_TOTAL_COUNT && symbol_count <= (Character.MAX_VALUE + 1)) {
+			direct = new char[total_count];
+			for (int symbol = 0; symbol < symbol_count; symbol++) {
+				for (int i = cum_count[symbol]; i < cum_count[symbol + 1]; i++) {
+					direct[i] = (char) symbol;
+				}
+			}
+
+		} else {
+			int total_bits = 32 - Integer.numberOfLeadingZeros(total_count - 1);
+			int bucket_bits = Math.min(total_bits, 34 - Integer.numberOfLeadingZeros(symbol_count));
+			shift = total_bits - bucket_bits;
+
+			bucket_symbol = new int[((total_count - 1) >>> shift) + 1];
+			int symbol = 0;
+			for (int bucket = 0; bucket < bucket_symbol.length; bucket++) {
+				int bucket_start = bucket << shift;
+				while (cum_count[symbol + 1] <= bucket_start) {
+					symbol++;
+				}
+				bucket_symbol[bucket] = symbol;
+			}
+		}
+	}
+
+	/**
+	 * Returns the symbol for the specified cumulative count, which has to be in
+	 * the range [0, total_count). Symbols with a count of 0 are never returned.
+	 */
+	public int symbol(int cum) {
+		if (direct != null) {
+			return direct[cum];
+		}
+
+		int symbol = bucket_symbol[cum >>> shift];
+		while (cum_count[symbol + 1] <= cum) {
+			symbol++;
+		}
+
+		return symbol;
+	}
+}
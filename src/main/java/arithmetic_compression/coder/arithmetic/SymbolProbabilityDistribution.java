@@ -1,6 +1,7 @@
 package arithmetic_compression.coder.arithmetic;
 
 import java.util.Arrays;
+import java.util.PriorityQueue;
 
 public class SymbolProbabilityDistribution {
 
@@ -8,9 +9,15 @@ public class SymbolProbabilityDistribution {
 
 	int total_count;
 
+	/**
+	 * Built on first use by symbol_lookup_table(), only decoders need it.
+	 */
+	SymbolLookupTable symbol_lookup_table;
+
 	public SymbolProbabilityDistribution(SymbolProbabilityDistribution src) {
 		cum_count = Arrays.copyOf(src.cum_count, src.cum_count.length);
 		init_total_count();
+		symbol_lookup_table = src.symbol_lookup_table;
 	}
 
 	public SymbolProbabilityDistribution(int[] count) {
@@ -22,6 +29,120 @@ public class SymbolProbabilityDistribution {
 		total_count = cum_count[cum_count.length - 1];
 	}
 
+	public int symbol_count() {
+		return cum_count.length - 1;
+	}
+
+	public int count(int symbol) {
+		return cum_count[symbol + 1] - cum_count[symbol];
+	}
+
+	public int total_count() {
+		return total_count;
+	}
+
+	/**
+	 * Returns log2(total_count) if total_count is a power of 2, otherwise -1.
+	 * Coders use this to replace divisions by total_count with shifts.
+	 */
+	public int total_count_shift() {
+		if (Integer.bitCount(total_count) != 1) {
+			return -1;
+		}
+
+		return Integer.numberOfTrailingZeros(total_count);
+	}
+
+	/**
+	 * Returns a distribution with a total_count of 2^total_bits which is as
+	 * close as possible to this one. Every symbol with a count > 0 keeps a
+	 * count > 0, symbols with count 0 keep count 0.
+	 * <p>
+	 * Starting from the rounded down proportional counts, the remaining
+	 * difference to 2^total_bits is distributed one by one to the symbol where
+	 * it costs the least (or saves the most) coded bits, i.e. where count(s) *
+	 * log2(normalized(s) / (normalized(s) - 1)) is smallest, or count(s) *
+	 * log2((normalized(s) + 1) / normalized(s)) is largest, respectively.
+	 * </p>
+	 */
+	public SymbolProbabilityDistribution normalized(int total_bits) {
+		if (total_bits < 0 || total_bits > 30) {
+			throw new IllegalArgumentException("total_bits must be in range [0, 30] (total_bits = " + total_bits + ")");
+		}
+
+		int symbol_count = cum_count.length - 1;
+		final long[] count = new long[symbol_count];
+		final int[] normalized = new int[symbol_count];
+
+		long target_total = 1L << total_bits;
+		long normalized_total = 0;
+		int used_symbol_count = 0;
+
+		for (int symbol = 0; symbol < symbol_count; symbol++) {
+			count[symbol] = cum_count[symbol + 1] - cum_count[symbol];
+			if (count[symbol] > 0) {
+				normalized[symbol] = (int) Math.max(1, count[symbol] * target_total / total_count);
+				normalized_total += normalized[symbol];
+				used_symbol_count++;
+			}
+		}
+
+		if (used_symbol_count > target_total) {
+			throw new ArithmeticException(used_symbol_count + " symbols with count > 0 in "
+					+ SymbolProbabilityDistribution.class.getSimpleName() + " don't fit into a total count of 2^"
+					+ total_bits + " without dropping symbols");
+		}
+
+		if (normalized_total < target_total) {
+			// largest saving first
+			PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, used_symbol_count),
+					(a, b) -> Double.compare( //
+							count[b] * Math.log((normalized[b] + 1.0D) / normalized[b]), //
+							count[a] * Math.log((normalized[a] + 1.0D) / normalized[a])));
+			for (int symbol = 0; symbol < symbol_count; symbol++) {
+				if (count[symbol] > 0) {
+					queue.add(symbol);
+				}
+			}
+
+			for (; normalized_total < target_total; normalized_total++) {
+				int symbol = queue.poll();
+				normalized[symbol]++;
+				queue.add(symbol);
+			}
+
+		} else if (normalized_total > target_total) {
+			// smallest cost first
+			PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, used_symbol_count),
+					(a, b) -> Double.compare( //
+							count[a] * Math.log(normalized[a] / (normalized[a] - 1.0D)), //
+							count[b] * Math.log(normalized[b] / (normalized[b] - 1.0D))));
+			for (int symbol = 0; symbol < symbol_count; symbol++) {
+				if (normalized[symbol] > 1) {
+					queue.add(symbol);
+				}
+			}
+
+			for (; normalized_total > target_total; normalized_total--) {
+				int symbol = queue.poll();
+				normalized[symbol]--;
+				if (normalized[symbol] > 1) {
+					queue.add(symbol);
+				}
+			}
+		}
+
+		return new SymbolProbabilityDistribution(normalized);
+	}
+
+	public SymbolLookupTable symbol_lookup_table() {
+		if (symbol_lookup_table == null) {
+			symbol_lookup_table = new SymbolLookupTable(this);
+		}
+
+		return symbol_lookup_table;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder buf = new StringBuilder();
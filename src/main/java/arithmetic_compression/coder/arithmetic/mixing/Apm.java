@@ -0,0 +1,71 @@
+package arithmetic_compression.coder.arithmetic.mixing;
+
+/**
+ * Adaptive probability map, also known as secondary symbol estimation (SSE):
+ * refines a prediction by looking up what probability was actually observed
+ * after similar predictions in the same context. Per context, the stretched
+ * input probability is quantized into 32 intervals; the output interpolates
+ * between the learned values at the interval bounds, both of which are then
+ * moved towards the coded bit.
+ * <p>
+ * Usage per bit: refine(p, ctx), then update(bit). Nothing is allocated after
+ * construction.
+ * </p>
+ */
+public class Apm {
+
+	static final int BUCKETS = 33;
+
+	public static final int DEFAULT_RATE = 7;
+
+	int rate;
+
+	/**
+	 * 16 bit probabilities of a 1 bit, BUCKETS many per context.
+	 */
+	char[] t;
+
+	/**
+	 * Index of the lower bucket used by the last refine(...).
+	 */
+	int idx;
+
+	/**
+	 * Weight of the upper bucket in the last refine(...), in [0, 128).
+	 */
+	int w;
+
+	public Apm(int context_count) {
+		this(context_count, DEFAULT_RATE);
+	}
+
+	public Apm(int context_count, int rate) {
+		this.rate = rate;
+
+		t = new char[Math.multiplyExact(context_count, BUCKETS)];
+		for (int ctx = 0; ctx < context_count; ctx++) {
+			for (int j = 0; j < BUCKETS; j++) {
+				// initially the identity mapping
+				t[ctx * BUCKETS + j] = (char) (Logistic.squash((j - 16) * 128) * 16);
+			}
+		}
+	}
+
+	/**
+	 * p is a 12 bit probability of a 1 bit, the result as well, in [1, 4095].
+	 */
+	public int refine(int p, int ctx) {
+		int s = Logistic.stretch(p) + 2048;
+		w = s & 127;
+		idx = ctx * BUCKETS + (s >> 7);
+
+		int refined = (t[idx] * (128 - w) + t[idx + 1] * w) >> 11;
+		return Math.max(1, Math.min(4095, refined));
+	}
+
+	public void update(int bit) {
+		int target = (bit << 16) - bit;
+		t[idx] += ((target - t[idx]) * (128 - w) >> 7) >> rate;
+		t[idx + 1] += ((target - t[idx + 1]) * w >> 7) >> rate;
+	}
+}
@@ -0,0 +1,260 @@
+package arithmetic_compression.coder.arithmetic.mixing;
+
+import java.util.Arrays;
+
+import arithmetic_compression.coder.arithmetic.BinaryArithmeticCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Codes bytes bit by bit, MSB first, with a {@link BinaryArithmeticCoder},
+ * each bit predicted by mixing several context models with a
+ * {@link LogisticMixer} and optionally refining the result with an
+ * {@link Apm}. Slow compared to the other coders, but adapts to the data
+ * much better.
+ * <p>
+ * Each context model maps its context plus the bits of the current byte coded
+ * so far (the bit tree node, 1 to 255) to a 16 bit probability of a 1 bit:
+ * </p>
+ * <ul>
+ * <li>order 0 with the channel, i.e. the position modulo channel_count</li>
+ * <li>order 1: the previous byte and the channel</li>
+ * <li>order 2: the previous two bytes and the channel, hashed into
+ * 2^ORDER2_HASH_BITS slots</li>
+ * <li>only if channel_count &gt; 1: the byte channel_count positions back,
+ * i.e. the same channel of the previous pixel, with the channel</li>
+ * </ul>
+ * The mixer selects its weights by the bit tree node. The APM refines by the
+ * previous byte and the bit tree node.
+ * <p>
+ * All tables are allocated by the constructor, coding allocates nothing.
+ * Encoder and decoder each need their own coder, created with the same
+ * parameters.
+ * </p>
+ */
+public class ContextMixingCoder implements EntropyCoder {
+
+	public static final int ORDER2_HASH_BITS = 14;
+
+	/**
+	 * Adaptation rate of the context model probabilities, as a shift.
+	 */
+	public static final int COUNTER_SHIFT = 4;
+
+	int channel_count;
+
+	BinaryArithmeticCoder coder;
+
+	LogisticMixer mixer;
+
+	/**
+	 * null if the APM stage is disabled.
+	 */
+	Apm apm;
+
+	char[] t_order0;
+
+	char[] t_order1;
+
+	char[] t_order2;
+
+	/**
+	 * null if channel_count is 1.
+	 */
+	char[] t_channel;
+
+	/**
+	 * The last channel_count bytes, indexed by channel.
+	 */
+	int[] history;
+
+	int channel;
+
+	int prev1;
+
+	int prev2;
+
+	/**
+	 * Base indices of the current byte into the tables, computed once per
+	 * byte; the bit tree node is added to them.
+	 */
+	int base_order0;
+
+	int base_order1;
+
+	int base_order2;
+
+	int base_channel;
+
+	// indices and prediction of the current bit, kept for update(...)
+
+	int idx_order0;
+
+	int idx_order1;
+
+	int idx_order2;
+
+	int idx_channel;
+
+	public ContextMixingCoder() {
+		this(1, true);
+	}
+
+	public ContextMixingCoder(int channel_count, boolean use_apm) {
+		if (channel_count < 1 || channel_count > 256) {
+			throw new IllegalArgumentException(
+					"channel_count must be in range [1, 256] (channel_count = " + channel_count + ")");
+		}
+
+		this.channel_count = channel_count;
+
+		coder = new BinaryArithmeticCoder();
+
+		int input_count = (channel_count > 1) ? 5 : 4;
+		mixer = new LogisticMixer(input_count, 256);
+
+		if (use_apm) {
+			apm = new Apm(256 * 256);
+		}
+
+		t_order0 = new_counters(channel_count * 256);
+		t_order1 = new_counters(channel_count * 256 * 256);
+		t_order2 = new_counters(1 << (ORDER2_HASH_BITS + 8));
+		if (channel_count > 1) {
+			t_channel = new_counters(channel_count * 256 * 256);
+		}
+
+		history = new int[channel_count];
+
+		start_symbol();
+	}
+
+	private static char[] new_counters(int length) {
+		char[] t = new char[length];
+		Arrays.fill(t, (char) (1 << 15));
+		return t;
+	}
+
+	@Override
+	public int encode(int symbol, BitOutputStream sink) {
+		int write_count = 0;
+
+		int m = 1;
+		for (int i = 7; i >= 0; i--) {
+			int bit = (symbol >>> i) & 1;
+			int p1 = predict(m);
+			write_count += coder.encode_bit_prob(BinaryArithmeticCoder.PROB_ONE - p1, bit, sink);
+			update(bit);
+			m = (m << 1) | bit;
+		}
+
+		end_symbol(symbol);
+
+		return write_count;
+	}
+
+	@Override
+	public int finish_encoding(BitOutputStream sink) {
+		return coder.finish_encoding(sink);
+	}
+
+	@Override
+	public long max_encoded_size(long symbol_count) {
+		return BinaryArithmeticCoder.max_encoded_size(symbol_count * 8);
+	}
+
+	@Override
+	public void start_decoding(BitInputStream source) {
+		coder.start_decoding(source);
+	}
+
+	@Override
+	public int decode(BitInputStream source) {
+		int m = 1;
+		for (int i = 0; i < 8; i++) {
+			int p1 = predict(m);
+			int bit = coder.decode_bit_prob(BinaryArithmeticCoder.PROB_ONE - p1, source);
+			update(bit);
+			m = (m << 1) | bit;
+		}
+
+		int symbol = m - 256;
+		end_symbol(symbol);
+
+		return symbol;
+	}
+
+	/**
+	 * Returns the 12 bit probability of the next bit being 1, in [1, 4095].
+	 * m is the bit tree node, i.e. a leading 1 followed by the bits of the
+	 * current byte coded so far.
+	 */
+	private int predict(int m) {
+		idx_order0 = base_order0 + m;
+		idx_order1 = base_order1 + m;
+		idx_order2 = base_order2 + m;
+
+		mixer.add(256);
+		mixer.add(Logistic.stretch(t_order0[idx_order0] >>> 4));
+		mixer.add(Logistic.stretch(t_order1[idx_order1] >>> 4));
+		mixer.add(Logistic.stretch(t_order2[idx_order2] >>> 4));
+		if (t_channel != null) {
+			idx_channel = base_channel + m;
+			mixer.add(Logistic.stretch(t_channel[idx_channel] >>> 4));
+		}
+
+		int p = mixer.mix(m);
+
+		if (apm != null) {
+			p = (p + 3 * apm.refine(p, (prev1 << 8) | m) + 2) >> 2;
+		}
+
+		return p;
+	}
+
+	private void update(int bit) {
+		mixer.update(bit);
+
+		if (apm != null) {
+			apm.update(bit);
+		}
+
+		int target = (bit << 16) - bit;
+		t_order0[idx_order0] += (target - t_order0[idx_order0]) >> COUNTER_SHIFT;
+		t_order1[idx_order1] += (target - t_order1[idx_order1]) >> COUNTER_SHIFT;
+		t_order2[idx_order2] += (target - t_order2[idx_order2]) >> COUNTER_SHIFT;
+		if (t_channel != null) {
+			t_channel[idx_channel] += (target - t_channel[idx_channel]) >> COUNTER_SHIFT;
+		}
+	}
+
+	private void end_symbol(int symbol) {
+		history[channel] = symbol;
+		prev2 = prev1;
+		prev1 = symbol;
+
+		channel++;
+		if (channel == channel_count) {
+			channel = 0;
+		}
+
+		start_symbol();
+	}
+
+	private void start_symbol() {
+		base_order0 = channel << 8;
+		base_order1 = ((channel << 8) | prev1) << 8;
+
+		int h = ((prev2 << 16) | (prev1 << 8) | channel) * 0x9E3779B1;
+		base_order2 = (h >>> (32 - ORDER2_HASH_BITS)) << 8;
+
+		base_channel = ((channel << 8) | history[channel]) << 8;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(channel_count=" + channel_count + ", apm=" + (apm != null) + ")\n"
+				+ coder;
+	}
+}
@@ -0,0 +1,55 @@
+package arithmetic_compression.coder.arithmetic.mixing;
+
+/**
+ * Conversion between 12 bit probabilities and the logistic domain, in fixed
+ * point: stretch(p) = ln(p / (1 - p)) scaled by 256 and clamped to [-2047,
+ * 2047], squash(x) is its inverse. Both are table lookups.
+ * <p>
+ * The tables are computed with StrictMath, so that they are the same on
+ * every JVM; encoder and decoder have to agree on every single value.
+ * </p>
+ */
+public class Logistic {
+
+	public static final int STRETCH_MAX = 2047;
+
+	private static final short[] STRETCH = new short[4096];
+
+	private static final short[] SQUASH = new short[2 * STRETCH_MAX + 1];
+
+	static {
+		for (int x = -STRETCH_MAX; x <= STRETCH_MAX; x++) {
+			double p = 4096.0D / (1.0D + StrictMath.exp(-x / 256.0D));
+			SQUASH[x + STRETCH_MAX] = (short) Math.max(1, Math.min(4095, Math.round(p)));
+		}
+
+		// inverse of squash: the smallest x with squash(x) >= p, so that
+		// squash(stretch(p)) is as close to p as the tables allow
+		int x = -STRETCH_MAX;
+		for (int p = 0; p < 4096; p++) {
+			while (x < STRETCH_MAX && SQUASH[x + STRETCH_MAX] < p) {
+				x++;
+			}
+			STRETCH[p] = (short) x;
+		}
+	}
+
+	/**
+	 * p is a probability in [0, 4095], result in [-2047, 2047].
+	 */
+	public static int stretch(int p) {
+		return STRETCH[p];
+	}
+
+	/**
+	 * x is clamped to [-2047, 2047], result is a probability in [1, 4095].
+	 */
+	public static int squash(int x) {
+		if (x > STRETCH_MAX) {
+			x = STRETCH_MAX;
+		} else if (x < -STRETCH_MAX) {
+			x = -STRETCH_MAX;
+		}
+		return SQUASH[x + STRETCH_MAX];
+	}
+}
@@ -0,0 +1,94 @@
+package arithmetic_compression.coder.arithmetic.mixing;
+
+import java.util.Arrays;
+
+/**
+ * Combines the predictions of several models into one, as a weighted sum in
+ * the logistic domain: p = squash(sum(w[i] * stretch(p[i]))). After each bit,
+ * the weights are trained online by gradient descent on coding cost, i.e. w[i]
+ * += rate * stretch(p[i]) * (bit - p). One set of weights is kept per
+ * context, selected for each prediction.
+ * <p>
+ * Usage per bit: add() each input, mix(ctx), then update(bit) once the bit is
+ * known. Nothing is allocated after construction.
+ * </p>
+ */
+public class LogisticMixer {
+
+	/**
+	 * Weights are fixed point with 16 fractional bits.
+	 */
+	public static final int WEIGHT_ONE = 1 << 16;
+
+	public static final int DEFAULT_LEARNING_RATE = 4;
+
+	int input_count;
+
+	int learning_rate;
+
+	int[] weights;
+
+	int[] inputs;
+
+	int added_count;
+
+	/**
+	 * Offset of the weight set selected by mix(ctx).
+	 */
+	int weight_base;
+
+	/**
+	 * Result of the last mix(ctx).
+	 */
+	int p;
+
+	public LogisticMixer(int input_count, int context_count) {
+		this(input_count, context_count, DEFAULT_LEARNING_RATE);
+	}
+
+	public LogisticMixer(int input_count, int context_count, int learning_rate) {
+		this.input_count = input_count;
+		this.learning_rate = learning_rate;
+
+		inputs = new int[input_count];
+		weights = new int[Math.multiplyExact(input_count, context_count)];
+		Arrays.fill(weights, WEIGHT_ONE / 4);
+	}
+
+	/**
+	 * Adds an input in the logistic domain, i.e. stretch(p) of a prediction.
+	 */
+	public void add(int st) {
+		inputs[added_count++] = st;
+	}
+
+	/**
+	 * Returns the mixed prediction of all inputs added since the last update,
+	 * using the weight set of the specified context. The result is a 12 bit
+	 * probability of a 1 bit in [1, 4095].
+	 */
+	public int mix(int ctx) {
+		weight_base = ctx * input_count;
+
+		long dot = 0;
+		for (int i = 0; i < added_count; i++) {
+			dot += (long) inputs[i] * weights[weight_base + i];
+		}
+
+		p = Logistic.squash((int) (dot >> 16));
+		return p;
+	}
+
+	/**
+	 * Trains the weight set used by the last mix(ctx) on the coded bit.
+	 */
+	public void update(int bit) {
+		int err = ((bit << 12) - p) * learning_rate;
+
+		for (int i = 0; i < added_count; i++) {
+			weights[weight_base + i] += (inputs[i] * err) >> 13;
+		}
+
+		added_count = 0;
+	}
+}
@@ -0,0 +1,533 @@
+package arithmetic_compression.container;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import arithmetic_compression.CodingPhase;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.io.DirectBufferPool;
+
+/**
+ * Compression and decompression between NIO channels, in the same chunked
+ * format as {@link ArithmeticCompressorOutputStream} and
+ * {@link ArithmeticDecompressorInputStream}, so the results are
+ * interchangeable. The data goes through direct buffers from a shared
+ * {@link DirectBufferPool}, which the coders read from and write to via the
+ * ByteBuffer bit streams, without copying into byte arrays.
+ * <p>
+ * The methods for ReadableByteChannel / WritableByteChannel work in the
+ * calling thread, one chunk after the other. The ones for
+ * AsynchronousFileChannel code on an executor and keep the I/O of the
+ * neighbouring chunks in flight while coding: compression reads chunk i + 1
+ * and writes chunk i - 1 while coding chunk i; decompression writes chunk
+ * i - 1 and reads ahead as many bytes as chunk i has while decoding chunk i.
+ * </p>
+ */
+public class ArithmeticChannels {
+
+	/**
+	 * No legitimate chunk needs buffers beyond MAX_CHUNK_SIZE, larger ones
+	 * aren't kept.
+	 */
+	static final DirectBufferPool POOL = new DirectBufferPool(16, ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE);
+
+	/**
+	 * Number of bytes read ahead for the first chunk when decompressing
+	 * asynchronously.
+	 */
+	static final int INITIAL_READ_AHEAD = 1 << 16;
+
+	private ArithmeticChannels() {
+	}
+
+	/**
+	 * Compresses everything from in to out, returns the number of bytes
+	 * written. Neither channel is closed.
+	 */
+	public static long compress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		return compress(in, out, EntropyCoderType.RANGE, ArithmeticCompressorOutputStream.DEFAULT_CHUNK_SIZE);
+	}
+
+	public static long compress(ReadableByteChannel in, WritableByteChannel out, EntropyCoderType coder_type,
+			int chunk_size) throws IOException {
+		check_chunk_size(chunk_size);
+
+		ContainerEncoder encoder = new ContainerEncoder(coder_type, chunk_size);
+
+		ByteBuffer chunk = POOL.acquire(chunk_size);
+		ByteBuffer container = POOL.acquire(max_container_size(encoder, chunk_size));
+		try {
+			long write_count = 0;
+
+			for (;;) {
+				chunk.clear().limit(chunk_size);
+				read_up_to(in, chunk);
+				if (chunk.position() == 0) {
+					break;
+				}
+				boolean last = chunk.hasRemaining();
+
+				chunk.flip();
+				container.clear();
+				encoder.encode(chunk, container);
+				container.flip();
+
+				Object event = CodingPhase.start();
+				int container_size = container.remaining();
+				while (container.hasRemaining()) {
+					out.write(container);
+				}
+				CodingPhase.finish(event, CodingPhase.FLUSH, coder_type, container_size, container_size, chunk.limit());
+
+				write_count += container_size;
+
+				if (last) {
+					break;
+				}
+			}
+
+			return write_count;
+		} finally {
+			POOL.release(chunk);
+			POOL.release(container);
+		}
+	}
+
+	/**
+	 * Decompresses everything from in to out, returns the number of bytes
+	 * written. Neither channel is closed. Corrupt data is reported as
+	 * IOException, data ending within a chunk as EOFException.
+	 */
+	public static long decompress(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ByteBuffer container = POOL.acquire(ContainerFormat.HEADER_SIZE);
+		ByteBuffer data = null;
+		try {
+			long write_count = 0;
+
+			for (;;) {
+				container.clear().limit(ContainerFormat.HEADER_SIZE);
+				read_up_to(in, container);
+				if (container.position() == 0) {
+					break;
+				}
+
+				ContainerDecoder decoder;
+				try {
+					container = read_at_least(in, container, ContainerFormat.HEADER_SIZE);
+					container = read_at_least(in, container, checked_prefix_size(container));
+					container = read_at_least(in, container, checked_container_size(container));
+
+					container.flip();
+					decoder = new ContainerDecoder(container);
+				} catch (RuntimeException e) {
+					throw new IOException("corrupt chunk: " + e.getMessage(), e);
+				}
+
+				data = ensure_capacity(data, (int) decoder.symbol_count());
+				data.clear();
+				try {
+					decoder.decode(data);
+				} catch (RuntimeException e) {
+					throw new IOException("corrupt chunk: " + e.getMessage(), e);
+				}
+				data.flip();
+
+				write_count += data.remaining();
+				while (data.hasRemaining()) {
+					out.write(data);
+				}
+			}
+
+			return write_count;
+		} finally {
+			POOL.release(container);
+			POOL.release(data);
+		}
+	}
+
+	/**
+	 * Compresses the whole file in to out, starting at position 0 of out, on
+	 * the common ForkJoinPool. The future completes with the number of bytes
+	 * written, or exceptionally with the IOException. Neither channel is
+	 * closed.
+	 */
+	public static CompletableFuture<Long> compress_async(AsynchronousFileChannel in, AsynchronousFileChannel out) {
+		return compress_async(in, out, EntropyCoderType.RANGE, ArithmeticCompressorOutputStream.DEFAULT_CHUNK_SIZE,
+				ForkJoinPool.commonPool());
+	}
+
+	public static CompletableFuture<Long> compress_async(AsynchronousFileChannel in, AsynchronousFileChannel out,
+			EntropyCoderType coder_type, int chunk_size, Executor executor) {
+		check_chunk_size(chunk_size);
+
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return run_compress(in, out, new ContainerEncoder(coder_type, chunk_size), chunk_size);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Decompresses the whole file in to out, starting at position 0 of out, on
+	 * the common ForkJoinPool. The future completes with the number of bytes
+	 * written, or exceptionally with the IOException. Neither channel is
+	 * closed.
+	 */
+	public static CompletableFuture<Long> decompress_async(AsynchronousFileChannel in,
+			AsynchronousFileChannel out) {
+		return decompress_async(in, out, ForkJoinPool.commonPool());
+	}
+
+	public static CompletableFuture<Long> decompress_async(AsynchronousFileChannel in, AsynchronousFileChannel out,
+			Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return run_decompress(in, out);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	private static long run_compress(AsynchronousFileChannel in, AsynchronousFileChannel out,
+			ContainerEncoder encoder, int chunk_size) throws IOException {
+		int max_container_size = max_container_size(encoder, chunk_size);
+
+		ByteBuffer chunk = POOL.acquire(chunk_size);
+		ByteBuffer next_chunk = POOL.acquire(chunk_size);
+		ByteBuffer container = POOL.acquire(max_container_size);
+		ByteBuffer pending = POOL.acquire(max_container_size);
+
+		Future<Integer> read = null;
+		Future<Integer> write = null;
+		try {
+			long read_pos = 0;
+			long write_pos = 0;
+			long pending_pos = 0;
+
+			chunk.clear().limit(chunk_size);
+			read = in.read(chunk, read_pos);
+
+			for (;;) {
+				complete_read(in, chunk, read_pos, read);
+				read = null;
+				if (chunk.position() == 0) {
+					break;
+				}
+				read_pos += chunk.position();
+				boolean last = chunk.hasRemaining();
+
+				if (!last) {
+					next_chunk.clear().limit(chunk_size);
+					read = in.read(next_chunk, read_pos);
+				}
+
+				chunk.flip();
+				container.clear();
+				encoder.encode(chunk, container);
+				container.flip();
+
+				if (write != null) {
+					complete_write(out, pending, pending_pos, write);
+				}
+				ByteBuffer tmp = pending;
+				pending = container;
+				container = tmp;
+				pending_pos = write_pos;
+				write_pos += pending.remaining();
+				write = out.write(pending, pending_pos);
+
+				tmp = chunk;
+				chunk = next_chunk;
+				next_chunk = tmp;
+
+				if (last) {
+					break;
+				}
+			}
+
+			if (write != null) {
+				complete_write(out, pending, pending_pos, write);
+				write = null;
+			}
+
+			return write_pos;
+		} finally {
+			// the buffers must not go back to the pool while I/O uses them
+			await_quietly(read);
+			await_quietly(write);
+
+			POOL.release(chunk);
+			POOL.release(next_chunk);
+			POOL.release(container);
+			POOL.release(pending);
+		}
+	}
+
+	private static long run_decompress(AsynchronousFileChannel in, AsynchronousFileChannel out) throws IOException {
+		ByteBuffer container = POOL.acquire(INITIAL_READ_AHEAD);
+		ByteBuffer data = null;
+		ByteBuffer pending = null;
+
+		Future<Integer> read = null;
+		Future<Integer> write = null;
+		try {
+			long read_pos = 0;
+			long write_pos = 0;
+			long pending_pos = 0;
+
+			container.clear();
+			read = in.read(container, read_pos);
+
+			for (;;) {
+				complete_read(in, container, read_pos, read);
+				read = null;
+				if (container.position() == 0) {
+					break;
+				}
+
+				int size;
+				ContainerDecoder decoder;
+				try {
+					container = read_at_least(in, container, read_pos, ContainerFormat.HEADER_SIZE);
+					container = read_at_least(in, container, read_pos, checked_prefix_size(container));
+					size = checked_container_size(container);
+					container = read_at_least(in, container, read_pos, size);
+
+					// bytes read ahead beyond size belong to the next chunk and
+					// are read again with it
+					ByteBuffer view = container.duplicate();
+					view.position(0).limit(size);
+					decoder = new ContainerDecoder(view);
+				} catch (RuntimeException e) {
+					throw new IOException("corrupt chunk: " + e.getMessage(), e);
+				}
+				read_pos += size;
+
+				// guess that the next chunk has the same size as this one
+				ByteBuffer next_container = POOL.acquire(size);
+				next_container.clear().limit(size);
+				read = in.read(next_container, read_pos);
+
+				data = ensure_capacity(data, (int) decoder.symbol_count());
+				data.clear();
+				try {
+					decoder.decode(data);
+				} catch (RuntimeException e) {
+					throw new IOException("corrupt chunk: " + e.getMessage(), e);
+				} finally {
+					POOL.release(container);
+					container = next_container;
+				}
+				data.flip();
+
+				if (write != null) {
+					complete_write(out, pending, pending_pos, write);
+				}
+				ByteBuffer tmp = pending;
+				pending = data;
+				data = tmp;
+				pending_pos = write_pos;
+				write_pos += pending.remaining();
+				write = out.write(pending, pending_pos);
+			}
+
+			if (write != null) {
+				complete_write(out, pending, pending_pos, write);
+				write = null;
+			}
+
+			return write_pos;
+		} finally {
+			await_quietly(read);
+			await_quietly(write);
+
+			POOL.release(container);
+			POOL.release(data);
+			POOL.release(pending);
+		}
+	}
+
+	private static void check_chunk_size(int chunk_size) {
+		if (chunk_size < 1 || chunk_size > ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException("chunk_size must be in range [1, "
+					+ ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE + "] (chunk_size = " + chunk_size + ")");
+		}
+	}
+
+	private static int max_container_size(ContainerEncoder encoder, int chunk_size) {
+		long size = encoder.max_encoded_size(chunk_size);
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("chunks of " + chunk_size + " bytes could exceed the maximum buffer size");
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Returns the prefix size of the container whose header is at the start
+	 * of buf, after checking that the chunk is within the size limit.
+	 */
+	private static int checked_prefix_size(ByteBuffer buf) throws IOException {
+		long prefix_size = ContainerFormat.prefix_size(buf, 0);
+		if (ContainerFormat.symbol_count(buf, 0) > ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE
+				|| prefix_size > ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE) {
+			throw new IOException("corrupt chunk header, chunk exceeds "
+					+ ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE + " bytes");
+		}
+		return (int) prefix_size;
+	}
+
+	/**
+	 * Returns the size of the container whose header and block table are at
+	 * the start of buf, after checking that its blocks are within the limits
+	 * of its symbol count and the chunk within the size limit.
+	 */
+	private static int checked_container_size(ByteBuffer buf) throws IOException {
+		long size = ContainerFormat.checked_container_size(buf, 0);
+		if (size > ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE) {
+			throw new IOException("corrupt chunk, chunk of " + size + " bytes exceeds "
+					+ ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE + " bytes");
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Returns buf if it has at least the specified capacity, otherwise
+	 * releases it and returns a larger one from the pool.
+	 */
+	private static ByteBuffer ensure_capacity(ByteBuffer buf, int capacity) {
+		if (buf != null && buf.capacity() >= capacity) {
+			return buf;
+		}
+
+		POOL.release(buf);
+		return POOL.acquire(capacity);
+	}
+
+	/**
+	 * Makes sure buf holds at least need bytes from its start to its
+	 * position, growing it and reading the missing bytes from in. The
+	 * returned buffer replaces buf, its limit is its position.
+	 */
+	private static ByteBuffer read_at_least(ReadableByteChannel in, ByteBuffer buf, int need) throws IOException {
+		while (buf.position() < need) {
+			buf = grow(buf, need);
+			if (in.read(buf) < 0) {
+				throw new EOFException("stream ends within a chunk");
+			}
+		}
+		buf.limit(buf.position());
+		return buf;
+	}
+
+	/**
+	 * Like read_at_least(ReadableByteChannel, ...), buf holding the bytes from
+	 * file position base_pos on.
+	 */
+	private static ByteBuffer read_at_least(AsynchronousFileChannel in, ByteBuffer buf, long base_pos, int need)
+			throws IOException {
+		while (buf.position() < need) {
+			buf = grow(buf, need);
+			if (await(in.read(buf, base_pos + buf.position())) < 0) {
+				throw new EOFException("file ends within a chunk");
+			}
+		}
+		buf.limit(buf.position());
+		return buf;
+	}
+
+	/**
+	 * Returns buf, or one of twice the capacity, but at most need, with its
+	 * content if it is full, with the limit set so that at most the bytes
+	 * missing up to need can be read to it. Growing as the bytes arrive
+	 * rather than to need right away keeps a corrupt header followed by
+	 * little data from allocating much.
+	 */
+	private static ByteBuffer grow(ByteBuffer buf, int need) {
+		if (buf.position() == buf.capacity()) {
+			ByteBuffer larger = POOL.acquire((int) Math.min(need, 2L * buf.capacity()));
+			buf.flip();
+			larger.put(buf);
+			POOL.release(buf);
+			buf = larger;
+		}
+
+		buf.limit(Math.min(need, buf.capacity()));
+		return buf;
+	}
+
+	/**
+	 * Reads until buf is full or the channel ends.
+	 */
+	private static void read_up_to(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (in.read(buf) < 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Waits for the read started at file position base_pos into buf, then
+	 * continues reading until buf is full or the file ends.
+	 */
+	private static void complete_read(AsynchronousFileChannel in, ByteBuffer buf, long base_pos,
+			Future<Integer> read) throws IOException {
+		int n = await(read);
+		while (n >= 0 && buf.hasRemaining()) {
+			n = await(in.read(buf, base_pos + buf.position()));
+		}
+	}
+
+	/**
+	 * Waits for the write started at file position base_pos from buf, then
+	 * writes whatever is left of buf.
+	 */
+	private static void complete_write(AsynchronousFileChannel out, ByteBuffer buf, long base_pos,
+			Future<Integer> write) throws IOException {
+		await(write);
+		while (buf.hasRemaining()) {
+			await(out.write(buf, base_pos + buf.position()));
+		}
+	}
+
+	private static int await(Future<Integer> future) throws IOException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		}
+	}
+
+	private static void await_quietly(Future<Integer> future) {
+		if (future == null) {
+			return;
+		}
+
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			// already failed, nothing to wait for
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
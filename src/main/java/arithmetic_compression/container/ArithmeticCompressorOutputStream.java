@@ -0,0 +1,133 @@
+package arithmetic_compression.container;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import arithmetic_compression.CodingPhase;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+
+/**
+ * OutputStream which compresses the data written to it on the fly, like
+ * java.util.zip.GZIPOutputStream. The data is collected in chunks of
+ * chunk_size bytes, each of which is written as a container (see
+ * {@link ContainerFormat}) with the histogram of that chunk as its model. So
+ * memory usage is bounded by the chunk size, and no histogram of the whole
+ * data is needed in advance. {@link ArithmeticDecompressorInputStream} reads
+ * the result.
+ * <p>
+ * flush() does not end the current chunk, because short chunks compress
+ * worse; finish() does, and close() calls finish().
+ * </p>
+ */
+public class ArithmeticCompressorOutputStream extends OutputStream {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	OutputStream out;
+
+	ContainerEncoder encoder;
+
+	byte[] buf;
+
+	/**
+	 * Number of bytes in buf.
+	 */
+	int count;
+
+	boolean closed;
+
+	public ArithmeticCompressorOutputStream(OutputStream out) {
+		this(out, EntropyCoderType.RANGE, DEFAULT_CHUNK_SIZE);
+	}
+
+	public ArithmeticCompressorOutputStream(OutputStream out, EntropyCoderType coder_type, int chunk_size) {
+		if (chunk_size < 1 || chunk_size > ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException("chunk_size must be in range [1, "
+					+ ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE + "] (chunk_size = " + chunk_size + ")");
+		}
+
+		this.out = out;
+		encoder = new ContainerEncoder(coder_type, chunk_size);
+		buf = new byte[chunk_size];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensure_open();
+
+		buf[count++] = (byte) b;
+		if (count == buf.length) {
+			write_chunk();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensure_open();
+
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", b.length = " + b.length);
+		}
+
+		while (len > 0) {
+			int n = Math.min(len, buf.length - count);
+			System.arraycopy(b, off, buf, count, n);
+			count += n;
+			off += n;
+			len -= n;
+
+			if (count == buf.length) {
+				write_chunk();
+			}
+		}
+	}
+
+	private void write_chunk() throws IOException {
+		byte[] container = encoder.encode(buf, 0, count);
+
+		Object event = CodingPhase.start();
+		out.write(container);
+		CodingPhase.finish(event, CodingPhase.FLUSH, encoder.coder_type, container.length, container.length, count);
+
+		count = 0;
+	}
+
+	/**
+	 * Writes the buffered data as a chunk, without closing the underlying
+	 * stream. Writing can continue afterwards with a new chunk.
+	 */
+	public void finish() throws IOException {
+		ensure_open();
+
+		if (count > 0) {
+			write_chunk();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensure_open();
+
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		try {
+			finish();
+		} finally {
+			closed = true;
+			out.close();
+		}
+	}
+
+	private void ensure_open() throws IOException {
+		if (closed) {
+			throw new IOException("stream closed");
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package arithmetic_compression.container;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * InputStream which decompresses what {@link ArithmeticCompressorOutputStream}
+ * wrote, one chunk at a time, like java.util.zip.GZIPInputStream. Each chunk
+ * is a container (see {@link ContainerFormat}); its length follows from its
+ * header and block table, so chunks are read exactly, without reading ahead
+ * into whatever follows them in the underlying stream.
+ * <p>
+ * Corrupt data is reported as IOException, data ending within a chunk as
+ * EOFException.
+ * </p>
+ */
+public class ArithmeticDecompressorInputStream extends InputStream {
+
+	/**
+	 * Upper limit for the number of bytes in a chunk, so that corrupt data
+	 * can't make the reader allocate arbitrary amounts of memory.
+	 */
+	public static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	InputStream in;
+
+	/**
+	 * The compressed chunk, reused for the following chunks if large enough.
+	 */
+	byte[] container = new byte[ContainerFormat.HEADER_SIZE];
+
+	int container_len;
+
+	/**
+	 * The decoded chunk; the bytes from pos to limit are not read yet.
+	 */
+	byte[] buf = new byte[0];
+
+	int pos;
+
+	int limit;
+
+	boolean closed;
+
+	public ArithmeticDecompressorInputStream(InputStream in) {
+		this.in = in;
+	}
+
+	@Override
+	public int read() throws IOException {
+		ensure_open();
+
+		if (pos == limit && !next_chunk()) {
+			return -1;
+		}
+
+		return buf[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", b.length = " + b.length);
+		}
+		ensure_open();
+		if (len == 0) {
+			return 0;
+		}
+
+		if (pos == limit && !next_chunk()) {
+			return -1;
+		}
+
+		int n = Math.min(len, limit - pos);
+		System.arraycopy(buf, pos, b, off, n);
+		pos += n;
+
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		ensure_open();
+
+		long skipped = 0;
+		while (skipped < n) {
+			if (pos == limit && !next_chunk()) {
+				break;
+			}
+
+			int step = (int) Math.min(n - skipped, limit - pos);
+			pos += step;
+			skipped += step;
+		}
+
+		return skipped;
+	}
+
+	/**
+	 * Returns the number of decoded bytes not read yet from the current chunk.
+	 */
+	@Override
+	public int available() throws IOException {
+		ensure_open();
+
+		return limit - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads and decodes the next chunk. Returns false at the end of the
+	 * underlying stream.
+	 */
+	private boolean next_chunk() throws IOException {
+		ensure_open();
+
+		// a chunk may decode to 0 bytes, continue until one has data
+		do {
+			if (!read_container()) {
+				return false;
+			}
+
+			ContainerDecoder decoder;
+			try {
+				decoder = new ContainerDecoder(container, 0, container_len);
+				if (buf.length < decoder.symbol_count()) {
+					buf = new byte[(int) decoder.symbol_count()];
+				}
+				decoder.decode(buf, 0);
+			} catch (RuntimeException e) {
+				// ContainerFormatException, or whatever corrupt coded data
+				// makes the coders throw
+				throw new IOException("corrupt chunk: " + e.getMessage(), e);
+			}
+
+			pos = 0;
+			limit = (int) decoder.symbol_count();
+		} while (limit == 0);
+
+		return true;
+	}
+
+	/**
+	 * Reads the next container into container, exactly container_len bytes.
+	 * Returns false if the underlying stream ends before it.
+	 */
+	private boolean read_container() throws IOException {
+		int n = read_up_to(container, 0, ContainerFormat.HEADER_SIZE);
+		if (n == 0) {
+			return false;
+		}
+		if (n < ContainerFormat.HEADER_SIZE) {
+			throw new EOFException("stream ends within a chunk header");
+		}
+
+		try {
+			long prefix_size = ContainerFormat.prefix_size(ByteBuffer.wrap(container), 0);
+			if (ContainerFormat.symbol_count(ByteBuffer.wrap(container), 0) > MAX_CHUNK_SIZE
+					|| prefix_size > MAX_CHUNK_SIZE) {
+				throw new IOException("corrupt chunk header, chunk exceeds " + MAX_CHUNK_SIZE + " bytes");
+			}
+			read_fully(ContainerFormat.HEADER_SIZE, (int) prefix_size);
+
+			// container may have grown
+			long size = ContainerFormat.checked_container_size(ByteBuffer.wrap(container), 0);
+			if (size > MAX_CHUNK_SIZE) {
+				throw new IOException("corrupt chunk, chunk of " + size + " bytes exceeds " + MAX_CHUNK_SIZE + " bytes");
+			}
+			read_fully((int) prefix_size, (int) size);
+			container_len = (int) size;
+		} catch (ContainerFormatException e) {
+			throw new IOException("corrupt chunk: " + e.getMessage(), e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads container[from] to container[to - 1], growing container as the
+	 * bytes arrive rather than to the size the header claims, so that a
+	 * corrupt header followed by little data doesn't allocate much.
+	 */
+	private void read_fully(int from, int to) throws IOException {
+		while (from < to) {
+			if (from == container.length) {
+				container = Arrays.copyOf(container, (int) Math.min(to, 2L * container.length));
+			}
+
+			int n = in.read(container, from, Math.min(to, container.length) - from);
+			if (n < 0) {
+				throw new EOFException("stream ends within a chunk");
+			}
+			from += n;
+		}
+	}
+
+	/**
+	 * Reads until len bytes are read or the stream ends, returns the number
+	 * of bytes read.
+	 */
+	private int read_up_to(byte[] b, int off, int len) throws IOException {
+		int total = 0;
+		while (total < len) {
+			int n = in.read(b, off + total, len - total);
+			if (n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return total;
+	}
+
+	private void ensure_open() throws IOException {
+		if (closed) {
+			throw new IOException("stream closed");
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package arithmetic_compression.container;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.EofUncheckedException;
+import arithmetic_compression.io.PushBitInputStream;
+
+/**
+ * Non-blocking decoder for the chunked format of
+ * {@link ArithmeticCompressorOutputStream}, for event loops: compressed data
+ * is pushed in with feed(...) in pieces of any size as it arrives, and
+ * decode(...) returns as many bytes as the data so far allows, without ever
+ * waiting for more.
+ * <p>
+ * The coders decode a symbol in one go and can't stop halfway through it. So
+ * a symbol is only decoded when the data of its block which has arrived but
+ * is not consumed yet covers the most the coder can read for a symbol, or
+ * when the whole block has arrived. Between symbols, the coder's state is
+ * all there is to keep, so decoding suspends and resumes there. Headers and
+ * models are collected until complete before they are parsed.
+ * </p>
+ * <p>
+ * Corrupt data is reported as ContainerFormatException, data ending within a
+ * chunk as EofUncheckedException once end_of_input() was called.
+ * </p>
+ */
+public class ArithmeticPushDecoder {
+
+	/**
+	 * Bytes added on top of the coder's bound of bytes per symbol, to cover
+	 * symbols which don't start at a byte boundary and bits held back by the
+	 * coders' renormalization.
+	 */
+	static final int SYMBOL_MARGIN = 8;
+
+	/**
+	 * Fed data not taken yet.
+	 */
+	ArrayDeque<ByteBuffer> input = new ArrayDeque<>();
+
+	long input_size;
+
+	boolean input_ended;
+
+	/**
+	 * Collects the header, model and block table of the current chunk.
+	 */
+	ByteBuffer prefix = ByteBuffer.allocate(ContainerFormat.HEADER_SIZE);
+
+	/**
+	 * The current chunk, null while its prefix is collected.
+	 */
+	ContainerDecoder container;
+
+	int block;
+
+	/**
+	 * Whether the current block's model is known and its coder set up.
+	 */
+	boolean block_ready;
+
+	/**
+	 * Collects the model size and model of the current block, with block
+	 * models.
+	 */
+	ByteBuffer block_model = ByteBuffer.allocate(4);
+
+	/**
+	 * The symbol the current block consists of, or -1 if it is coded.
+	 */
+	int single_symbol;
+
+	int symbols_left;
+
+	/**
+	 * Bytes of the current block not taken from input yet.
+	 */
+	long block_bytes_left;
+
+	EntropyCoder coder;
+
+	PushBitInputStream source;
+
+	boolean decoding_started;
+
+	long start_bits;
+
+	long symbol_bits;
+
+	/**
+	 * Appends a copy of the remaining bytes of src to the data to be decoded,
+	 * and advances src's position to its limit, so src can be reused right
+	 * away.
+	 */
+	public void feed(ByteBuffer src) {
+		if (input_ended) {
+			throw new IllegalStateException("end_of_input() was called already");
+		}
+		if (!src.hasRemaining()) {
+			return;
+		}
+
+		ByteBuffer copy = ByteBuffer.allocate(src.remaining());
+		copy.put(src);
+		copy.flip();
+
+		input.add(copy);
+		input_size += copy.remaining();
+	}
+
+	public void feed(byte[] src, int off, int len) {
+		feed(ByteBuffer.wrap(src, off, len));
+	}
+
+	/**
+	 * Tells that no more data follows. The remaining symbols of the last block
+	 * can be decoded then, even though the coder's bound of bytes per symbol
+	 * isn't covered anymore.
+	 */
+	public void end_of_input() {
+		input_ended = true;
+	}
+
+	/**
+	 * Returns true once end_of_input() was called and everything is decoded.
+	 */
+	public boolean is_finished() {
+		return input_ended && input_size == 0 && container == null && prefix.position() == 0;
+	}
+
+	/**
+	 * Decodes up to len bytes to dst[off] and following, as many as the data
+	 * fed so far allows. Returns the number of bytes decoded, which is 0 if
+	 * more data is needed, or -1 if is_finished().
+	 */
+	public int decode(byte[] dst, int off, int len) {
+		if (off < 0 || len < 0 || len > dst.length - off) {
+			throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", dst.length = " + dst.length);
+		}
+
+		int n = 0;
+		while (n < len) {
+			if (container == null && !read_prefix()) {
+				break;
+			}
+
+			if (block == container.block_count()) {
+				container = null;
+				prefix.clear();
+				continue;
+			}
+
+			if (!block_ready && !start_block()) {
+				break;
+			}
+
+			n += decode_symbols(dst, off + n, len - n);
+
+			if (symbols_left == 0 && block_bytes_left == 0) {
+				block++;
+				block_ready = false;
+			} else if (n < len) {
+				// the block needs more data
+				break;
+			}
+		}
+
+		if (n == 0 && len > 0 && input_ended) {
+			if (is_finished()) {
+				return -1;
+			}
+			throw new EofUncheckedException("data ends within a chunk");
+		}
+
+		return n;
+	}
+
+	private int decode_symbols(byte[] dst, int off, int len) {
+		take_block_bytes();
+
+		int n = 0;
+
+		if (single_symbol >= 0) {
+			n = Math.min(len, symbols_left);
+			for (int i = off; i < off + n; i++) {
+				dst[i] = (byte) single_symbol;
+			}
+			symbols_left -= n;
+			return n;
+		}
+
+		// the coder only reads data which is there, see the class comment, so
+		// whatever it throws means the block is corrupt
+		try {
+			if (!decoding_started) {
+				if (block_bytes_left > 0 && source.available() < start_bits) {
+					return 0;
+				}
+				coder.start_decoding(source);
+				decoding_started = true;
+			}
+
+			while (n < len && symbols_left > 0 && (block_bytes_left == 0 || source.available() >= symbol_bits)) {
+				dst[off + n] = (byte) coder.decode(source);
+				n++;
+				symbols_left--;
+			}
+		} catch (RuntimeException e) {
+			throw new ContainerFormatException("block " + block + " is corrupt: " + e.getMessage(), e);
+		}
+
+		return n;
+	}
+
+	/**
+	 * Collects the prefix of the next chunk and parses it once complete.
+	 * Returns false if more data is needed.
+	 */
+	private boolean read_prefix() {
+		if (!collect_prefix(ContainerFormat.HEADER_SIZE)) {
+			return false;
+		}
+
+		long prefix_size = ContainerFormat.prefix_size(prefix, 0);
+		if (prefix_size > ArithmeticDecompressorInputStream.MAX_CHUNK_SIZE) {
+			throw new ContainerFormatException("corrupt chunk header, prefix of " + prefix_size + " bytes");
+		}
+		if (!collect_prefix(prefix_size)) {
+			return false;
+		}
+
+		ByteBuffer complete = prefix.duplicate();
+		complete.flip();
+		container = new ContainerDecoder(complete, false);
+		block = 0;
+		block_ready = false;
+
+		return true;
+	}
+
+	private boolean collect_prefix(long need) {
+		prefix = grow(prefix, (int) need);
+		take(prefix);
+		return prefix.position() >= need;
+	}
+
+	/**
+	 * Gets the model of the current block and sets up its coder. Returns
+	 * false if more data is needed.
+	 */
+	private boolean start_block() {
+		long block_bytes = container.block_byte_count(block);
+
+		SymbolProbabilityDistribution dist = container.distribution();
+		if (container.block_models()) {
+			block_model = grow(block_model, 4);
+			take(block_model);
+			if (block_model.position() < 4) {
+				return false;
+			}
+
+			int model_size = block_model.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+			if (model_size < 0 || model_size > block_bytes - 4) {
+				throw new ContainerFormatException("model size " + model_size + " exceeds block " + block);
+			}
+			block_model = grow(block_model, 4 + model_size);
+			take(block_model);
+			if (block_model.position() < 4 + model_size) {
+				return false;
+			}
+
+			ByteBuffer model = block_model.duplicate();
+			model.position(4).limit(4 + model_size);
+			dist = ContainerDecoder.read_model(model, model_size);
+			block_model.clear();
+
+			block_bytes -= 4 + model_size;
+		}
+
+		single_symbol = ContainerFormat.single_symbol(dist);
+		symbols_left = container.block_symbol_count(block);
+		ContainerFormat.check_model(dist, single_symbol, symbols_left, "model of block " + block);
+		block_bytes_left = block_bytes;
+
+		if (single_symbol >= 0) {
+			coder = null;
+			source = null;
+		} else {
+			try {
+				coder = container.coder_type().create(dist);
+			} catch (RuntimeException e) {
+				throw new ContainerFormatException("model of block " + block + " is unusable: " + e.getMessage(), e);
+			}
+			source = new PushBitInputStream();
+			decoding_started = false;
+
+			start_bits = 8 * coder.max_encoded_size(0);
+			symbol_bits = 8 * (coder.max_encoded_size(2) - coder.max_encoded_size(1) + SYMBOL_MARGIN);
+		}
+
+		block_ready = true;
+		return true;
+	}
+
+	/**
+	 * Moves the fed bytes which belong to the current block to its source,
+	 * without copying.
+	 */
+	private void take_block_bytes() {
+		while (block_bytes_left > 0 && !input.isEmpty()) {
+			ByteBuffer head = input.peek();
+
+			int n = (int) Math.min(head.remaining(), block_bytes_left);
+			ByteBuffer piece = head.slice();
+			piece.limit(n);
+			head.position(head.position() + n);
+			if (!head.hasRemaining()) {
+				input.poll();
+			}
+
+			input_size -= n;
+			block_bytes_left -= n;
+
+			if (source != null) {
+				source.feed(piece);
+			}
+		}
+	}
+
+	/**
+	 * Copies fed bytes to buf until buf's limit is reached or there are no
+	 * more.
+	 */
+	private void take(ByteBuffer buf) {
+		while (buf.hasRemaining() && !input.isEmpty()) {
+			ByteBuffer head = input.peek();
+
+			int n = Math.min(head.remaining(), buf.remaining());
+			ByteBuffer piece = head.slice();
+			piece.limit(n);
+			buf.put(piece);
+			head.position(head.position() + n);
+			if (!head.hasRemaining()) {
+				input.poll();
+			}
+
+			input_size -= n;
+		}
+	}
+
+	/**
+	 * Returns buf, or a larger copy if its capacity is less than need, with
+	 * the limit set to need.
+	 */
+	private static ByteBuffer grow(ByteBuffer buf, int need) {
+		if (buf.capacity() < need) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(need, 2 * buf.capacity()));
+			buf.flip();
+			larger.put(buf);
+			buf = larger;
+		}
+
+		buf.limit(Math.max(need, buf.position()));
+		return buf;
+	}
+}
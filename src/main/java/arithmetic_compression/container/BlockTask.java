@@ -0,0 +1,36 @@
+package arithmetic_compression.container;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs an action for each block in [from, to), splitting the range in halves
+ * until single blocks remain, so that a ForkJoinPool spreads the blocks over
+ * its workers and idle workers steal the larger halves first.
+ */
+@SuppressWarnings("serial")
+class BlockTask extends RecursiveAction {
+
+	int from;
+
+	int to;
+
+	IntConsumer action;
+
+	BlockTask(int from, int to, IntConsumer action) {
+		this.from = from;
+		this.to = to;
+		this.action = action;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from == 1) {
+			action.accept(from);
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		invokeAll(new BlockTask(from, mid, action), new BlockTask(mid, to, action));
+	}
+}
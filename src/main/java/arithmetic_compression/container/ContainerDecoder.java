@@ -0,0 +1,358 @@
+package arithmetic_compression.container;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+import arithmetic_compression.CodingPhase;
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.ByteBufferBitInputStream;
+
+/**
+ * Reads the header, distribution and block table of a container as described
+ * in {@link ContainerFormat} on construction, and decodes the blocks on
+ * request. Each block is decoded from exactly its own bytes.
+ */
+public class ContainerDecoder {
+
+	ByteBuffer src;
+
+	boolean with_blocks;
+
+	EntropyCoderType coder_type;
+
+	long symbol_count;
+
+	int block_size;
+
+	boolean block_models;
+
+	/**
+	 * The distribution shared by all blocks, null if there are block models.
+	 */
+	SymbolProbabilityDistribution dist;
+
+	/**
+	 * The symbol all data consists of according to dist, or -1.
+	 */
+	int single_symbol = -1;
+
+	/**
+	 * Position of each block in src, and after the last one, the end of the
+	 * container.
+	 */
+	int[] block_pos;
+
+	/**
+	 * Parses the container from src's position to its limit. src's position
+	 * and byte order are left unchanged.
+	 */
+	public ContainerDecoder(ByteBuffer src) {
+		this(src, true);
+	}
+
+	/**
+	 * With with_blocks false, src only needs to hold the container up to the
+	 * end of the block table, and the blocks can't be decoded by this
+	 * instance; for decoders which get the blocks piece by piece.
+	 */
+	ContainerDecoder(ByteBuffer src, boolean with_blocks) {
+		this.with_blocks = with_blocks;
+		this.src = src.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+		try {
+			read_header();
+		} catch (BufferUnderflowException e) {
+			throw new ContainerFormatException("container is truncated", e);
+		}
+	}
+
+	public ContainerDecoder(byte[] src, int off, int len) {
+		this(ByteBuffer.wrap(src, off, len));
+	}
+
+	public ContainerDecoder(byte[] src) {
+		this(src, 0, src.length);
+	}
+
+	private void read_header() {
+		int magic = src.getInt();
+		if (magic != ContainerFormat.MAGIC) {
+			throw new ContainerFormatException("not a container, magic is 0x" + Integer.toHexString(magic));
+		}
+
+		int version = src.get() & 0xff;
+		if (version != ContainerFormat.VERSION) {
+			throw new ContainerFormatException("unsupported container version " + version);
+		}
+
+		int type = src.get() & 0xff;
+		coder_type = EntropyCoderType.from_format_id(type);
+		if (coder_type == null) {
+			throw new ContainerFormatException("unknown coder type " + type);
+		}
+
+		int flags = src.getShort() & 0xffff;
+		if ((flags & ~ContainerFormat.KNOWN_FLAGS) != 0) {
+			throw new ContainerFormatException("unknown container flags 0x" + Integer.toHexString(flags));
+		}
+		block_models = (flags & ContainerFormat.FLAG_BLOCK_MODELS) != 0;
+
+		symbol_count = src.getLong();
+		block_size = src.getInt();
+		if (symbol_count < 0 || block_size < 1) {
+			throw new ContainerFormatException("invalid symbol count " + symbol_count + " or block size " + block_size);
+		}
+
+		int model_size = src.getInt();
+		if (block_models) {
+			if (model_size != 0) {
+				throw new ContainerFormatException("model size " + model_size + " with block models");
+			}
+		} else {
+			dist = read_model(src, model_size);
+			single_symbol = ContainerFormat.single_symbol(dist);
+			ContainerFormat.check_model(dist, single_symbol, symbol_count, "model");
+			if (single_symbol < 0) {
+				// built once here instead of lazily by each block's decoder
+				dist.symbol_lookup_table();
+			}
+		}
+
+		int block_count = ContainerFormat.block_count(symbol_count, block_size);
+		if (block_count > src.remaining() / 4) {
+			throw new ContainerFormatException("block table of " + block_count + " blocks exceeds the container");
+		}
+
+		block_pos = new int[block_count + 1];
+		block_pos[0] = src.position() + 4 * block_count;
+		for (int block = 0; block < block_count; block++) {
+			int size = src.getInt();
+			long limit = with_blocks ? src.limit() : Integer.MAX_VALUE;
+			if (size < 0 || size > limit - block_pos[block]) {
+				throw new ContainerFormatException("size " + size + " of block " + block + " exceeds the container");
+			}
+			block_pos[block + 1] = block_pos[block] + size;
+		}
+	}
+
+	/**
+	 * Reads the model of model_size bytes at src's position and advances the
+	 * position past it.
+	 */
+	static SymbolProbabilityDistribution read_model(ByteBuffer src, int model_size) {
+		if (model_size < 0 || model_size > src.remaining()) {
+			throw new ContainerFormatException("model size " + model_size + " exceeds the container");
+		}
+
+		ByteBuffer model = src.slice();
+		model.limit(model_size);
+		src.position(src.position() + model_size);
+
+		return new DistributionSerializer().read(new ByteBufferBitInputStream(model));
+	}
+
+	public EntropyCoderType coder_type() {
+		return coder_type;
+	}
+
+	public long symbol_count() {
+		return symbol_count;
+	}
+
+	public int block_size() {
+		return block_size;
+	}
+
+	public int block_count() {
+		return block_pos.length - 1;
+	}
+
+	public boolean block_models() {
+		return block_models;
+	}
+
+	/**
+	 * Returns the distribution shared by all blocks, or null if there are
+	 * block models.
+	 */
+	public SymbolProbabilityDistribution distribution() {
+		return dist;
+	}
+
+	/**
+	 * Returns the number of symbols in the specified block.
+	 */
+	public int block_symbol_count(int block) {
+		return (int) Math.min(block_size, symbol_count - (long) block * block_size);
+	}
+
+	/**
+	 * Returns the number of bytes of the specified block.
+	 */
+	public int block_byte_count(int block) {
+		return block_pos[block + 1] - block_pos[block];
+	}
+
+	/**
+	 * Returns the position of the container's end relative to the position
+	 * src had on construction.
+	 */
+	public int size() {
+		return block_pos[block_pos.length - 1];
+	}
+
+	/**
+	 * Decodes all blocks into a new array in the calling thread.
+	 */
+	public byte[] decode() {
+		return decode((ForkJoinPool) null);
+	}
+
+	/**
+	 * Decodes all blocks into a new array, in parallel on the specified pool,
+	 * or in the calling thread if pool is null.
+	 */
+	public byte[] decode(ForkJoinPool pool) {
+		if (symbol_count > Integer.MAX_VALUE - 8) {
+			throw new ContainerFormatException(symbol_count + " symbols don't fit into an array");
+		}
+
+		byte[] dst = new byte[(int) symbol_count];
+		decode(dst, 0, pool);
+
+		return dst;
+	}
+
+	/**
+	 * Decodes all blocks to dst[off] to dst[off + symbol_count() - 1] in the
+	 * calling thread.
+	 */
+	public void decode(byte[] dst, int off) {
+		decode(dst, off, null);
+	}
+
+	/**
+	 * Decodes all blocks to dst[off] to dst[off + symbol_count() - 1], in
+	 * parallel on the specified pool, or in the calling thread if pool is
+	 * null.
+	 */
+	public void decode(byte[] dst, int off, ForkJoinPool pool) {
+		if (dst.length - off < symbol_count) {
+			throw new IllegalArgumentException(symbol_count + " symbols don't fit into dst at offset " + off);
+		}
+
+		IntConsumer decode_block = block -> decode_block(block, dst, off + block * block_size);
+
+		if (pool == null || block_count() < 2) {
+			for (int block = 0; block < block_count(); block++) {
+				decode_block.accept(block);
+			}
+		} else {
+			pool.invoke(new BlockTask(0, block_count(), decode_block));
+		}
+	}
+
+	/**
+	 * Decodes all blocks in the calling thread to dst, heap or direct,
+	 * starting at its position and advancing the position by symbol_count().
+	 */
+	public void decode(ByteBuffer dst) {
+		if (dst.remaining() < symbol_count) {
+			throw new BufferOverflowException();
+		}
+
+		int off = dst.position();
+		for (int block = 0; block < block_count(); block++) {
+			decode_block(block, dst, off + block * block_size);
+		}
+		dst.position(off + (int) symbol_count);
+	}
+
+	/**
+	 * Decodes the specified block to dst[off] to dst[off +
+	 * block_symbol_count(block) - 1]. Blocks can be decoded in any order and
+	 * concurrently.
+	 */
+	public void decode_block(int block, byte[] dst, int off) {
+		decode_block(block, ByteBuffer.wrap(dst), off);
+	}
+
+	/**
+	 * Like decode_block(int, byte[], int), with absolute indices into dst;
+	 * dst's position is left unchanged.
+	 */
+	public void decode_block(int block, ByteBuffer dst, int off) {
+		if (!with_blocks) {
+			throw new IllegalStateException("blocks are not available to this instance");
+		}
+
+		int end = off + block_symbol_count(block);
+		if (off < 0 || end > dst.limit()) {
+			throw new IndexOutOfBoundsException(
+					"block " + block + " doesn't fit into dst at " + off + ", limit " + dst.limit());
+		}
+
+		ByteBuffer buf = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buf.limit(block_pos[block + 1]);
+		buf.position(block_pos[block]);
+
+		SymbolProbabilityDistribution dist = this.dist;
+		int single_symbol = this.single_symbol;
+		if (block_models) {
+			try {
+				dist = read_model(buf, buf.getInt());
+			} catch (BufferUnderflowException e) {
+				throw new ContainerFormatException("block " + block + " is truncated", e);
+			}
+			single_symbol = ContainerFormat.single_symbol(dist);
+			ContainerFormat.check_model(dist, single_symbol, end - off, "model of block " + block);
+		}
+
+		if (single_symbol >= 0) {
+			if (dst.hasArray()) {
+				Arrays.fill(dst.array(), dst.arrayOffset() + off, dst.arrayOffset() + end, (byte) single_symbol);
+			} else {
+				for (int i = off; i < end; i++) {
+					dst.put(i, (byte) single_symbol);
+				}
+			}
+			return;
+		}
+
+		Object event = CodingPhase.start();
+		int start = buf.position();
+
+		try {
+			ByteBufferBitInputStream source = new ByteBufferBitInputStream(buf);
+
+			EntropyCoder coder = coder_type.create(dist);
+			coder.start_decoding(source);
+
+			if (dst.hasArray()) {
+				// plain array access is measurably faster than put(i, b)
+				byte[] array = dst.array();
+				int array_off = dst.arrayOffset();
+				for (int i = array_off + off; i < array_off + end; i++) {
+					array[i] = (byte) coder.decode(source);
+				}
+			} else {
+				for (int i = off; i < end; i++) {
+					dst.put(i, (byte) coder.decode(source));
+				}
+			}
+		} catch (RuntimeException e) {
+			// the coders don't check their input, corrupt data shows as
+			// whatever decoding happens to run into
+			throw new ContainerFormatException("block " + block + " is corrupt: " + e.getMessage(), e);
+		}
+
+		CodingPhase.finish(event, CodingPhase.DECODE, coder_type, block_pos[block + 1] - start, end - off, end - off);
+	}
+}
@@ -0,0 +1,292 @@
+package arithmetic_compression.container;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import arithmetic_compression.CodingPhase;
+import arithmetic_compression.coder.arithmetic.BinaryArithmeticCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
+
+/**
+ * Encodes byte data into the container described in {@link ContainerFormat}:
+ * builds the histogram of the data, stores it along with everything else the
+ * decoder needs, and codes the data in blocks.
+ * <p>
+ * The blocks are independent of each other, so given a ForkJoinPool, they are
+ * coded in parallel. By default, all blocks share one histogram of the whole
+ * data stored in the header; with block_models, each block carries the
+ * histogram of its own data instead, which costs header space but adapts to
+ * data whose statistics change from block to block.
+ * </p>
+ */
+public class ContainerEncoder {
+
+	/**
+	 * Upper bound of the size of the model of a histogram of bytes: the symbol
+	 * count, then at most 6 + 30 bits per symbol, plus coder overhead.
+	 */
+	static final int MAX_MODEL_SIZE = (int) BinaryArithmeticCoder.max_encoded_size(32 + 36 * 256);
+
+	EntropyCoderType coder_type;
+
+	int block_size;
+
+	boolean block_models;
+
+	public ContainerEncoder(EntropyCoderType coder_type) {
+		this(coder_type, ContainerFormat.DEFAULT_BLOCK_SIZE);
+	}
+
+	public ContainerEncoder(EntropyCoderType coder_type, int block_size) {
+		this(coder_type, block_size, false);
+	}
+
+	public ContainerEncoder(EntropyCoderType coder_type, int block_size, boolean block_models) {
+		if (block_size < 1) {
+			throw new IllegalArgumentException("block_size must be at least 1 (block_size = " + block_size + ")");
+		}
+
+		this.coder_type = coder_type;
+		this.block_size = block_size;
+		this.block_models = block_models;
+	}
+
+	public byte[] encode(byte[] data) {
+		return encode(data, 0, data.length);
+	}
+
+	/**
+	 * Encodes data[off] to data[off + len - 1] in the calling thread and
+	 * returns the container.
+	 */
+	public byte[] encode(byte[] data, int off, int len) {
+		return encode(data, off, len, null);
+	}
+
+	/**
+	 * Encodes data[off] to data[off + len - 1] and returns the container. The
+	 * blocks are coded in parallel on the specified pool, or in the calling
+	 * thread if pool is null. The result is the same either way.
+	 */
+	public byte[] encode(byte[] data, int off, int len, ForkJoinPool pool) {
+		ByteBuffer src = ByteBuffer.wrap(data, off, len);
+
+		if (pool == null || ContainerFormat.block_count(len, block_size) < 2) {
+			long max_size = max_encoded_size(len);
+			if (max_size > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("container of " + len + " symbols could exceed the maximum array size");
+			}
+
+			ByteBuffer dst = ByteBuffer.allocate((int) max_size);
+			encode(src, dst);
+
+			return Arrays.copyOf(dst.array(), dst.position());
+		}
+
+		SymbolProbabilityDistribution dist = block_models ? null : histogram(src, off, len);
+		byte[] model = block_models ? new byte[0] : encode_model(dist);
+
+		// each block into its own buffer, then copied together
+		int block_count = ContainerFormat.block_count(len, block_size);
+		byte[][] blocks = new byte[block_count][];
+
+		pool.invoke(new BlockTask(0, block_count, block -> {
+			int block_off = off + block * block_size;
+			int block_len = Math.min(block_size, off + len - block_off);
+
+			ByteBuffer out = ByteBuffer.allocate((int) max_block_size(block_len, len)).order(ByteOrder.LITTLE_ENDIAN);
+			encode_block(dist, src, block_off, block_len, out);
+			blocks[block] = Arrays.copyOf(out.array(), out.position());
+		}));
+
+		long size = ContainerFormat.HEADER_SIZE + model.length + 4L * block_count;
+		for (byte[] block : blocks) {
+			size += block.length;
+		}
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("container of " + len + " symbols exceeds the maximum array size");
+		}
+
+		ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+		put_header(out, len, model);
+		for (byte[] block : blocks) {
+			out.putInt(block.length);
+		}
+		for (byte[] block : blocks) {
+			out.put(block);
+		}
+
+		return out.array();
+	}
+
+	/**
+	 * Encodes the remaining bytes of src into dst in the calling thread,
+	 * starting at dst's position, and advances the positions of both to the
+	 * end of the respective data. src and dst can be heap or direct buffers.
+	 * Throws a java.nio.BufferOverflowException if dst has less than
+	 * max_encoded_size(src.remaining()) bytes remaining and the container
+	 * doesn't fit.
+	 */
+	public void encode(ByteBuffer src, ByteBuffer dst) {
+		int off = src.position();
+		int len = src.remaining();
+
+		ByteOrder dst_order = dst.order();
+		dst.order(ByteOrder.LITTLE_ENDIAN);
+
+		SymbolProbabilityDistribution dist = block_models ? null : histogram(src, off, len);
+		byte[] model = block_models ? new byte[0] : encode_model(dist);
+
+		int block_count = ContainerFormat.block_count(len, block_size);
+
+		int start = dst.position();
+		put_header(dst, len, model);
+
+		int block_table_pos = dst.position();
+		dst.position(block_table_pos + 4 * block_count);
+
+		for (int block = 0; block < block_count; block++) {
+			int block_off = off + block * block_size;
+			int block_len = Math.min(block_size, off + len - block_off);
+
+			int block_start = dst.position();
+			encode_block(dist, src, block_off, block_len, dst);
+
+			dst.putInt(block_table_pos + 4 * block, dst.position() - block_start);
+		}
+
+		src.position(off + len);
+		dst.order(dst_order);
+
+		assert dst.position() - start <= max_encoded_size(len);
+	}
+
+	/**
+	 * Returns an upper bound of the size of the container of len bytes, no
+	 * matter which bytes. Meant for sizing the dst of encode(ByteBuffer,
+	 * ByteBuffer).
+	 */
+	public long max_encoded_size(int len) {
+		int block_count = ContainerFormat.block_count(len, block_size);
+
+		long size = ContainerFormat.HEADER_SIZE + 4L * block_count;
+		if (!block_models) {
+			size += MAX_MODEL_SIZE;
+		}
+
+		if (block_count > 0) {
+			int last_len = len - (block_count - 1) * block_size;
+			size += (block_count - 1) * max_block_size(block_size, len) + max_block_size(last_len, len);
+		}
+
+		return size;
+	}
+
+	/**
+	 * Upper bound of the bytes of a block with len bytes out of data_len many,
+	 * including its model if there are block models. The coders' bounds grow
+	 * with the total count of the distribution, which is the length of the
+	 * data the histogram is built from.
+	 */
+	long max_block_size(int len, int data_len) {
+		long size = block_models ? 4 + MAX_MODEL_SIZE : 0;
+
+		int total_count = block_models ? len : data_len;
+		if (total_count > 1) {
+			EntropyCoder coder = coder_type.create(new SymbolProbabilityDistribution(new int[]{1, total_count - 1}));
+			size += coder.max_encoded_size(len);
+		}
+
+		return size;
+	}
+
+	private void put_header(ByteBuffer out, int len, byte[] model) {
+		out.putInt(ContainerFormat.MAGIC);
+		out.put((byte) ContainerFormat.VERSION);
+		out.put((byte) coder_type.format_id());
+		out.putShort((short) (block_models ? ContainerFormat.FLAG_BLOCK_MODELS : 0));
+		out.putLong(len);
+		out.putInt(block_size);
+		out.putInt(model.length);
+		out.put(model);
+	}
+
+	/**
+	 * Writes the block of data[off] to data[off + len - 1] to out, starting at
+	 * out's position and advancing it to the end of the block: its model if
+	 * there are block models, then the data coded with a fresh coder. dist is
+	 * the shared distribution, null if there are block models. out has to be
+	 * little endian.
+	 */
+	void encode_block(SymbolProbabilityDistribution dist, ByteBuffer data, int off, int len, ByteBuffer out) {
+		if (block_models) {
+			dist = histogram(data, off, len);
+			byte[] model = encode_model(dist);
+			out.putInt(model.length);
+			out.put(model);
+		}
+
+		// data of a single symbol has no entropy to code, the coded part stays
+		// empty
+		if (ContainerFormat.single_symbol(dist) >= 0) {
+			return;
+		}
+
+		Object event = CodingPhase.start();
+		int start = out.position();
+
+		EntropyCoder coder = coder_type.create(dist);
+
+		ByteBufferBitOutputStream sink = new ByteBufferBitOutputStream(out);
+		if (data.hasArray()) {
+			// plain array access is measurably faster than get(i)
+			byte[] array = data.array();
+			int array_off = data.arrayOffset() + off;
+			for (int i = array_off; i < array_off + len; i++) {
+				coder.encode(array[i] & 0xff, sink);
+			}
+		} else {
+			for (int i = off; i < off + len; i++) {
+				coder.encode(data.get(i) & 0xff, sink);
+			}
+		}
+		coder.finish_encoding(sink);
+		sink.flushAll();
+
+		CodingPhase.finish(event, CodingPhase.ENCODE, coder_type, len, out.position() - start, len);
+	}
+
+	static byte[] encode_model(SymbolProbabilityDistribution dist) {
+		Object event = CodingPhase.start();
+
+		byte[] buf = new byte[MAX_MODEL_SIZE];
+		ByteBufferBitOutputStream sink = new ByteBufferBitOutputStream(buf, 0, buf.length);
+
+		new DistributionSerializer().write(dist, sink);
+		sink.flushAll();
+		int size = sink.buffer().position();
+
+		CodingPhase.finish(event, CodingPhase.MODEL, null, 0, size, dist.symbol_count());
+
+		return Arrays.copyOf(buf, size);
+	}
+
+	static SymbolProbabilityDistribution histogram(ByteBuffer data, int off, int len) {
+		Object event = CodingPhase.start();
+
+		int[] hist = new int[256];
+		for (int i = off; i < off + len; i++) {
+			hist[data.get(i) & 0xff]++;
+		}
+
+		CodingPhase.finish(event, CodingPhase.HISTOGRAM, null, len, 0, len);
+
+		return new SymbolProbabilityDistribution(hist);
+	}
+}
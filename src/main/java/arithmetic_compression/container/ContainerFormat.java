@@ -0,0 +1,207 @@
+package arithmetic_compression.container;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+
+/**
+ * Layout of the self-describing container for byte data coded with a static
+ * {@link arithmetic_compression.coder.arithmetic.EntropyCoderType}. All
+ * numbers are little endian, like the bit order of the bit streams.
+ *
+ * <pre>
+ * offset  size                 content
+ * 0       4                    MAGIC, "ACMP"
+ * 4       1                    VERSION
+ * 5       1                    coder type, EntropyCoderType.format_id()
+ * 6       2                    flags
+ * 8       8                    symbol count, the length of the original data
+ * 16      4                    block size, symbols per block
+ * 20      4                    model size in bytes
+ * 24      model size           the distribution, see DistributionSerializer
+ * ...     4 * block count      encoded size of each block in bytes
+ * ...                          the blocks, back to back
+ * </pre>
+ * <p>
+ * block count = ceil(symbol count / block size); all blocks but the last one
+ * hold block size many symbols. Each block is coded by a fresh coder, so
+ * blocks can be decoded independently of each other; a decoder gets exactly
+ * the bytes of its block and stops after the symbol count of the block, so
+ * it never depends on whatever follows the block.
+ * </p>
+ * <p>
+ * With FLAG_BLOCK_MODELS, the model size in the header is 0, and instead each
+ * block starts with its own 4 byte model size and model, followed by the
+ * coded data.
+ * </p>
+ * <p>
+ * If the distribution has a single symbol with a count > 0, the coders can't
+ * be used and aren't needed: the coded data of the blocks is empty, and they
+ * decode to that symbol.
+ * </p>
+ */
+public final class ContainerFormat {
+
+	/**
+	 * "ACMP" as it appears in the first 4 bytes.
+	 */
+	public static final int MAGIC = 'A' | ('C' << 8) | ('M' << 16) | ('P' << 24);
+
+	public static final int VERSION = 1;
+
+	/**
+	 * Each block has its own model instead of sharing the one in the header.
+	 */
+	public static final int FLAG_BLOCK_MODELS = 1;
+
+	static final int KNOWN_FLAGS = FLAG_BLOCK_MODELS;
+
+	public static final int HEADER_SIZE = 24;
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private ContainerFormat() {
+	}
+
+	/**
+	 * Reads the header at buf[pos] and returns the size of the header, model
+	 * and block table together, after which container_size(...) can tell the
+	 * size of the whole container. For reading containers from streams
+	 * without reading beyond their end. buf's position is left unchanged.
+	 */
+	public static long prefix_size(ByteBuffer buf, int pos) {
+		ByteBuffer header = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+		int magic = header.getInt(pos);
+		if (magic != MAGIC) {
+			throw new ContainerFormatException("not a container, magic is 0x" + Integer.toHexString(magic));
+		}
+
+		long symbol_count = header.getLong(pos + 8);
+		int block_size = header.getInt(pos + 16);
+		int model_size = header.getInt(pos + 20);
+		if (symbol_count < 0 || block_size < 1 || model_size < 0) {
+			throw new ContainerFormatException("corrupt container header (symbol_count = " + symbol_count
+					+ ", block_size = " + block_size + ", model_size = " + model_size + ")");
+		}
+
+		return HEADER_SIZE + model_size + 4L * block_count(symbol_count, block_size);
+	}
+
+	/**
+	 * Reads the header and block table at buf[pos], prefix_size(buf, pos) many
+	 * bytes, and returns the size of the whole container. buf's position is
+	 * left unchanged.
+	 */
+	public static long container_size(ByteBuffer buf, int pos) {
+		ByteBuffer prefix = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+		long prefix_size = prefix_size(prefix, pos);
+		int model_size = prefix.getInt(pos + 20);
+
+		long size = prefix_size;
+		for (int i = pos + HEADER_SIZE + model_size; i < pos + prefix_size; i += 4) {
+			size += prefix.getInt(i) & 0xffffffffL;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Like container_size(buf, pos), but throws a ContainerFormatException if
+	 * the model or a block is larger than ContainerEncoder writes for the
+	 * symbol count in the header, so the result is at most
+	 * ContainerEncoder.max_encoded_size(symbol count). For readers which size
+	 * their buffers by the block table, so that a corrupt one can't make them
+	 * allocate more than the largest legitimate container.
+	 */
+	public static long checked_container_size(ByteBuffer buf, int pos) {
+		ByteBuffer prefix = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+		long prefix_size = prefix_size(prefix, pos);
+
+		int type = prefix.get(pos + 5) & 0xff;
+		EntropyCoderType coder_type = EntropyCoderType.from_format_id(type);
+		if (coder_type == null) {
+			throw new ContainerFormatException("unknown coder type " + type);
+		}
+		boolean block_models = (prefix.getShort(pos + 6) & FLAG_BLOCK_MODELS) != 0;
+		long symbol_count = prefix.getLong(pos + 8);
+		int block_size = prefix.getInt(pos + 16);
+		int model_size = prefix.getInt(pos + 20);
+		if (symbol_count > Integer.MAX_VALUE - 8) {
+			throw new ContainerFormatException("symbol count " + symbol_count + " exceeds the maximum array size");
+		}
+		if (model_size > ContainerEncoder.MAX_MODEL_SIZE) {
+			throw new ContainerFormatException("model size " + model_size + " exceeds " + ContainerEncoder.MAX_MODEL_SIZE);
+		}
+
+		// all blocks but the last one have the same bound
+		ContainerEncoder encoder = new ContainerEncoder(coder_type, block_size, block_models);
+		int len = (int) symbol_count;
+		int block_count = block_count(len, block_size);
+		long max_block_size = encoder.max_block_size(Math.min(block_size, len), len);
+		long max_last_block_size = encoder.max_block_size(len - (block_count - 1) * block_size, len);
+
+		long size = prefix_size;
+		for (int block = 0; block < block_count; block++) {
+			long block_bytes = prefix.getInt(pos + HEADER_SIZE + model_size + 4 * block) & 0xffffffffL;
+			long max = (block < block_count - 1) ? max_block_size : max_last_block_size;
+			if (block_bytes > max) {
+				throw new ContainerFormatException("size " + block_bytes + " of block " + block + " exceeds "
+						+ max + ", the maximum for " + symbol_count + " symbols");
+			}
+			size += block_bytes;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Returns the symbol count from the header at buf[pos].
+	 */
+	public static long symbol_count(ByteBuffer buf, int pos) {
+		return buf.duplicate().order(ByteOrder.LITTLE_ENDIAN).getLong(pos + 8);
+	}
+
+	/**
+	 * Returns the only symbol with a count > 0, or -1 if there are none or
+	 * several.
+	 */
+	static int single_symbol(SymbolProbabilityDistribution dist) {
+		int single = -1;
+		for (int symbol = 0; symbol < dist.symbol_count(); symbol++) {
+			if (dist.count(symbol) > 0) {
+				if (single >= 0) {
+					return -1;
+				}
+				single = symbol;
+			}
+		}
+		return single;
+	}
+
+	/**
+	 * Throws a ContainerFormatException if symbol_count > 0 symbols can't have
+	 * been coded with dist, i.e. if it has neither a single symbol nor a total
+	 * count of at least 2, which the coders need. what names the model in the
+	 * message.
+	 */
+	static void check_model(SymbolProbabilityDistribution dist, int single_symbol, long symbol_count, String what) {
+		if (symbol_count > 0 && single_symbol < 0 && dist.total_count() < 2) {
+			throw new ContainerFormatException(
+					what + " has a total count of " + dist.total_count() + " for " + symbol_count + " symbols");
+		}
+	}
+
+	static int block_count(long symbol_count, int block_size) {
+		long block_count = symbol_count / block_size + ((symbol_count % block_size != 0) ? 1 : 0);
+		if (block_count > Integer.MAX_VALUE) {
+			throw new ContainerFormatException("too many blocks (symbol_count = " + symbol_count
+					+ ", block_size = " + block_size + ")");
+		}
+		return (int) block_count;
+	}
+}
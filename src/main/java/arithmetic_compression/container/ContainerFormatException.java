@@ -0,0 +1,17 @@
+package arithmetic_compression.container;
+
+/**
+ * Thrown when data to be decoded is not a valid container: wrong magic,
+ * unsupported version, or sizes which don't fit the data.
+ */
+@SuppressWarnings("serial")
+public class ContainerFormatException extends RuntimeException {
+
+	public ContainerFormatException(String message) {
+		super(message);
+	}
+
+	public ContainerFormatException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,127 @@
+package arithmetic_compression.container;
+
+import arithmetic_compression.coder.arithmetic.BinaryArithmeticCoder;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Compact serialization of a {@link SymbolProbabilityDistribution}, coded with
+ * a {@link BinaryArithmeticCoder}.
+ * <p>
+ * Per symbol, the bit length of its count (0 to 31) is coded as a 6 bit bit
+ * tree in the context of the bit length of the previous symbol's count, so
+ * that the runs of similar counts in smooth histograms cost little. The bits
+ * of the count below its leading 1 follow with probability 1/2 each. The
+ * number of symbols is stored in front as 32 bits with probability 1/2.
+ * </p>
+ * <p>
+ * Like the coders, an instance either writes or reads a single distribution.
+ * </p>
+ */
+public class DistributionSerializer {
+
+	/**
+	 * Upper limit for the number of symbols accepted when reading, so that
+	 * corrupt data can't make the reader allocate arbitrary amounts of memory.
+	 */
+	public static final int MAX_SYMBOL_COUNT = 1 << 24;
+
+	static final int LENGTH_BITS = 6;
+
+	static final int LENGTH_CONTEXT_COUNT = 33;
+
+	static final int PROB_HALF = BinaryArithmeticCoder.PROB_ONE / 2;
+
+	BinaryArithmeticCoder coder = new BinaryArithmeticCoder();
+
+	char[] probs = BinaryArithmeticCoder.new_probs(LENGTH_CONTEXT_COUNT << LENGTH_BITS);
+
+	public void write(SymbolProbabilityDistribution dist, BitOutputStream sink) {
+		int symbol_count = dist.symbol_count();
+
+		write_raw(symbol_count, 32, sink);
+
+		int prev_len = 0;
+		for (int symbol = 0; symbol < symbol_count; symbol++) {
+			int count = dist.count(symbol);
+			int len = 32 - Integer.numberOfLeadingZeros(count);
+
+			int base = prev_len << LENGTH_BITS;
+			int node = 1;
+			for (int i = LENGTH_BITS - 1; i >= 0; i--) {
+				int bit = (len >>> i) & 1;
+				coder.encode_bit(probs, base + node, bit, sink);
+				node = (node << 1) | bit;
+			}
+
+			if (len > 1) {
+				write_raw(count, len - 1, sink);
+			}
+
+			prev_len = len;
+		}
+
+		coder.finish_encoding(sink);
+	}
+
+	public SymbolProbabilityDistribution read(BitInputStream source) {
+		coder.start_decoding(source);
+
+		int symbol_count = read_raw(32, source);
+		if (symbol_count < 1 || symbol_count > MAX_SYMBOL_COUNT) {
+			throw new ContainerFormatException("symbol count of distribution out of range [1, " + MAX_SYMBOL_COUNT
+					+ "] (symbol_count = " + symbol_count + ")");
+		}
+
+		int[] count = new int[symbol_count];
+		long total_count = 0;
+
+		int prev_len = 0;
+		for (int symbol = 0; symbol < symbol_count; symbol++) {
+			int base = prev_len << LENGTH_BITS;
+			int node = 1;
+			for (int i = 0; i < LENGTH_BITS; i++) {
+				node = (node << 1) | coder.decode_bit(probs, base + node, source);
+			}
+			int len = node - (1 << LENGTH_BITS);
+
+			if (len > 31) {
+				throw new ContainerFormatException("invalid count length " + len + " of symbol " + symbol);
+			}
+
+			if (len > 1) {
+				count[symbol] = (1 << (len - 1)) | read_raw(len - 1, source);
+			} else {
+				count[symbol] = len;
+			}
+
+			total_count += count[symbol];
+			prev_len = len;
+		}
+
+		if (total_count > Integer.MAX_VALUE) {
+			throw new ContainerFormatException("total count of distribution exceeds int range (total_count = "
+					+ total_count + ")");
+		}
+
+		return new SymbolProbabilityDistribution(count);
+	}
+
+	/**
+	 * Writes the len least significant bits of val, most significant first.
+	 */
+	private void write_raw(int val, int len, BitOutputStream sink) {
+		for (int i = len - 1; i >= 0; i--) {
+			coder.encode_bit_prob(PROB_HALF, (val >>> i) & 1, sink);
+		}
+	}
+
+	private int read_raw(int len, BitInputStream source) {
+		int val = 0;
+		for (int i = 0; i < len; i++) {
+			val = (val << 1) | coder.decode_bit_prob(PROB_HALF, source);
+		}
+		return val;
+	}
+}
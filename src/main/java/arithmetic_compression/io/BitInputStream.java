@@ -20,6 +20,11 @@ public class BitInputStream {
 	 */
 	protected int buf_sz;
 
+	/**
+	 * Set once a read needed more data than the underlying stream had.
+	 */
+	protected boolean eof;
+
 	public BitInputStream(InputStream underlying) {
 		this.underlying = underlying;
 	}
@@ -45,6 +50,11 @@ public class BitInputStream {
 				throw new IoUncheckedException(e);
 			}
 
+			if (b == -1) {
+				eof = true;
+				return 0;
+			}
+
 			buf = b >>> 1;
 			buf_sz = 7;
 
@@ -55,7 +65,9 @@ public class BitInputStream {
 	/**
 	 * Reads len many bits from this input stream and returns them in the least
 	 * significant bits of the return value, where the least significant bit is
-	 * the bit first read. If EOF occurs, then -1 is returned.
+	 * the bit first read. If EOF occurs, then -1 is returned and is_eof()
+	 * returns true from then on; since -1 is also a valid result for len = 32,
+	 * check is_eof() to tell them apart.
 	 */
 	public int read(int len) {
 		if (len < 0) {
@@ -97,6 +109,7 @@ public class BitInputStream {
 				}
 
 				if (read == -1) {
+					eof = true;
 					return -1;
 					// throw new EofUncheckedException("occurred on byte index "
 					// + i
@@ -121,4 +134,25 @@ public class BitInputStream {
 
 		return val;
 	}
+
+	/**
+	 * Returns true if a read needed more data than was available. Bits
+	 * returned by that read and all later ones are not valid data.
+	 */
+	public boolean is_eof() {
+		return eof;
+	}
+
+	/**
+	 * Reads len many bits, the first one read becoming the most significant of
+	 * them; the counterpart of BitOutputStream.write_msb_first(...). Bits
+	 * beyond EOF are not valid data, check is_eof().
+	 */
+	public int read_msb_first(int len) {
+		if (len == 0) {
+			return 0;
+		}
+
+		return Integer.reverse(read(len)) >>> (32 - len);
+	}
 }
@@ -88,6 +88,33 @@ public class BitOutputStream {
 		}
 	}
 
+	/**
+	 * Writes len many of the least significant bits of val, starting with the
+	 * most significant of them. Same as calling write(bit) for each of the len
+	 * bits from bit len - 1 down to bit 0, i.e. for writing numbers whose most
+	 * significant bit has to come first in the stream.
+	 */
+	public void write_msb_first(int val, int len) {
+		if (len == 0) {
+			return;
+		}
+
+		write(Integer.reverse(val) >>> (32 - len), len);
+	}
+
+	/**
+	 * Writes count many copies of the least significant bit of bit.
+	 */
+	public void write_run(int bit, int count) {
+		int val = -(bit & 1);
+
+		for (; count > 32; count -= 32) {
+			write(val, 32);
+		}
+
+		write(val, count);
+	}
+
 	public void flushReadyBytes() {
 		try {
 			underlying.flush();
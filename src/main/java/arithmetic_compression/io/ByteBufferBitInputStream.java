@@ -0,0 +1,194 @@
+package arithmetic_compression.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link BitInputStream} which reads directly from a {@link ByteBuffer},
+ * heap or direct, or from a byte[], and refills its 64 bit accumulator with
+ * up to 8 bytes at once instead of calling InputStream.read() once per byte.
+ * Reads the same bits in the same order as {@link BitInputStream}.
+ * <p>
+ * Besides read(...), there is peek(n) / consume(n) for table-driven
+ * decoders: peek(n) returns the next n bits without removing them, and
+ * consume(n) removes them. Bits beyond the end of the data read as 0. EOF is
+ * not signalled through return values, but by is_eof(), which becomes true
+ * once more bits were consumed than the data has; available() tells how many
+ * valid bits are left.
+ * </p>
+ */
+public class ByteBufferBitInputStream extends BitInputStream {
+
+	/**
+	 * The largest n for peek(n); refill() keeps at least this many bits in
+	 * acc, unless the data ends.
+	 */
+	public static final int MAX_PEEK_BITS = 32;
+
+	ByteBuffer src;
+
+	boolean src_little_endian;
+
+	/**
+	 * Buffered data in the acc_sz many least significant bits, the oldest bit
+	 * in the least significant one. Bits above acc_sz are 0.
+	 */
+	long acc;
+
+	/**
+	 * Number of valid bits in acc. Negative after consuming beyond the end of
+	 * the data.
+	 */
+	int acc_sz;
+
+	/**
+	 * Reads from src starting at its current position, and advances the
+	 * position as bytes are moved into the accumulator. src's byte order is
+	 * left as it is and doesn't matter.
+	 */
+	public ByteBufferBitInputStream(ByteBuffer src) {
+		super(null);
+
+		set_source(src);
+	}
+
+	/**
+	 * Reads src[off] to src[off + len - 1], without copying.
+	 */
+	public ByteBufferBitInputStream(byte[] src, int off, int len) {
+		this(ByteBuffer.wrap(src, off, len));
+	}
+
+	/**
+	 * Continues reading from the specified buffer once the bits of the current
+	 * one are used up.
+	 */
+	protected void set_source(ByteBuffer src) {
+		this.src = src;
+		src_little_endian = (src.order() == ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Called when the current buffer is exhausted; subclasses which read data
+	 * in several segments switch to the next one via set_source(...) here and
+	 * return true. Returns false if there is no more data.
+	 */
+	protected boolean next_source() {
+		return false;
+	}
+
+	/**
+	 * Fills acc with as many whole bytes as fit.
+	 */
+	private void refill() {
+		if (acc_sz < 0) {
+			return;
+		}
+
+		int byte_count = (64 - acc_sz) >>> 3;
+
+		if (src.remaining() >= 8) {
+			int pos = src.position();
+			long word = src.getLong(pos);
+			if (!src_little_endian) {
+				word = Long.reverseBytes(word);
+			}
+			if (byte_count < 8) {
+				word &= (1L << (8 * byte_count)) - 1;
+			}
+			acc |= word << acc_sz;
+			acc_sz += 8 * byte_count;
+			src.position(pos + byte_count);
+			return;
+		}
+
+		for (; byte_count > 0; byte_count--) {
+			if (!src.hasRemaining() && !next_source()) {
+				return;
+			}
+			acc |= (src.get() & 0xffL) << acc_sz;
+			acc_sz += 8;
+		}
+	}
+
+	/**
+	 * Returns the next n bits, n in [0, MAX_PEEK_BITS], in the least
+	 * significant bits of the result, the first one in the least significant
+	 * bit. Bits beyond the end of the data are 0.
+	 */
+	public int peek(int n) {
+		if (acc_sz < n) {
+			refill();
+		}
+
+		return (int) acc & (int) ((1L << n) - 1);
+	}
+
+	/**
+	 * Removes the next n bits, n in [0, MAX_PEEK_BITS]. Sets EOF if there
+	 * weren't that many bits left.
+	 */
+	public void consume(int n) {
+		if (acc_sz < n) {
+			refill();
+		}
+
+		acc >>>= n;
+		acc_sz -= n;
+
+		if (acc_sz < 0) {
+			eof = true;
+		}
+	}
+
+	/**
+	 * Returns the number of bits which can still be read before EOF.
+	 */
+	public long available() {
+		if (acc_sz < 0) {
+			return 0;
+		}
+
+		// segments after the current buffer are not counted
+		return acc_sz + 8L * src.remaining();
+	}
+
+	@Override
+	public int read() {
+		if (acc_sz < 1) {
+			refill();
+		}
+
+		int b = (int) acc & 1;
+		acc >>>= 1;
+		acc_sz--;
+
+		if (acc_sz < 0) {
+			eof = true;
+		}
+
+		return b;
+	}
+
+	/**
+	 * Like peek(len) followed by consume(len). Unlike
+	 * {@link BitInputStream#read(int)}, this never returns -1; bits beyond the
+	 * end of the data are 0, check is_eof().
+	 */
+	@Override
+	public int read(int len) {
+		if (len < 0) {
+			throw new IllegalArgumentException( //
+					"can't read a negative amount of bits (len = " + len + ")");
+		}
+		if (len > 32) {
+			throw new IllegalArgumentException( //
+					"can't read more then 32 bits at once (len = " + len + ")");
+		}
+
+		int val = peek(len);
+		consume(len);
+
+		return val;
+	}
+}
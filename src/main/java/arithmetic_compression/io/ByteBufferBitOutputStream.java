@@ -0,0 +1,123 @@
+package arithmetic_compression.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link BitOutputStream} which writes directly into a {@link ByteBuffer},
+ * heap or direct, or into a caller-owned byte[], instead of calling
+ * OutputStream.write(int) once per byte. Bits are collected in a 64 bit
+ * accumulator and stored 32 bits at a time. The produced bytes are the same
+ * as those of {@link BitOutputStream}.
+ * <p>
+ * The buffer is not grown: writing more than fits throws a
+ * java.nio.BufferOverflowException. Use EntropyCoder.max_encoded_size(...) to
+ * size the buffer. Bytes are only guaranteed to be in the buffer after
+ * flushReadyBytes() or flushAll(); the buffer's position then is the end of
+ * the written data.
+ * </p>
+ */
+public class ByteBufferBitOutputStream extends BitOutputStream {
+
+	ByteBuffer dst;
+
+	boolean dst_little_endian;
+
+	/**
+	 * Content in acc is in the acc_sz many least significant bits, the oldest
+	 * bit in the least significant one. After a write operation, acc_sz < 32.
+	 */
+	long acc;
+
+	int acc_sz;
+
+	/**
+	 * Writes to dst starting at its current position. dst's byte order is left
+	 * as it is and doesn't matter.
+	 */
+	public ByteBufferBitOutputStream(ByteBuffer dst) {
+		super(null);
+
+		this.dst = dst;
+		dst_little_endian = (dst.order() == ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Writes to dst[off] to dst[off + len - 1], without copying.
+	 */
+	public ByteBufferBitOutputStream(byte[] dst, int off, int len) {
+		this(ByteBuffer.wrap(dst, off, len));
+	}
+
+	public ByteBuffer buffer() {
+		return dst;
+	}
+
+	@Override
+	public void write(int val) {
+		acc |= ((long) (val & 1)) << acc_sz;
+		acc_sz++;
+
+		if (acc_sz == 32) {
+			put_int();
+		}
+	}
+
+	@Override
+	public void write(int val, int len) {
+		if (len < 0) {
+			throw new IllegalArgumentException( //
+					"can't write a negative amount of bits (len = " + len + ")");
+		}
+		if (len > 32) {
+			throw new IllegalArgumentException( //
+					"can't write more than 32 bits at once (len = " + len + ")");
+		}
+
+		acc |= (val & ((1L << len) - 1)) << acc_sz;
+		acc_sz += len;
+
+		if (acc_sz >= 32) {
+			put_int();
+		}
+	}
+
+	private void put_int() {
+		int word = (int) acc;
+
+		if (dst.remaining() >= 4) {
+			dst.putInt(dst_little_endian ? word : Integer.reverseBytes(word));
+		} else {
+			for (int i = 0; i < 4; i++) {
+				dst.put((byte) (word >>> (8 * i)));
+			}
+		}
+
+		acc >>>= 32;
+		acc_sz -= 32;
+	}
+
+	/**
+	 * Stores all complete bytes in the accumulator to the buffer.
+	 */
+	@Override
+	public void flushReadyBytes() {
+		while (acc_sz >= 8) {
+			dst.put((byte) acc);
+			acc >>>= 8;
+			acc_sz -= 8;
+		}
+	}
+
+	/**
+	 * Stores all bits to the buffer, the last byte 0-padded.
+	 */
+	@Override
+	public void flushAll() {
+		if ((acc_sz & 7) != 0) {
+			acc_sz += 8 - (acc_sz & 7);
+		}
+
+		flushReadyBytes();
+	}
+}
@@ -0,0 +1,60 @@
+package arithmetic_compression.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of direct ByteBuffers. Allocating a direct buffer is expensive and its
+ * memory is only freed with the buffer object by the garbage collector, so
+ * code which needs a buffer per chunk of data takes them from here and gives
+ * them back when done.
+ * <p>
+ * At most max_pooled buffers are kept; further ones released are dropped, as
+ * are those larger than max_capacity, so that a few unusually large requests
+ * don't keep their memory allocated. A pooled buffer too small for a request
+ * is dropped as well and replaced by a new one of the requested capacity, so
+ * that after a short warmup all pooled buffers have the capacity needed.
+ * Thread-safe.
+ * </p>
+ */
+public class DirectBufferPool {
+
+	ArrayBlockingQueue<ByteBuffer> buffers;
+
+	int max_capacity;
+
+	public DirectBufferPool(int max_pooled) {
+		this(max_pooled, Integer.MAX_VALUE);
+	}
+
+	public DirectBufferPool(int max_pooled, int max_capacity) {
+		buffers = new ArrayBlockingQueue<>(max_pooled);
+		this.max_capacity = max_capacity;
+	}
+
+	/**
+	 * Returns a direct buffer with at least the specified capacity, cleared,
+	 * i.e. position 0 and limit capacity, big endian.
+	 */
+	public ByteBuffer acquire(int capacity) {
+		ByteBuffer buf = buffers.poll();
+
+		if (buf == null || buf.capacity() < capacity) {
+			return ByteBuffer.allocateDirect(capacity);
+		}
+
+		buf.clear();
+		return buf.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Gives the buffer back to the pool. It must not be used anymore by the
+	 * caller. null is ignored.
+	 */
+	public void release(ByteBuffer buf) {
+		if (buf != null && buf.isDirect() && buf.capacity() <= max_capacity) {
+			buffers.offer(buf);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package arithmetic_compression.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ByteBufferBitInputStream} which reads a region of a file through
+ * memory mappings, so that decoders take the bytes straight from the page
+ * cache without read() calls or copying.
+ * <p>
+ * A single MappedByteBuffer can't be larger than 2 GB, so the region is
+ * mapped in segments of at most segment_size bytes, each one mapped once the
+ * previous one is used up. A segment is unmapped by the garbage collector
+ * once it isn't referenced anymore; closing this stream closes the channel
+ * only if this stream opened it.
+ * </p>
+ */
+public class MappedFileBitInputStream extends ByteBufferBitInputStream implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	FileChannel channel;
+
+	boolean owns_channel;
+
+	int segment_size;
+
+	/**
+	 * File position of the first byte after the currently mapped segment.
+	 */
+	long next_position;
+
+	/**
+	 * File position of the first byte after the region.
+	 */
+	long end_position;
+
+	/**
+	 * Returns a stream which reads the whole file and closes it on close().
+	 * The file is closed right away if the stream can't be created.
+	 */
+	public static MappedFileBitInputStream open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			MappedFileBitInputStream stream = new MappedFileBitInputStream(channel, 0, channel.size());
+			stream.owns_channel = true;
+			return stream;
+		} catch (IOException | RuntimeException | Error e) {
+			try {
+				channel.close();
+			} catch (IOException close_e) {
+				e.addSuppressed(close_e);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the size many bytes starting at position of the specified
+	 * channel, which has to be open for reading. The channel is left open by
+	 * close().
+	 */
+	public MappedFileBitInputStream(FileChannel channel, long position, long size) throws IOException {
+		this(channel, position, size, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public MappedFileBitInputStream(FileChannel channel, long position, long size, int segment_size)
+			throws IOException {
+		super(map(channel, position, Math.min(size, segment_size), segment_size));
+
+		this.channel = channel;
+		this.segment_size = segment_size;
+
+		next_position = position + src.capacity();
+		end_position = position + size;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long size, int segment_size)
+			throws IOException {
+		if (segment_size < 8) {
+			// refill() takes 8 bytes at once while it can
+			throw new IllegalArgumentException("segment_size must be at least 8 (segment_size = " + segment_size + ")");
+		}
+		if (position < 0 || size < 0) {
+			throw new IllegalArgumentException( //
+					"position and size must not be negative (position = " + position + ", size = " + size + ")");
+		}
+
+		MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+
+		return buf;
+	}
+
+	@Override
+	protected boolean next_source() {
+		if (next_position >= end_position) {
+			return false;
+		}
+
+		long size = Math.min(end_position - next_position, segment_size);
+		try {
+			set_source(map(channel, next_position, size, segment_size));
+		} catch (IOException e) {
+			throw new IoUncheckedException(e);
+		}
+		next_position += size;
+
+		return true;
+	}
+
+	/**
+	 * Unlike in the super class, includes the bytes of the segments not
+	 * mapped yet.
+	 */
+	@Override
+	public long available() {
+		if (acc_sz < 0) {
+			return 0;
+		}
+
+		return acc_sz + 8L * (src.remaining() + (end_position - next_position));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (owns_channel) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package arithmetic_compression.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * {@link ByteBufferBitInputStream} to which the data is pushed in pieces as
+ * it arrives, instead of being available in full from the start. Reading
+ * never blocks: bits which haven't arrived yet read as 0, like bits beyond
+ * the end of the data. So a reader has to check available() before reading,
+ * and only read as many bits as have arrived, unless the data is complete.
+ */
+public class PushBitInputStream extends ByteBufferBitInputStream {
+
+	ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+
+	/**
+	 * Total number of bytes remaining in pending.
+	 */
+	long pending_size;
+
+	public PushBitInputStream() {
+		super(ByteBuffer.allocate(0));
+	}
+
+	/**
+	 * Appends the remaining bytes of buf to the data, without copying; buf
+	 * must not be modified afterwards.
+	 */
+	public void feed(ByteBuffer buf) {
+		if (!buf.hasRemaining()) {
+			return;
+		}
+
+		pending.add(buf);
+		pending_size += buf.remaining();
+	}
+
+	@Override
+	protected boolean next_source() {
+		ByteBuffer next = pending.poll();
+		if (next == null) {
+			return false;
+		}
+
+		pending_size -= next.remaining();
+		set_source(next);
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of bits which have arrived and are not read yet.
+	 */
+	@Override
+	public long available() {
+		return super.available() + 8 * pending_size;
+	}
+}
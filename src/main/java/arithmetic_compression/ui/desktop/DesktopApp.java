@@ -5,28 +5,21 @@ import java.awt.Graphics;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-
-import arithmetic_compression.coder.DeltaCoder;
-import arithmetic_compression.coder.SubtractGreenTransform;
-import arithmetic_compression.coder.ZigzagCoder;
+import arithmetic_compression.ImageUtil;
+import arithmetic_compression.coder.FusedImageTransform;
 import arithmetic_compression.coder.arithmetic.ArithmeticCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
 import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
-import arithmetic_compression.io.BitInputStream;
-import arithmetic_compression.io.BitOutputStream;
+import arithmetic_compression.container.ContainerDecoder;
+import arithmetic_compression.container.ContainerEncoder;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
 
 @SuppressWarnings("serial")
 public class DesktopApp extends FullScreenWindow {
@@ -57,29 +50,27 @@ public class DesktopApp extends FullScreenWindow {
 		// saveWithAndWithoutHist(stepIdx + ". original", path, data);
 		repaintInline();
 
-		SubtractGreenTransform.INSTANCE.encode(data);
-		stepIdx++;
-		// saveWithAndWithoutHist(stepIdx + ". subtractgreen", path, data);
-		repaintInline();
-
-		DeltaCoder.INSTANCE.encode(data, w, h);
-		stepIdx++;
-		// saveWithAndWithoutHist(stepIdx + ". delta-encoded", path, data);
-		repaintInline();
-
-		ZigzagCoder.INSTANCE.enc(data);
-		stepIdx++;
+		// subtract green, delta and zigzag in one pass, which also yields the
+		// histogram; SubtractGreenTransform, DeltaCoder and ZigzagCoder one
+		// after the other give the same result and show the steps
+		Arrays.fill(hist, 0);
+		FusedImageTransform.INSTANCE.encode(data, w, h, hist);
+		stepIdx += 3;
 		// saveWithAndWithoutHist(stepIdx + ". zigzag-encoded", path, data);
 		repaintInline();
 
-		calcHistogram(data);
+		byte[] container = new ContainerEncoder(EntropyCoderType.ARITHMETIC).encode(data, 0, data.length,
+				ForkJoinPool.commonPool());
+		System.out.println("container size: " + container.length + " byte");
+
 		byte[] arithEncoded;
+		int arithEncodedLen;
 		{
-			ByteArrayOutputStream byteStream = new ByteArrayOutputStream(data.length / 2);
-			BitOutputStream bitStream = new BitOutputStream(byteStream);
-
 			SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(hist);
 			ArithmeticCoder arithCodec = new ArithmeticCoder(dist);
+
+			arithEncoded = new byte[(int) arithCodec.max_encoded_size(data.length)];
+			ByteBufferBitOutputStream bitStream = new ByteBufferBitOutputStream(arithEncoded, 0, arithEncoded.length);
 			int max_write_count = 0;
 			int max_symbol = 0;
 			for (int i = 0; i < data.length; i++) {
@@ -115,10 +106,10 @@ public class DesktopApp extends FullScreenWindow {
 			// path, data);
 			repaintInline();
 
-			arithEncoded = byteStream.toByteArray();
-			System.out.println("size: " + arithEncoded.length + " byte");
+			arithEncodedLen = bitStream.buffer().position();
+			System.out.println("size: " + arithEncodedLen + " byte");
 			Arrays.fill(data, (byte) 0);
-			System.arraycopy(arithEncoded, 0, data, 0, arithEncoded.length);
+			System.arraycopy(arithEncoded, 0, data, 0, Math.min(arithEncodedLen, data.length));
 		}
 
 		// saveWithAndWithoutHist(stepIdx + ".1. arithmetic-encoded", path,
@@ -127,29 +118,15 @@ public class DesktopApp extends FullScreenWindow {
 
 		// long t = System.nanoTime();
 		{
-			ByteArrayInputStream byteStream = new ByteArrayInputStream(arithEncoded);
-			BitInputStream bitStream = new BitInputStream(byteStream);
-
-			SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(hist);
-			ArithmeticCoder arithCodec = new ArithmeticCoder(dist);
-
-			arithCodec.start_decoding(bitStream);
-			for (int i = 0; i < data.length; i++) {
-				int symbol = arithCodec.decode(bitStream);
-				data[i] = (byte) symbol;
-			}
+			// everything needed for decoding is in the container
+			ContainerDecoder decoder = new ContainerDecoder(container);
+			decoder.decode(data, 0, ForkJoinPool.commonPool());
 		}
 		// t = System.nanoTime() - t;
 		// System.out.println("time: " + TimeDurationFormatter.formatDura(t));
 		repaintInline();
 
-		ZigzagCoder.INSTANCE.dec(data);
-		repaintInline();
-
-		DeltaCoder.INSTANCE.decode(data, w, h);
-		repaintInline();
-
-		SubtractGreenTransform.INSTANCE.decode(data);
+		FusedImageTransform.INSTANCE.decode(data, w, h);
 		repaintInline();
 	}
 
@@ -186,25 +163,7 @@ public class DesktopApp extends FullScreenWindow {
 	}
 
 	public static void writePngFullCompression(BufferedImage img, File dstFile) {
-		Iterator<ImageWriter> imgWriterIter = ImageIO.getImageWritersByFormatName("png");
-		ImageWriter imgWriter = imgWriterIter.next();
-
-		ImageWriteParam params = imgWriter.getDefaultWriteParam();
-		params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-		params.setCompressionQuality(0.0f); // 0.0 means "high compression"
-		params.setCompressionType("Deflate");
-
-		try {
-			FileOutputStream fileOutputStream = new FileOutputStream(dstFile);
-			ImageOutputStream imgOutputStream = ImageIO.createImageOutputStream(fileOutputStream);
-			imgWriter.setOutput(imgOutputStream);
-			imgWriter.write(null, new IIOImage(img, null, null), params);
-			imgOutputStream.flush();
-			imgWriter.dispose();
-			imgOutputStream.close();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		ImageUtil.writePngFullCompression(img, dstFile);
 	}
 
 	public void storeToFile(byte[] data, String filename) {
@@ -354,25 +313,6 @@ public class DesktopApp extends FullScreenWindow {
 	}
 
 	public static BufferedImage loadImage(URL srcUrl) {
-		BufferedImage img;
-		try {
-			img = ImageIO.read(srcUrl);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-
-		img = convertTo(img, BufferedImage.TYPE_3BYTE_BGR);
-
-		return img;
-	}
-
-	private static BufferedImage convertTo(BufferedImage src, int type) {
-		BufferedImage result = new BufferedImage(src.getWidth(), src.getHeight(), type);
-
-		Graphics g = result.createGraphics();
-		g.drawImage(src, 0, 0, null);
-		g.dispose();
-
-		return result;
+		return ImageUtil.loadImage(srcUrl);
 	}
-}
\ No newline at end of file
+}
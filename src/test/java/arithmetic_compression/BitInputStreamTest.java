@@ -81,4 +81,28 @@ public class BitInputStreamTest {
 			readLenwiseCallCount++;
 		}
 	}
+
+	@Test
+	public void msbFirstTest() {
+		Random rng = new Random(0);
+
+		byte[] data = new byte[4096];
+		rng.nextBytes(data);
+
+		BitInputStream bitStreamBitwise = new BitInputStream(new ByteArrayInputStream(data));
+		BitInputStream bitStreamMsbFirst = new BitInputStream(new ByteArrayInputStream(data));
+
+		int[] lens = new int[] { 0, 1, 32, 3, 0, 32, 1, 32 };
+		for (int i = 0; i < 1000; i++) {
+			int len = (i < lens.length) ? lens[i] : rng.nextInt(33);
+
+			int expected = 0;
+			for (int j = 0; j < len; j++) {
+				expected = (expected << 1) | bitStreamBitwise.read(1);
+			}
+
+			assertEquals("msb first read of " + len + " bits at call " + i + " (0-based index)", expected,
+					bitStreamMsbFirst.read_msb_first(len));
+		}
+	}
 }
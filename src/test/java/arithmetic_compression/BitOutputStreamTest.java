@@ -65,4 +65,69 @@ public class BitOutputStreamTest {
 				"binary data written to underlying stream differs for lenwise and bitwise writing (expected is bitwise, actual is lenwise):",
 				aBitwise, aLenwise);
 	}
+
+	@Test
+	public void msbFirstTest() {
+		Random rng = new Random(0);
+
+		ByteArrayOutputStream byteStreamBitwise = new ByteArrayOutputStream();
+		BitOutputStream bitStreamBitwise = new BitOutputStream(byteStreamBitwise);
+		ByteArrayOutputStream byteStreamMsbFirst = new ByteArrayOutputStream();
+		BitOutputStream bitStreamMsbFirst = new BitOutputStream(byteStreamMsbFirst);
+
+		// the edge cases first, then random lengths; odd lengths in between
+		// keep the writes from being aligned to bytes
+		int[] lens = new int[] { 0, 1, 32, 3, 0, 32, 1, 32 };
+		for (int i = 0; i < 1000; i++) {
+			int r = rng.nextInt();
+			int len = (i < lens.length) ? lens[i] : rng.nextInt(33);
+
+			for (int shift = len - 1; shift >= 0; shift--) {
+				bitStreamBitwise.write((r >>> shift) & 1);
+			}
+
+			bitStreamMsbFirst.write_msb_first(r, len);
+		}
+
+		bitStreamBitwise.flushAll();
+		bitStreamMsbFirst.flushAll();
+
+		assertArrayEquals(
+				"binary data written to underlying stream differs for msb first and bitwise writing (expected is bitwise, actual is msb first):",
+				byteStreamBitwise.toByteArray(), byteStreamMsbFirst.toByteArray());
+	}
+
+	@Test
+	public void runTest() {
+		Random rng = new Random(0);
+
+		ByteArrayOutputStream byteStreamBitwise = new ByteArrayOutputStream();
+		BitOutputStream bitStreamBitwise = new BitOutputStream(byteStreamBitwise);
+		ByteArrayOutputStream byteStreamRunwise = new ByteArrayOutputStream();
+		BitOutputStream bitStreamRunwise = new BitOutputStream(byteStreamRunwise);
+
+		int[] counts = new int[] { 0, 1, 32, 33, 100 };
+		for (int i = 0; i < 200; i++) {
+			int bit = i & 1;
+			int count = counts[i % counts.length];
+			int offset = rng.nextInt(8);
+
+			for (int j = 0; j < offset; j++) {
+				bitStreamBitwise.write(1 - bit);
+			}
+			bitStreamRunwise.write((bit == 0) ? -1 : 0, offset);
+
+			for (int j = 0; j < count; j++) {
+				bitStreamBitwise.write(bit);
+			}
+			bitStreamRunwise.write_run(bit, count);
+		}
+
+		bitStreamBitwise.flushAll();
+		bitStreamRunwise.flushAll();
+
+		assertArrayEquals(
+				"binary data written to underlying stream differs for runwise and bitwise writing (expected is bitwise, actual is runwise):",
+				byteStreamBitwise.toByteArray(), byteStreamRunwise.toByteArray());
+	}
 }
@@ -0,0 +1,129 @@
+package arithmetic_compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.ByteBufferBitInputStream;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
+
+public class ByteBufferBitInputStreamTest {
+
+	@Test
+	public void sameAsBitInputStreamTest() {
+		for (int seed = 0; seed < 1000; seed++) {
+			singleSameAsBitInputStreamTest(seed);
+		}
+	}
+
+	public void singleSameAsBitInputStreamTest(int seed) {
+		Random rng = new Random(seed);
+
+		byte[] data = new byte[rng.nextInt(200)];
+		rng.nextBytes(data);
+
+		BitInputStream expectedStream = new BitInputStream(new ByteArrayInputStream(data));
+
+		ByteBuffer buf = rng.nextBoolean() ? ByteBuffer.allocate(data.length) : ByteBuffer.allocateDirect(data.length);
+		buf.order(rng.nextBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		buf.put(data);
+		buf.flip();
+		ByteBufferBitInputStream actualStream = new ByteBufferBitInputStream(buf);
+
+		long remaining = data.length * 8L;
+		while (remaining > 0) {
+			int len = (int) Math.min(remaining, rng.nextInt(33));
+
+			int expected;
+			int actual;
+			switch (rng.nextInt(3)) {
+			case 0:
+				len = 1;
+				expected = expectedStream.read();
+				actual = actualStream.read();
+				break;
+			case 1:
+				expected = expectedStream.read(len);
+				actual = actualStream.peek(len);
+				actualStream.consume(len);
+				break;
+			default:
+				expected = expectedStream.read(len);
+				actual = actualStream.read(len);
+			}
+
+			assertEquals("seed " + seed + ", " + remaining + " bits remaining", expected, actual);
+			remaining -= len;
+			assertEquals(remaining, actualStream.available());
+		}
+
+		assertFalse(actualStream.is_eof());
+		assertEquals(0, actualStream.read(5));
+		assertTrue(actualStream.is_eof());
+	}
+
+	@Test
+	public void peekAtEndTest() {
+		ByteBufferBitInputStream bitStream = new ByteBufferBitInputStream(new byte[]{0, (byte) 0xff, 0x55}, 1, 1);
+
+		assertEquals(0xff, bitStream.peek(16));
+		bitStream.consume(8);
+		assertFalse(bitStream.is_eof());
+		assertEquals(0, bitStream.peek(32));
+		bitStream.consume(1);
+		assertTrue(bitStream.is_eof());
+	}
+
+	/**
+	 * Some decoders read a little beyond the encoded data; bits there have to
+	 * decode like the padding of BitInputStream.
+	 */
+	@Test
+	public void coderRoundTripTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[256];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = 1 + rng.nextInt(1000);
+		}
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		int[] msg = new int[10000];
+		for (int i = 0; i < msg.length; i++) {
+			msg[i] = rng.nextInt(256);
+		}
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			EntropyCoder encoder = type.create(dist);
+			byte[] encoded = new byte[(int) encoder.max_encoded_size(msg.length)];
+			ByteBufferBitOutputStream sink = new ByteBufferBitOutputStream(encoded, 0, encoded.length);
+			for (int i = 0; i < msg.length; i++) {
+				encoder.encode(msg[i], sink);
+			}
+			encoder.finish_encoding(sink);
+			sink.flushAll();
+
+			ByteBufferBitInputStream source = new ByteBufferBitInputStream(encoded, 0, sink.buffer().position());
+			EntropyCoder decoder = type.create(dist);
+			decoder.start_decoding(source);
+			int[] decoded = new int[msg.length];
+			for (int i = 0; i < decoded.length; i++) {
+				decoded[i] = decoder.decode(source);
+			}
+
+			assertArrayEquals(type.toString(), msg, decoded);
+		}
+	}
+}
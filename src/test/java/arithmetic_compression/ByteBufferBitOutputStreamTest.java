@@ -0,0 +1,82 @@
+package arithmetic_compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.io.BitOutputStream;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
+
+public class ByteBufferBitOutputStreamTest {
+
+	@Test
+	public void sameAsBitOutputStreamTest() {
+		for (int seed = 0; seed < 1000; seed++) {
+			singleSameAsBitOutputStreamTest(seed);
+		}
+	}
+
+	public void singleSameAsBitOutputStreamTest(int seed) {
+		Random rng = new Random(seed);
+
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		BitOutputStream expectedStream = new BitOutputStream(byteStream);
+
+		ByteBuffer buf = rng.nextBoolean() ? ByteBuffer.allocate(500) : ByteBuffer.allocateDirect(500);
+		buf.order(rng.nextBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		buf.position(rng.nextInt(50));
+		int start = buf.position();
+		BitOutputStream actualStream = new ByteBufferBitOutputStream(buf);
+
+		for (int i = 0; i < 100; i++) {
+			int r = rng.nextInt();
+			if (rng.nextInt(4) == 0) {
+				expectedStream.write(r);
+				actualStream.write(r);
+			} else {
+				int len = rng.nextInt(33);
+				expectedStream.write(r, len);
+				actualStream.write(r, len);
+			}
+		}
+
+		expectedStream.flushAll();
+		actualStream.flushAll();
+
+		byte[] expected = byteStream.toByteArray();
+		byte[] actual = new byte[buf.position() - start];
+		buf.flip();
+		buf.position(start);
+		buf.get(actual);
+
+		assertArrayEquals("seed " + seed, expected, actual);
+	}
+
+	@Test
+	public void byteArrayTest() {
+		byte[] a = new byte[8];
+		Arrays.fill(a, (byte) 0x55);
+
+		ByteBufferBitOutputStream bitStream = new ByteBufferBitOutputStream(a, 2, 5);
+		bitStream.write(0x04030201, 32);
+		bitStream.write(5, 3);
+		bitStream.flushAll();
+
+		assertArrayEquals(new byte[]{0x55, 0x55, 1, 2, 3, 4, 5, 0x55}, a);
+		assertEquals(7, bitStream.buffer().position());
+	}
+
+	@Test(expected = BufferOverflowException.class)
+	public void overflowTest() {
+		ByteBufferBitOutputStream bitStream = new ByteBufferBitOutputStream(new byte[3], 0, 3);
+		bitStream.write(-1, 32);
+	}
+}
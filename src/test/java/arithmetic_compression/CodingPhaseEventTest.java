@@ -0,0 +1,88 @@
+package arithmetic_compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.DeltaCoder;
+import arithmetic_compression.coder.SubtractGreenTransform;
+import arithmetic_compression.coder.ZigzagCoder;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.container.ContainerDecoder;
+import arithmetic_compression.container.ContainerEncoder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class CodingPhaseEventTest {
+
+	@Test
+	public void pipelineTest() throws Exception {
+		int w = 40;
+		int h = 30;
+		byte[] data = new byte[3 * w * h];
+		new Random(0).nextBytes(data);
+		byte[] original = data.clone();
+
+		List<RecordedEvent> events;
+
+		Path file = Files.createTempFile("coding-phases", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(CodingPhaseEvent.class).withoutThreshold();
+			recording.start();
+
+			SubtractGreenTransform.INSTANCE.encode(data);
+			DeltaCoder.INSTANCE.encode(data, w, h);
+			ZigzagCoder.INSTANCE.enc(data);
+			byte[] container = new ContainerEncoder(EntropyCoderType.RANGE, 1000).encode(data);
+			byte[] decoded = new ContainerDecoder(container).decode();
+			ZigzagCoder.INSTANCE.dec(decoded);
+			DeltaCoder.INSTANCE.decode(decoded, w, h);
+			SubtractGreenTransform.INSTANCE.decode(decoded);
+
+			recording.stop();
+			recording.dump(file);
+
+			assertArrayEquals(original, decoded);
+
+			events = RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+
+		Map<String, Integer> phase_count = new HashMap<>();
+		long encoded_symbols = 0;
+		long decoded_symbols = 0;
+		for (RecordedEvent event : events) {
+			String phase = event.getString("phase");
+			phase_count.merge(phase, 1, Integer::sum);
+
+			if (phase.equals(CodingPhase.ENCODE)) {
+				assertEquals("RANGE", event.getString("coder"));
+				assertTrue(event.getLong("bytes_out") > 0);
+				encoded_symbols += event.getLong("symbols");
+			} else if (phase.equals(CodingPhase.DECODE)) {
+				decoded_symbols += event.getLong("symbols");
+			}
+		}
+
+		assertEquals(2, (int) phase_count.get(CodingPhase.COLOR_TRANSFORM));
+		assertEquals(2, (int) phase_count.get(CodingPhase.DELTA));
+		assertEquals(2, (int) phase_count.get(CodingPhase.ZIGZAG));
+		assertEquals(1, (int) phase_count.get(CodingPhase.HISTOGRAM));
+		assertEquals(1, (int) phase_count.get(CodingPhase.MODEL));
+		assertEquals(4, (int) phase_count.get(CodingPhase.ENCODE));
+		assertEquals(4, (int) phase_count.get(CodingPhase.DECODE));
+		assertEquals(data.length, encoded_symbols);
+		assertEquals(data.length, decoded_symbols);
+	}
+}
@@ -0,0 +1,31 @@
+package arithmetic_compression;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import arithmetic_compression.io.DirectBufferPool;
+
+public class DirectBufferPoolTest {
+
+	@Test
+	public void reuseTest() {
+		DirectBufferPool pool = new DirectBufferPool(1, 100);
+
+		ByteBuffer buf = pool.acquire(100);
+		pool.release(buf);
+		assertSame(buf, pool.acquire(50));
+	}
+
+	@Test
+	public void maxCapacityTest() {
+		DirectBufferPool pool = new DirectBufferPool(1, 100);
+
+		ByteBuffer buf = pool.acquire(101);
+		pool.release(buf);
+		assertNotSame(buf, pool.acquire(50));
+	}
+}
@@ -0,0 +1,78 @@
+package arithmetic_compression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.MappedFileBitInputStream;
+
+public class MappedFileBitInputStreamTest {
+
+	/**
+	 * Small segments, so that reads cross many segment boundaries.
+	 */
+	@Test
+	public void segmentedSameAsBitInputStreamTest() throws IOException {
+		Path file = Files.createTempFile("bits", ".bin");
+		try {
+			Random rng = new Random(0);
+			byte[] data = new byte[1000];
+			rng.nextBytes(data);
+			Files.write(file, data);
+
+			for (int segment_size : new int[]{8, 13, 64, 1000, 4096}) {
+				int offset = rng.nextInt(20);
+
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					BitInputStream expectedStream = new BitInputStream(
+							new ByteArrayInputStream(data, offset, data.length - offset));
+					MappedFileBitInputStream actualStream = new MappedFileBitInputStream(channel, offset,
+							data.length - offset, segment_size);
+
+					long remaining = (data.length - offset) * 8L;
+					while (remaining > 0) {
+						int len = (int) Math.min(remaining, rng.nextInt(33));
+
+						assertEquals("segment_size " + segment_size + ", " + remaining + " bits remaining",
+								expectedStream.read(len), actualStream.read(len));
+						remaining -= len;
+						assertEquals(remaining, actualStream.available());
+					}
+
+					assertFalse(actualStream.is_eof());
+					actualStream.read();
+					assertTrue(actualStream.is_eof());
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void wholeFileTest() throws IOException {
+		Path file = Files.createTempFile("bits", ".bin");
+		try {
+			Files.write(file, new byte[]{0x12, 0x34, 0x56});
+
+			try (MappedFileBitInputStream bitStream = MappedFileBitInputStream.open(file)) {
+				assertEquals(24, bitStream.available());
+				assertEquals(0x563412, bitStream.read(24));
+				assertFalse(bitStream.is_eof());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
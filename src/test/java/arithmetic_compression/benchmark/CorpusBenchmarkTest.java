@@ -0,0 +1,72 @@
+package arithmetic_compression.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import arithmetic_compression.benchmark.CorpusBenchmark.Result;
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+
+public class CorpusBenchmarkTest {
+
+	@Test
+	public void imageAndOtherFileTest() throws Exception {
+		Path dir = Files.createTempDirectory("corpus");
+		try {
+			Random rng = new Random(0);
+			BufferedImage img = new BufferedImage(24, 16, BufferedImage.TYPE_3BYTE_BGR);
+			for (int y = 0; y < img.getHeight(); y++) {
+				for (int x = 0; x < img.getWidth(); x++) {
+					img.setRGB(x, y, (x * 10) << 16 | (y * 12) << 8 | rng.nextInt(16));
+				}
+			}
+			ImageIO.write(img, "png", dir.resolve("a.png").toFile());
+			Files.write(dir.resolve("b.txt"), "abracadabra, abracadabra".getBytes(StandardCharsets.US_ASCII));
+
+			List<Result> results = CorpusBenchmark.run(CorpusBenchmark.files(dir),
+					Arrays.asList(EntropyCoderType.ARITHMETIC, EntropyCoderType.RANS_X4), new int[] { 6 }, 1);
+
+			// the image gets both pipelines, deflate and png, the text no png
+			assertEquals(4 + 3, results.size());
+
+			for (Result r : results) {
+				boolean image = r.file.endsWith("a.png");
+				assertEquals(image ? 3 * 24 * 16 : 24, r.raw_size);
+				assertTrue(r.compressed_size > 0);
+				assertEquals(image, !Double.isNaN(r.bits_per_pixel()));
+			}
+			assertEquals(CorpusBenchmark.PNG, results.get(3).method);
+
+			ByteArrayOutputStream csv = new ByteArrayOutputStream();
+			CorpusBenchmark.write_csv(results, new PrintStream(csv, true, "UTF-8"));
+			String[] lines = csv.toString("UTF-8").split("\n");
+			assertEquals(1 + results.size(), lines.length);
+			assertTrue(lines[1].startsWith(results.get(0).file + ",pipeline ARITHMETIC,1152,"));
+
+			ByteArrayOutputStream json = new ByteArrayOutputStream();
+			CorpusBenchmark.write_json(results, new PrintStream(json, true, "UTF-8"));
+			String text = json.toString("UTF-8");
+			assertTrue(text.trim().startsWith("[") && text.trim().endsWith("]"));
+			assertTrue(text.contains("\"method\": \"deflate 6\""));
+			assertTrue(text.contains("\"bits_per_pixel\": null"));
+		} finally {
+			for (Path file : CorpusBenchmark.files(dir)) {
+				Files.delete(file);
+			}
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package arithmetic_compression.coder;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FusedImageTransformTest {
+
+	@Test
+	public void sameAsChainedTransformsTest() {
+		Random rng = new Random(0);
+
+		int[][] sizes = { { 1, 1 }, { 1, 7 }, { 7, 1 }, { 2, 2 }, { 33, 17 }, { 256, 100 } };
+		for (int[] size : sizes) {
+			int w = size[0];
+			int h = size[1];
+
+			for (boolean smooth : new boolean[] { false, true }) {
+				byte[] original = image(rng, w, h, smooth);
+
+				byte[] chained = original.clone();
+				SubtractGreenTransform.INSTANCE.encode(chained);
+				DeltaCoder.INSTANCE.encode(chained, w, h);
+				ZigzagCoder.INSTANCE.enc(chained);
+
+				int[] expected_hist = new int[256];
+				for (byte b : chained) {
+					expected_hist[b & 0xff]++;
+				}
+
+				byte[] fused = original.clone();
+				int[] hist = new int[256];
+				FusedImageTransform.INSTANCE.encode(fused, w, h, hist);
+
+				assertArrayEquals(chained, fused);
+				assertArrayEquals(expected_hist, hist);
+
+				FusedImageTransform.INSTANCE.decode(fused, w, h);
+				assertArrayEquals(original, fused);
+			}
+		}
+	}
+
+	@Test
+	public void decodeSameAsChainedTransformsTest() {
+		// decoding arbitrary bytes, not only those encode(...) produces
+		int w = 50;
+		int h = 20;
+		byte[] data = new byte[3 * w * h];
+		new Random(1).nextBytes(data);
+
+		byte[] chained = data.clone();
+		ZigzagCoder.INSTANCE.dec(chained);
+		DeltaCoder.INSTANCE.decode(chained, w, h);
+		SubtractGreenTransform.INSTANCE.decode(chained);
+
+		FusedImageTransform.INSTANCE.decode(data, w, h);
+
+		assertArrayEquals(chained, data);
+	}
+
+	@Test
+	public void emptyTest() {
+		int[] hist = new int[256];
+		FusedImageTransform.INSTANCE.encode(new byte[0], 0, 5, hist);
+		FusedImageTransform.INSTANCE.decode(new byte[0], 5, 0);
+		assertArrayEquals(new int[256], hist);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongSizeTest() {
+		FusedImageTransform.INSTANCE.encode(new byte[3 * 10 * 10 + 1], 10, 10, null);
+	}
+
+	/**
+	 * Returns random pixels, or pixels which differ little from their
+	 * neighbours like those of photos.
+	 */
+	private static byte[] image(Random rng, int w, int h, boolean smooth) {
+		byte[] data = new byte[3 * w * h];
+		if (!smooth) {
+			rng.nextBytes(data);
+			return data;
+		}
+
+		for (int i = 0; i < data.length; i++) {
+			int prev = (i >= 3) ? data[i - 3] : 100;
+			data[i] = (byte) (prev + rng.nextInt(9) - 4);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,57 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AdaptiveContextModelTest {
+
+	/**
+	 * Compares all contexts against a separate count array per context after
+	 * random updates, including several rescales.
+	 */
+	@Test
+	public void cumCountAndSymbolTest() {
+		Random rng = new Random(0);
+
+		for (int symbol_count : new int[]{2, 3, 7, 8, 9, 256}) {
+			int context_count = 1 + rng.nextInt(8);
+			int increment = 1 + rng.nextInt(64);
+			int max_total_count = 1 << 10;
+			AdaptiveContextModel model = new AdaptiveContextModel(context_count, symbol_count, increment,
+					max_total_count);
+
+			int[][] count = new int[context_count][symbol_count];
+			for (int ctx = 0; ctx < context_count; ctx++) {
+				java.util.Arrays.fill(count[ctx], 1);
+			}
+
+			for (int step = 0; step < 20000; step++) {
+				int ctx = rng.nextInt(context_count);
+				int symbol = rng.nextInt(1 + rng.nextInt(symbol_count));
+
+				model.update(ctx, symbol);
+				count[ctx][symbol] += increment;
+				if (PrefixSumCalculator.prefix_sum_int(count[ctx])[symbol_count] > max_total_count) {
+					for (int s = 0; s < symbol_count; s++) {
+						count[ctx][s] = (count[ctx][s] + 1) >>> 1;
+					}
+				}
+
+				int[] cum_count = PrefixSumCalculator.prefix_sum_int(count[ctx]);
+				assertEquals(cum_count[symbol_count], model.total_count(ctx));
+
+				int s = rng.nextInt(symbol_count);
+				assertEquals(cum_count[s], model.cum_count(ctx, s));
+				assertEquals(count[ctx][s], model.count(ctx, s));
+
+				int cum = rng.nextInt(model.total_count(ctx));
+				int found = model.symbol(ctx, cum);
+				assertTrue(cum_count[found] <= cum && cum < cum_count[found + 1]);
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AdaptiveRangeCoderTest {
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			singleRoundTripTest(seed);
+		}
+	}
+
+	public void singleRoundTripTest(int seed) {
+		Random rng = new Random(seed);
+
+		int[] count = new int[2 + rng.nextInt(255)];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(24));
+		}
+		count[rng.nextInt(count.length)] += 2;
+
+		int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+		int increment = 1 + rng.nextInt(64);
+		int max_total_count = 1 << (10 + rng.nextInt(15));
+
+		byte[] encoded = CoderTestUtil.encode(
+				new AdaptiveRangeCoder(new AdaptiveSymbolModel(count.length, increment, max_total_count)), msg);
+		int[] decoded = CoderTestUtil.decode(
+				new AdaptiveRangeCoder(new AdaptiveSymbolModel(count.length, increment, max_total_count)), encoded,
+				msg.length);
+
+		assertArrayEquals("seed " + seed, msg, decoded);
+	}
+
+	/**
+	 * With statistics changing halfway through the message, the adaptive coder
+	 * beats a static one using the histogram of the whole message.
+	 */
+	@Test
+	public void changingStatisticsTest() {
+		Random rng = new Random(0);
+
+		int[] msg = new int[100000];
+		for (int i = 0; i < msg.length; i++) {
+			msg[i] = rng.nextInt(16) + ((i < msg.length / 2) ? 0 : 16);
+		}
+
+		int[] count = new int[32];
+		for (int i = 0; i < msg.length; i++) {
+			count[msg[i]]++;
+		}
+
+		byte[] encoded_static = CoderTestUtil.encode(new RangeCoder(new SymbolProbabilityDistribution(count)), msg);
+		byte[] encoded_adaptive = CoderTestUtil.encode(new AdaptiveRangeCoder(32), msg);
+
+		// static: 5 bits per symbol, adaptive: close to 4
+		assertTrue(encoded_adaptive.length < encoded_static.length * 0.85);
+
+		int[] decoded = CoderTestUtil.decode(new AdaptiveRangeCoder(32), encoded_adaptive, msg.length);
+		assertArrayEquals(msg, decoded);
+	}
+}
@@ -0,0 +1,58 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AdaptiveSymbolModelTest {
+
+	/**
+	 * Compares the tree against plain prefix sums over count after random
+	 * updates, including several rescales.
+	 */
+	@Test
+	public void cumCountAndSymbolTest() {
+		Random rng = new Random(0);
+
+		for (int symbol_count : new int[]{2, 3, 7, 8, 9, 256, 1000}) {
+			AdaptiveSymbolModel model = new AdaptiveSymbolModel(symbol_count, 1 + rng.nextInt(64), 1 << 12);
+
+			for (int step = 0; step < 20000; step++) {
+				model.update(rng.nextInt(1 + rng.nextInt(symbol_count)));
+
+				int[] cum_count = PrefixSumCalculator.prefix_sum_int(model.count);
+				assertEquals(cum_count[symbol_count], model.total_count());
+				assertTrue(model.total_count() <= model.max_total_count);
+
+				int symbol = rng.nextInt(symbol_count);
+				assertEquals(cum_count[symbol], model.cum_count(symbol));
+
+				int cum = rng.nextInt(model.total_count());
+				int found = model.symbol(cum);
+				assertTrue(cum_count[found] <= cum && cum < cum_count[found + 1]);
+			}
+		}
+	}
+
+	@Test
+	public void rescaleKeepsSymbolsTest() {
+		AdaptiveSymbolModel model = new AdaptiveSymbolModel(4, 100, 1000);
+
+		for (int i = 0; i < 1000; i++) {
+			model.update(2);
+		}
+
+		for (int symbol = 0; symbol < 4; symbol++) {
+			assertTrue(model.count(symbol) >= 1);
+		}
+		assertTrue(model.count(2) > model.total_count() / 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void incrementTooLargeTest() {
+		new AdaptiveSymbolModel(256, 1 << 16, 1 << 16);
+	}
+}
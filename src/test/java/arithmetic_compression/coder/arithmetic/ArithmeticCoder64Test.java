@@ -0,0 +1,54 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ArithmeticCoder64Test {
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			singleRoundTripTest(seed);
+		}
+	}
+
+	public void singleRoundTripTest(int seed) {
+		Random rng = new Random(seed);
+
+		int[] count = new int[1 + rng.nextInt(256)];
+		for (int i = 0; i < count.length; i++) {
+			// some zero counts, mostly skewed ones
+			count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(20));
+		}
+		count[rng.nextInt(count.length)] += 2;
+
+		int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder64(dist), msg);
+		int[] decoded = CoderTestUtil.decode(new ArithmeticCoder64(dist), encoded, msg.length);
+
+		assertArrayEquals("seed " + seed, msg, decoded);
+	}
+
+	@Test
+	public void compressionRatioTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{1000, 300, 100, 30, 10, 3, 1, 1};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 100000);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded64 = CoderTestUtil.encode(new ArithmeticCoder64(dist), msg);
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder(dist), msg);
+
+		assertTrue("long coder output " + encoded64.length + " not close to int coder output " + encoded.length,
+				encoded64.length < encoded.length * 1.001 + 16);
+	}
+}
@@ -68,4 +68,55 @@ public class ArithmeticCoderTest {
 		assertEquals(expected, actual);
 	}
 
+	/**
+	 * The middle symbol covers the middle half of the range, so each one
+	 * coded is an E3 scaling and the runs of pending bits get as long as the
+	 * runs of the symbol: 40, 100 and 33 here. The expected output was
+	 * written by the coder as it was before it emitted pending bits as runs.
+	 */
+	@Test
+	public void e3RunsTest() {
+		int[] count = new int[]{1, 2, 1};
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		StringBuilder msg = new StringBuilder();
+		append_run(msg, '1', 40);
+		msg.append('0');
+		append_run(msg, '1', 100);
+		msg.append('2');
+		append_run(msg, '1', 33);
+		msg.append('0');
+
+		ArithmeticCoder ac = new ArithmeticCoder(dist);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(baos);
+
+		for (int i = 0; i < msg.length(); i++) {
+			ac.encode(msg.charAt(i) - '0', bos);
+		}
+
+		ac.finish_encoding(bos);
+		bos.flushAll();
+		byte[] a = baos.toByteArray();
+
+		assertEquals("01111111 11111111 11111111 11111111 11111111 10100000 00000000 00000000 00000000 00000000 "
+				+ "00000000 00000000 00000000 00000000 00000000 00000000 00000000 00000001 01111111 11111111 "
+				+ "11111111 11111111 11000000", BinaryFormatter.toBinStrLE(a));
+
+		BitInputStream bis = new BitInputStream(new ByteArrayInputStream(a));
+		ac.start_decoding(bis);
+		char[] result = new char[msg.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (char) ('0' + ac.decode(bis));
+		}
+
+		assertEquals(msg.toString(), new String(result));
+	}
+
+	private static void append_run(StringBuilder msg, char symbol, int count) {
+		for (int i = 0; i < count; i++) {
+			msg.append(symbol);
+		}
+	}
 }
@@ -0,0 +1,73 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+public class BinaryArithmeticCoderTest {
+
+	/**
+	 * Bits which are 1 with probability p1, coded with a single probability
+	 * entry. Returns the size of the encoded data in bytes.
+	 */
+	private int roundTrip(Random rng, double p1, int len, int adapt_shift) {
+		int[] bits = new int[len];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = (rng.nextDouble() < p1) ? 1 : 0;
+		}
+
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		BitOutputStream sink = new BitOutputStream(byteStream);
+		BinaryArithmeticCoder encoder = new BinaryArithmeticCoder(adapt_shift);
+		char[] probs = BinaryArithmeticCoder.new_probs(1);
+		for (int i = 0; i < bits.length; i++) {
+			encoder.encode_bit(probs, 0, bits[i], sink);
+		}
+		encoder.finish_encoding(sink);
+		sink.flushAll();
+		byte[] encoded = byteStream.toByteArray();
+
+		BitInputStream source = new BitInputStream(new ByteArrayInputStream(encoded));
+		BinaryArithmeticCoder decoder = new BinaryArithmeticCoder(adapt_shift);
+		probs = BinaryArithmeticCoder.new_probs(1);
+		decoder.start_decoding(source);
+		int[] decoded = new int[len];
+		for (int i = 0; i < decoded.length; i++) {
+			decoded[i] = decoder.decode_bit(probs, 0, source);
+		}
+
+		assertArrayEquals("p1 " + p1 + ", adapt_shift " + adapt_shift, bits, decoded);
+
+		return encoded.length;
+	}
+
+	@Test
+	public void roundTripTest() {
+		Random rng = new Random(0);
+		for (int adapt_shift = 1; adapt_shift < BinaryArithmeticCoder.PROB_BITS; adapt_shift++) {
+			for (double p1 : new double[]{0.0, 0.001, 0.1, 0.5, 0.9, 0.999, 1.0}) {
+				roundTrip(rng, p1, rng.nextInt(10000), adapt_shift);
+			}
+		}
+	}
+
+	/**
+	 * With p1 = 0.1, the entropy is 0.469 bits per bit. The adaptive estimate
+	 * fluctuates around p1, which costs a few percent.
+	 */
+	@Test
+	public void compressionTest() {
+		int len = 100000;
+		int size = roundTrip(new Random(0), 0.1, len, 5);
+
+		assertTrue(size * 8.0 / len < 0.469 * 1.05);
+	}
+}
@@ -0,0 +1,38 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitTreeCoderTest {
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			singleRoundTripTest(seed);
+		}
+	}
+
+	public void singleRoundTripTest(int seed) {
+		Random rng = new Random(seed);
+
+		int symbol_bits = 1 + rng.nextInt(12);
+
+		int[] count = new int[1 << symbol_bits];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(24));
+		}
+		count[rng.nextInt(count.length)] += 2;
+
+		int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+		int adapt_shift = 1 + rng.nextInt(BinaryArithmeticCoder.PROB_BITS - 1);
+
+		byte[] encoded = CoderTestUtil.encode(new BitTreeCoder(symbol_bits, adapt_shift), msg);
+		int[] decoded = CoderTestUtil.decode(new BitTreeCoder(symbol_bits, adapt_shift), encoded, msg.length);
+
+		assertArrayEquals("seed " + seed, msg, decoded);
+	}
+}
@@ -0,0 +1,56 @@
+package arithmetic_compression.coder.arithmetic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import arithmetic_compression.io.BitInputStream;
+import arithmetic_compression.io.BitOutputStream;
+
+/**
+ * Helpers shared by the round trip tests of the {@link EntropyCoder}s.
+ */
+public class CoderTestUtil {
+
+	public static int[] randomMessage(Random rng, int[] count, int len) {
+		int[] cum_count = PrefixSumCalculator.prefix_sum_int(count);
+		int total = cum_count[cum_count.length - 1];
+
+		int[] msg = new int[len];
+		for (int i = 0; i < msg.length; i++) {
+			int r = rng.nextInt(total);
+			int symbol = 0;
+			while (cum_count[symbol + 1] <= r) {
+				symbol++;
+			}
+			msg[i] = symbol;
+		}
+
+		return msg;
+	}
+
+	public static byte[] encode(EntropyCoder coder, int[] msg) {
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		BitOutputStream bitStream = new BitOutputStream(byteStream);
+
+		for (int i = 0; i < msg.length; i++) {
+			coder.encode(msg[i], bitStream);
+		}
+		coder.finish_encoding(bitStream);
+		bitStream.flushAll();
+
+		return byteStream.toByteArray();
+	}
+
+	public static int[] decode(EntropyCoder coder, byte[] encoded, int len) {
+		BitInputStream bitStream = new BitInputStream(new ByteArrayInputStream(encoded));
+
+		coder.start_decoding(bitStream);
+		int[] decoded = new int[len];
+		for (int i = 0; i < decoded.length; i++) {
+			decoded[i] = coder.decode(bitStream);
+		}
+
+		return decoded;
+	}
+}
@@ -0,0 +1,75 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.io.BitOutputStream;
+
+public class CodingStatsTest {
+
+	@Test
+	public void countersTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{1000, 300, 100, 30, 10, 3, 1, 1};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 100000);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		CodingStats stats = new CodingStats();
+		ArithmeticCoder coder = new ArithmeticCoder(dist);
+		coder.set_stats(stats);
+
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		BitOutputStream bitStream = new BitOutputStream(byteStream);
+
+		long write_count = 0;
+		for (int symbol : msg) {
+			write_count += coder.encode(symbol, bitStream);
+		}
+		write_count += coder.finish_encoding(bitStream);
+		bitStream.flushAll();
+
+		assertEquals(1, stats.stream_count());
+		assertEquals(msg.length, stats.symbol_count());
+		assertEquals(write_count, stats.bit_count());
+		assertEquals((write_count + 7) / 8, byteStream.size());
+
+		// every bit written goes through one renormalization step, plus the
+		// word written by finish_encoding(...)
+		assertEquals(stats.renormalization_count() + coder.wordSize, stats.bit_count());
+
+		assertTrue(stats.e3_scaling_count() > 0);
+		assertTrue(stats.max_pending_bits() > 0);
+
+		assertTrue(stats.toString(), stats.bit_count() >= stats.entropy_bound());
+		assertTrue(stats.toString(), stats.overhead() < 0.001);
+
+		// the stats don't change the output
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder(dist), msg);
+		assertArrayEquals(encoded, byteStream.toByteArray());
+	}
+
+	@Test
+	public void entropyBoundTest() {
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(new int[]{1, 1, 2});
+
+		CodingStats stats = new CodingStats();
+		stats.start(dist);
+		stats.symbol(0, 0, 0, 0, 0);
+		stats.symbol(2, 0, 0, 0, 0);
+		stats.symbol(2, 0, 0, 0, 0);
+
+		assertEquals(2 + 1 + 1, stats.entropy_bound(), 1e-9);
+
+		stats.reset();
+		assertEquals(0, stats.symbol_count());
+		assertEquals(0, stats.entropy_bound(), 0);
+	}
+}
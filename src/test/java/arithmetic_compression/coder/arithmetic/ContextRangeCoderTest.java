@@ -0,0 +1,100 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ContextRangeCoderTest {
+
+	/**
+	 * Bytes where each one is close to the previous one, i.e. with a strong
+	 * order-1 correlation.
+	 */
+	private static byte[] correlatedData(Random rng, int len) {
+		byte[] data = new byte[len];
+		int prev = 0;
+		for (int i = 0; i < data.length; i++) {
+			prev = (prev + rng.nextInt(5) - 2) & 0xff;
+			data[i] = (byte) prev;
+		}
+		return data;
+	}
+
+	private static int[] symbols(byte[] data) {
+		int[] msg = new int[data.length];
+		for (int i = 0; i < msg.length; i++) {
+			msg[i] = data[i] & 0xff;
+		}
+		return msg;
+	}
+
+	@Test
+	public void roundTripTest() {
+		Random rng = new Random(0);
+
+		SymbolContext[] contexts = new SymbolContext[]{ //
+				new SymbolContext(256, 0), //
+				new SymbolContext(256, 1), //
+				new SymbolContext(256, 2, 3, 16), //
+				new SymbolContext(256, 0, 3, 256), //
+		};
+
+		for (SymbolContext context : contexts) {
+			byte[] data = correlatedData(rng, 20000);
+			int[] msg = symbols(data);
+
+			ContextModel static_model = new StaticContextModel(StaticContextModel.histogram(data, context));
+			byte[] encoded = CoderTestUtil.encode(new ContextRangeCoder(static_model, context), msg);
+			int[] decoded = CoderTestUtil.decode(new ContextRangeCoder(static_model, context), encoded, msg.length);
+			assertArrayEquals(context.toString(), msg, decoded);
+
+			encoded = CoderTestUtil.encode(
+					new ContextRangeCoder(new AdaptiveContextModel(context.context_count(), 256), context), msg);
+			decoded = CoderTestUtil.decode(
+					new ContextRangeCoder(new AdaptiveContextModel(context.context_count(), 256), context), encoded,
+					msg.length);
+			assertArrayEquals(context.toString(), msg, decoded);
+		}
+	}
+
+	/**
+	 * Symbols in contexts the static model never saw, here all after the
+	 * first three, must still be codable, which requires the uniform fallback
+	 * for empty contexts.
+	 */
+	@Test
+	public void unseenContextTest() {
+		SymbolContext context = new SymbolContext(256, 1);
+		ContextModel model = new StaticContextModel(StaticContextModel.histogram(new byte[]{1, 2, 3}, context));
+
+		int[] msg = new int[]{1, 2, 3, 200, 100, 7};
+		byte[] encoded = CoderTestUtil.encode(new ContextRangeCoder(model, context), msg);
+		int[] decoded = CoderTestUtil.decode(new ContextRangeCoder(model, context), encoded, msg.length);
+
+		assertArrayEquals(msg, decoded);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void symbolNotInStaticModelTest() {
+		SymbolContext context = new SymbolContext(256, 1);
+		ContextModel model = new StaticContextModel(StaticContextModel.histogram(new byte[]{1, 2, 3}, context));
+
+		CoderTestUtil.encode(new ContextRangeCoder(model, context), new int[]{2});
+	}
+
+	@Test
+	public void order1BeatsOrder0Test() {
+		byte[] data = correlatedData(new Random(0), 100000);
+		int[] msg = symbols(data);
+
+		byte[] order0 = CoderTestUtil.encode(new AdaptiveRangeCoder(256), msg);
+		byte[] order1 = CoderTestUtil.encode(
+				new ContextRangeCoder(new AdaptiveContextModel(256, 256), new SymbolContext(256, 1)), msg);
+
+		// order 0: about 7 bits per symbol, order 1: close to log2(5)
+		assertTrue(order1.length < order0.length / 2);
+	}
+}
@@ -0,0 +1,61 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.io.BitInputStream;
+
+public class InterleavedRansCoderTest {
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			for (int state_count = 1; state_count <= 8; state_count <<= 1) {
+				singleRoundTripTest(seed, state_count);
+			}
+		}
+	}
+
+	public void singleRoundTripTest(int seed, int state_count) {
+		Random rng = new Random(seed);
+
+		int[] count = new int[1 + rng.nextInt(256)];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(20));
+		}
+		count[rng.nextInt(count.length)] += 2;
+
+		int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded = CoderTestUtil.encode(new InterleavedRansCoder(dist, state_count), msg);
+		int[] decoded = CoderTestUtil.decode(new InterleavedRansCoder(dist, state_count), encoded, msg.length);
+
+		assertArrayEquals("seed " + seed + ", state_count " + state_count, msg, decoded);
+
+		// bulk decoding, split into chunks of random length to cover the
+		// alignment to the next state
+		InterleavedRansCoder coder = new InterleavedRansCoder(dist, state_count);
+		BitInputStream bitStream = new BitInputStream(new ByteArrayInputStream(encoded));
+		coder.start_decoding(bitStream);
+
+		byte[] decodedBytes = new byte[msg.length];
+		for (int off = 0; off < msg.length;) {
+			int len = Math.min(msg.length - off, rng.nextInt(40));
+			coder.decode(decodedBytes, off, len, bitStream);
+			off += len;
+		}
+
+		byte[] msgBytes = new byte[msg.length];
+		for (int i = 0; i < msg.length; i++) {
+			msgBytes[i] = (byte) msg[i];
+		}
+
+		assertArrayEquals("bulk, seed " + seed + ", state_count " + state_count, msgBytes, decodedBytes);
+	}
+}
@@ -0,0 +1,67 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.mixing.ContextMixingCoder;
+
+public class MaxEncodedSizeTest {
+
+	/**
+	 * Encodes the least likely symbol over and over, and a random message, and
+	 * checks both against the bound.
+	 */
+	private void check(String name, Supplier<EntropyCoder> factory, int rare_symbol, int symbol_count) {
+		Random rng = new Random(0);
+
+		for (int len : new int[]{0, 1, 2, 100, 5000}) {
+			int[] rare = new int[len];
+			Arrays.fill(rare, rare_symbol);
+
+			int[] random = new int[len];
+			for (int i = 0; i < len; i++) {
+				random[i] = rng.nextInt(symbol_count);
+			}
+
+			for (int[] msg : new int[][]{rare, random}) {
+				EntropyCoder coder = factory.get();
+				int size = CoderTestUtil.encode(coder, msg).length;
+				long bound = factory.get().max_encoded_size(len);
+				assertTrue(name + ", " + len + " symbols: " + size + " > " + bound, size <= bound);
+			}
+		}
+	}
+
+	@Test
+	public void staticDistributionTest() {
+		for (int total_bits : new int[]{1, 8, 15, 20, 27}) {
+			int[] count = new int[256];
+			Arrays.fill(count, 1);
+			count[7] = (1 << total_bits) - 255;
+			if (total_bits < 8) {
+				count = new int[]{1, 1};
+			}
+			SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+			for (EntropyCoderType type : EntropyCoderType.values()) {
+				check(type + ", total 2^" + total_bits, () -> type.create(dist), 0, count.length);
+			}
+			check("PerfectArithmeticCoder, total 2^" + total_bits, () -> new PerfectArithmeticCoder(dist), 0,
+					count.length);
+		}
+	}
+
+	@Test
+	public void adaptiveTest() {
+		check("AdaptiveRangeCoder", () -> new AdaptiveRangeCoder(256), 0, 256);
+		check("BitTreeCoder", () -> new BitTreeCoder(8, 1), 0, 256);
+		check("ContextRangeCoder",
+				() -> new ContextRangeCoder(new AdaptiveContextModel(256, 256), new SymbolContext(256, 1)), 0, 256);
+		check("ContextMixingCoder", () -> new ContextMixingCoder(1, true), 0, 256);
+	}
+}
@@ -1,9 +1,12 @@
 package arithmetic_compression.coder.arithmetic;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -71,7 +74,88 @@ public class PerfectArithmeticCoderTest {
 		System.out.println("write_count: " + write_count);
 		System.out.println("output: " + binStr);
 
-		assertEquals("11000000", binStr);
+		// no E3 scaling, l and u grow to 13 bits while straddling the middle
+		assertEquals("01110110 01110000", binStr);
+
+		int[] decoded = CoderTestUtil.decode(new PerfectArithmeticCoder(dist), a, msg.length());
+		for (int i = 0; i < msg.length(); i++) {
+			assertEquals(msg.charAt(i) - '0', decoded[i]);
+		}
+	}
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			Random rng = new Random(seed);
+
+			int[] count = new int[1 + rng.nextInt(256)];
+			for (int i = 0; i < count.length; i++) {
+				count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(24));
+			}
+			count[rng.nextInt(count.length)] += 2;
+
+			int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+			SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+			byte[] encoded = CoderTestUtil.encode(new PerfectArithmeticCoder(dist), msg);
+			int[] decoded = CoderTestUtil.decode(new PerfectArithmeticCoder(dist), encoded, msg.length);
+
+			assertArrayEquals("seed " + seed, msg, decoded);
+		}
+	}
+
+	/**
+	 * Picks each symbol such that the interval keeps straddling the middle,
+	 * so l and u grow over many limbs before any bit is written.
+	 */
+	@Test
+	public void straddleTest() {
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(new int[]{5, 3, 7, 2});
+		SymbolLookupTable lookup = dist.symbol_lookup_table();
+
+		PerfectArithmeticCoder encoder = new PerfectArithmeticCoder(dist);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BitOutputStream bos = new BitOutputStream(baos);
+
+		int[] msg = new int[3000];
+		int max_msb_idx = 0;
+		for (int i = 0; i < msg.length; i++) {
+			// the symbol containing the middle, same as the decoder would find
+			// for a tag at the middle
+			long d = encoder.u[0] - encoder.l[0] + 1;
+			long middle = (encoder.luMsbIdx < 64 ? 1L << encoder.luMsbIdx : 0) - encoder.l[0];
+			int k = Math.max(0, encoder.wordSize - (64 - Long.numberOfLeadingZeros(d)));
+			long target = ((middle << k) + 1) * dist.total_count - 1;
+			msg[i] = lookup.symbol((int) (target / (d << k)));
+
+			encoder.encode(msg[i], bos);
+			max_msb_idx = Math.max(max_msb_idx, encoder.luMsbIdx);
+		}
+		encoder.finish_encoding(bos);
+		bos.flushAll();
+
+		assertTrue("l and u only grew to " + (max_msb_idx + 1) + " bits", max_msb_idx > 1000);
+
+		int[] decoded = CoderTestUtil.decode(new PerfectArithmeticCoder(dist), baos.toByteArray(), msg.length);
+
+		assertArrayEquals(msg, decoded);
+	}
+
+	@Test
+	public void sameAsArithmeticCoderRatioTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{1000, 300, 100, 30, 10, 3, 1, 1};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 100000);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encodedPerfect = CoderTestUtil.encode(new PerfectArithmeticCoder(dist), msg);
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder(dist), msg);
+
+		assertTrue("perfect coder output " + encodedPerfect.length + " not close to arithmetic coder output "
+				+ encoded.length, Math.abs(encodedPerfect.length - encoded.length) < encoded.length * 0.001 + 16);
 	}
 
 	// @Test
@@ -0,0 +1,76 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RangeCoderTest {
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			singleRoundTripTest(seed);
+		}
+	}
+
+	public void singleRoundTripTest(int seed) {
+		Random rng = new Random(seed);
+
+		int[] count = new int[1 + rng.nextInt(256)];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(24));
+		}
+		count[rng.nextInt(count.length)] += 2;
+
+		int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded = CoderTestUtil.encode(new RangeCoder(dist), msg);
+		int[] decoded = CoderTestUtil.decode(new RangeCoder(dist), encoded, msg.length);
+
+		assertArrayEquals("seed " + seed, msg, decoded);
+	}
+
+	/**
+	 * Coding the middle symbol of a distribution with a huge total keeps the
+	 * interval close to the midpoint for long runs, which is where
+	 * {@link ArithmeticCoder} piles up E3 scalings and the range coder has to
+	 * hold back long runs of 0xff bytes and propagate carries into them.
+	 */
+	@Test
+	public void midpointRunTest() {
+		int[] count = new int[]{1, Integer.MAX_VALUE - 2, 1};
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		int[] msg = new int[1000000];
+		Arrays.fill(msg, 1);
+		msg[msg.length / 2] = 0;
+		msg[msg.length - 1] = 2;
+
+		byte[] encoded = CoderTestUtil.encode(new RangeCoder(dist), msg);
+		int[] decoded = CoderTestUtil.decode(new RangeCoder(dist), encoded, msg.length);
+
+		assertArrayEquals(msg, decoded);
+	}
+
+	@Test
+	public void compressionRatioTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{1000, 300, 100, 30, 10, 3, 1, 1};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 100000);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encodedRange = CoderTestUtil.encode(new RangeCoder(dist), msg);
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder(dist), msg);
+
+		assertTrue("range coder output " + encodedRange.length + " not close to arithmetic coder output "
+				+ encoded.length, encodedRange.length < encoded.length * 1.001 + 16);
+	}
+}
@@ -0,0 +1,69 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RansCoderTest {
+
+	@Test
+	public void roundTripTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			singleRoundTripTest(seed);
+		}
+	}
+
+	public void singleRoundTripTest(int seed) {
+		Random rng = new Random(seed);
+
+		int[] count = new int[1 + rng.nextInt(256)];
+		for (int i = 0; i < count.length; i++) {
+			// some zero counts, mostly skewed ones
+			count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(20));
+		}
+		count[rng.nextInt(count.length)] += 2;
+
+		int[] msg = CoderTestUtil.randomMessage(rng, count, rng.nextInt(5000));
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded = CoderTestUtil.encode(new RansCoder(dist), msg);
+		int[] decoded = CoderTestUtil.decode(new RansCoder(dist), encoded, msg.length);
+
+		assertArrayEquals("seed " + seed, msg, decoded);
+	}
+
+	@Test
+	public void singleUsedSymbolTest() {
+		int[] count = new int[]{0, 1 << 20, 0};
+		int[] msg = new int[100000];
+		Arrays.fill(msg, 1);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded = CoderTestUtil.encode(new RansCoder(dist), msg);
+		int[] decoded = CoderTestUtil.decode(new RansCoder(dist), encoded, msg.length);
+
+		assertArrayEquals(msg, decoded);
+	}
+
+	@Test
+	public void compressionRatioTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{1000, 300, 100, 30, 10, 3, 1, 1};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 100000);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encodedRans = CoderTestUtil.encode(new RansCoder(dist), msg);
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder(dist), msg);
+
+		assertTrue("rANS output " + encodedRans.length + " not close to arithmetic coder output " + encoded.length,
+				encodedRans.length < encoded.length * 1.001 + 16);
+	}
+}
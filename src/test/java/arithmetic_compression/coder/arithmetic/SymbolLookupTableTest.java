@@ -0,0 +1,52 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SymbolLookupTableTest {
+
+	@Test
+	public void directTest() {
+		SymbolLookupTable table = checkedTable(new int[]{3, 0, 0, 5, 1, 0, 7});
+		assertNotNull(table.direct);
+	}
+
+	@Test
+	public void bucketedTest() {
+		SymbolLookupTable table = checkedTable(new int[]{3, 0, SymbolLookupTable.MAX_DIRECT_TOTAL_COUNT, 0, 5, 1});
+		assertNull(table.direct);
+	}
+
+	@Test
+	public void randomTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			Random rng = new Random(seed);
+
+			int[] count = new int[1 + rng.nextInt(300)];
+			for (int i = 0; i < count.length; i++) {
+				count[i] = (rng.nextInt(4) == 0) ? 0 : rng.nextInt(1 << rng.nextInt(16));
+			}
+			count[rng.nextInt(count.length)]++;
+
+			checkedTable(count);
+		}
+	}
+
+	private static SymbolLookupTable checkedTable(int[] count) {
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+		SymbolLookupTable table = new SymbolLookupTable(dist);
+
+		for (int symbol = 0, cum = 0; symbol < count.length; symbol++) {
+			for (int i = 0; i < count[symbol]; i++, cum++) {
+				assertEquals("cum " + cum, symbol, table.symbol(cum));
+			}
+		}
+
+		return table;
+	}
+}
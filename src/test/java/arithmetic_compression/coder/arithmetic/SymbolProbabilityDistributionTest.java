@@ -0,0 +1,94 @@
+package arithmetic_compression.coder.arithmetic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SymbolProbabilityDistributionTest {
+
+	@Test
+	public void normalizedTest() {
+		for (int seed = 0; seed < 100; seed++) {
+			Random rng = new Random(seed);
+
+			int[] count = new int[1 + rng.nextInt(256)];
+			for (int i = 0; i < count.length; i++) {
+				count[i] = (rng.nextInt(4) == 0) ? 0 : 1 + rng.nextInt(1 << rng.nextInt(24));
+			}
+			count[rng.nextInt(count.length)]++;
+
+			int total_bits = 9 + rng.nextInt(20);
+
+			SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+			SymbolProbabilityDistribution normalized = dist.normalized(total_bits);
+
+			assertEquals(1 << total_bits, normalized.total_count);
+			assertEquals(total_bits, normalized.total_count_shift());
+
+			double bits = 0;
+			double bitsNormalized = 0;
+			for (int symbol = 0; symbol < count.length; symbol++) {
+				int countNormalized = normalized.cum_count[symbol + 1] - normalized.cum_count[symbol];
+
+				assertEquals("symbol " + symbol + " used in one and not in the other", count[symbol] == 0,
+						countNormalized == 0);
+
+				if (count[symbol] > 0) {
+					bits -= count[symbol] * Math.log(((double) count[symbol]) / dist.total_count);
+					bitsNormalized -= count[symbol] * Math.log(((double) countNormalized) / normalized.total_count);
+				}
+			}
+
+			if (total_bits >= 16) {
+				assertTrue("seed " + seed + ": coding loss " + bitsNormalized / bits,
+						bitsNormalized <= bits * 1.001 + 1);
+			}
+		}
+	}
+
+	@Test
+	public void normalizedKeepsRareSymbolsTest() {
+		int[] count = new int[]{1, 1000000, 1, 0, 1};
+
+		SymbolProbabilityDistribution normalized = new SymbolProbabilityDistribution(count).normalized(4);
+
+		assertArrayEquals(new int[]{0, 1, 14, 15, 15, 16}, normalized.cum_count);
+	}
+
+	@Test
+	public void normalizedRoundTripTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{1000, 300, 100, 30, 10, 3, 1, 0, 1};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 10000);
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count).normalized(12);
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			byte[] encoded = CoderTestUtil.encode(type.create(dist), msg);
+			int[] decoded = CoderTestUtil.decode(type.create(dist), encoded, msg.length);
+
+			assertArrayEquals(type.toString(), msg, decoded);
+		}
+	}
+
+	@Test
+	public void oversizedTotalCountTest() {
+		Random rng = new Random(0);
+
+		int[] count = new int[]{Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 4, 1, Integer.MAX_VALUE / 8};
+		int[] msg = CoderTestUtil.randomMessage(rng, count, 10000);
+		msg[5000] = 2;
+
+		SymbolProbabilityDistribution dist = new SymbolProbabilityDistribution(count);
+
+		byte[] encoded = CoderTestUtil.encode(new ArithmeticCoder(dist), msg);
+		int[] decoded = CoderTestUtil.decode(new ArithmeticCoder(dist), encoded, msg.length);
+
+		assertArrayEquals(msg, decoded);
+	}
+}
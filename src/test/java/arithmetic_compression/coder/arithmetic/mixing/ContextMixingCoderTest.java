@@ -0,0 +1,60 @@
+package arithmetic_compression.coder.arithmetic.mixing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.BitTreeCoder;
+import arithmetic_compression.coder.arithmetic.CoderTestUtil;
+
+public class ContextMixingCoderTest {
+
+	/**
+	 * Three interleaved channels, each a random walk of its own.
+	 */
+	private static int[] channelData(Random rng, int len) {
+		int[] msg = new int[len];
+		int[] prev = new int[3];
+		for (int i = 0; i < msg.length; i++) {
+			int channel = i % 3;
+			prev[channel] = (prev[channel] + rng.nextInt(3 + 2 * channel) - 1 - channel) & 0xff;
+			msg[i] = prev[channel];
+		}
+		return msg;
+	}
+
+	@Test
+	public void roundTripTest() {
+		Random rng = new Random(0);
+
+		for (int channel_count : new int[]{1, 3}) {
+			for (boolean use_apm : new boolean[]{false, true}) {
+				int[] msg = new int[rng.nextInt(20000)];
+				for (int i = 0; i < msg.length; i++) {
+					msg[i] = (rng.nextInt(3) == 0) ? rng.nextInt(256) : (i * 7) & 0xff;
+				}
+
+				byte[] encoded = CoderTestUtil.encode(new ContextMixingCoder(channel_count, use_apm), msg);
+				int[] decoded = CoderTestUtil.decode(new ContextMixingCoder(channel_count, use_apm), encoded, msg.length);
+
+				assertArrayEquals("channel_count " + channel_count + ", apm " + use_apm, msg, decoded);
+			}
+		}
+	}
+
+	@Test
+	public void beatsOrder0Test() {
+		int[] msg = channelData(new Random(0), 100000);
+
+		byte[] order0 = CoderTestUtil.encode(new BitTreeCoder(8), msg);
+		byte[] mixed = CoderTestUtil.encode(new ContextMixingCoder(3, true), msg);
+
+		assertTrue(mixed.length < order0.length / 2);
+
+		int[] decoded = CoderTestUtil.decode(new ContextMixingCoder(3, true), mixed, msg.length);
+		assertArrayEquals(msg, decoded);
+	}
+}
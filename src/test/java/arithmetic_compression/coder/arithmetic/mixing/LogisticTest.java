@@ -0,0 +1,29 @@
+package arithmetic_compression.coder.arithmetic.mixing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LogisticTest {
+
+	@Test
+	public void squashStretchTest() {
+		for (int p = 1; p < 4096; p++) {
+			assertEquals("p " + p, p, Logistic.squash(Logistic.stretch(p)), 1 + p / 64);
+		}
+	}
+
+	@Test
+	public void monotonicTest() {
+		for (int p = 1; p < 4096; p++) {
+			assertTrue(Logistic.stretch(p - 1) <= Logistic.stretch(p));
+		}
+		for (int x = -3000; x < 3000; x++) {
+			int p = Logistic.squash(x);
+			assertTrue(p >= 1 && p <= 4095);
+			assertTrue(Logistic.squash(x - 1) <= p);
+		}
+		assertEquals(2048, Logistic.squash(0));
+	}
+}
@@ -0,0 +1,197 @@
+package arithmetic_compression.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+
+public class ArithmeticChannelsTest {
+
+	@Test
+	public void channelRoundTripTest() throws IOException {
+		for (int len : new int[]{0, 1, 1000, 25000}) {
+			byte[] data = data(len, len);
+
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			long size = ArithmeticChannels.compress(Channels.newChannel(new ByteArrayInputStream(data)),
+					Channels.newChannel(compressed), EntropyCoderType.RANGE, 1000);
+			assertEquals(compressed.size(), size);
+
+			// same format as the streams
+			assertArrayEquals(compressed.toByteArray(),
+					ArithmeticStreamTest.compress(data, 1000, new Random(len)));
+
+			ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+			assertEquals(len, ArithmeticChannels.decompress(
+					Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())),
+					Channels.newChannel(decompressed)));
+			assertArrayEquals("len " + len, data, decompressed.toByteArray());
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void truncatedTest() throws IOException {
+		byte[] compressed = ArithmeticStreamTest.compress(data(5000, 1), 1000, new Random(2));
+
+		ArithmeticChannels.decompress(
+				Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length - 1))),
+				Channels.newChannel(new ByteArrayOutputStream()));
+	}
+
+	@Test(expected = IOException.class)
+	public void corruptModelTest() throws IOException {
+		byte[] compressed = ContainerTest.zero_model_container(10);
+
+		ArithmeticChannels.decompress(Channels.newChannel(new ByteArrayInputStream(compressed)),
+				Channels.newChannel(new ByteArrayOutputStream()));
+	}
+
+	/**
+	 * Fails as corrupt before allocating the block of about 2 GB the block
+	 * table claims, rather than as truncated after it.
+	 */
+	@Test
+	public void forgedBlockTableTest() throws InterruptedException {
+		byte[] compressed = ContainerTest.forged_block_table_container();
+
+		try {
+			ArithmeticChannels.decompress(Channels.newChannel(new ByteArrayInputStream(compressed)),
+					Channels.newChannel(new ByteArrayOutputStream()));
+			fail();
+		} catch (IOException e) {
+			assertFalse(e.toString(), e instanceof EOFException);
+		}
+	}
+
+	@Test
+	public void asyncForgedBlockTableTest() throws IOException, InterruptedException {
+		Path compressed = Files.createTempFile("data", ".acmp");
+		Path decompressed = Files.createTempFile("data", ".bin");
+		try {
+			Files.write(compressed, ContainerTest.forged_block_table_container());
+
+			try (AsynchronousFileChannel in = AsynchronousFileChannel.open(compressed, StandardOpenOption.READ);
+					AsynchronousFileChannel out = AsynchronousFileChannel.open(decompressed,
+							StandardOpenOption.WRITE)) {
+				ArithmeticChannels.decompress_async(in, out).get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().toString(),
+						e.getCause() instanceof IOException && !(e.getCause() instanceof EOFException));
+			}
+		} finally {
+			Files.delete(compressed);
+			Files.delete(decompressed);
+		}
+	}
+
+	/**
+	 * Fails without allocating the block table of 512 MiB the header claims.
+	 */
+	@Test(expected = EOFException.class)
+	public void hugeBlockTableTest() throws IOException {
+		byte[] compressed = ContainerTest.huge_block_table_header();
+
+		ArithmeticChannels.decompress(Channels.newChannel(new ByteArrayInputStream(compressed)),
+				Channels.newChannel(new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void asyncRoundTripTest() throws IOException, InterruptedException, ExecutionException {
+		Path src = Files.createTempFile("data", ".bin");
+		Path compressed = Files.createTempFile("data", ".acmp");
+		Path decompressed = Files.createTempFile("data", ".bin");
+		try {
+			for (int len : new int[]{0, 1, 1000, 25000}) {
+				byte[] data = data(len, len + 3);
+				Files.write(src, data);
+
+				try (AsynchronousFileChannel in = AsynchronousFileChannel.open(src, StandardOpenOption.READ);
+						AsynchronousFileChannel out = AsynchronousFileChannel.open(compressed,
+								StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					long size = ArithmeticChannels.compress_async(in, out, EntropyCoderType.RANS_X4, 1000,
+							Runnable::run).get();
+					assertEquals(out.size(), size);
+				}
+
+				try (AsynchronousFileChannel in = AsynchronousFileChannel.open(compressed, StandardOpenOption.READ);
+						AsynchronousFileChannel out = AsynchronousFileChannel.open(decompressed,
+								StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					assertEquals(len, (long) ArithmeticChannels.decompress_async(in, out).get());
+				}
+
+				assertArrayEquals("len " + len, data, Files.readAllBytes(decompressed));
+			}
+		} finally {
+			Files.delete(src);
+			Files.delete(compressed);
+			Files.delete(decompressed);
+		}
+	}
+
+	/**
+	 * Chunks of different sizes, so that the read ahead of the asynchronous
+	 * decompression is sometimes too short and sometimes too long.
+	 */
+	@Test
+	public void asyncVaryingChunksTest() throws IOException, InterruptedException, ExecutionException {
+		byte[] data = data(30000, 4);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ArithmeticCompressorOutputStream out = new ArithmeticCompressorOutputStream(bytes,
+				EntropyCoderType.RANGE, 4000)) {
+			Random rng = new Random(5);
+			int pos = 0;
+			while (pos < data.length) {
+				int n = Math.min(data.length - pos, rng.nextInt(6000));
+				out.write(data, pos, n);
+				out.finish();
+				pos += n;
+			}
+		}
+
+		Path compressed = Files.createTempFile("data", ".acmp");
+		Path decompressed = Files.createTempFile("data", ".bin");
+		try {
+			Files.write(compressed, bytes.toByteArray());
+
+			try (AsynchronousFileChannel in = AsynchronousFileChannel.open(compressed, StandardOpenOption.READ);
+					AsynchronousFileChannel out = AsynchronousFileChannel.open(decompressed,
+							StandardOpenOption.WRITE)) {
+				ArithmeticChannels.decompress_async(in, out).get();
+			}
+
+			assertArrayEquals(data, Files.readAllBytes(decompressed));
+		} finally {
+			Files.delete(compressed);
+			Files.delete(decompressed);
+		}
+	}
+
+	static byte[] data(int len, long seed) {
+		Random rng = new Random(seed);
+		byte[] data = new byte[len];
+		for (int i = 0; i < len; i++) {
+			data[i] = (byte) (rng.nextGaussian() * 8);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,146 @@
+package arithmetic_compression.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.io.EofUncheckedException;
+
+public class ArithmeticPushDecoderTest {
+
+	/**
+	 * Feeds the compressed data in random pieces, down to single bytes, and
+	 * decodes after each piece into a small buffer.
+	 */
+	@Test
+	public void randomPiecesTest() {
+		Random rng = new Random(0);
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			for (boolean block_models : new boolean[]{false, true}) {
+				byte[] data = ArithmeticChannelsTest.data(20000, type.ordinal());
+				// a stretch of a single symbol, which needs no coded data
+				Arrays.fill(data, 5000, 9000, (byte) 1);
+
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				ContainerEncoder encoder = new ContainerEncoder(type, 1000, block_models);
+				for (int off = 0; off < data.length; off += 4000) {
+					byte[] container = encoder.encode(data, off, 4000);
+					compressed.write(container, 0, container.length);
+				}
+
+				assertArrayEquals(type + ", block_models " + block_models, data,
+						push_decode(compressed.toByteArray(), rng));
+			}
+		}
+	}
+
+	@Test
+	public void streamFormatTest() throws Exception {
+		byte[] data = ArithmeticChannelsTest.data(30000, 1);
+		byte[] compressed = ArithmeticStreamTest.compress(data, 7000, new Random(2));
+
+		assertArrayEquals(data, push_decode(compressed, new Random(3)));
+	}
+
+	/**
+	 * Without end_of_input(), the last symbols can't be decoded, because
+	 * more data could follow which the coder might need.
+	 */
+	@Test
+	public void waitsForDataTest() {
+		byte[] data = ArithmeticChannelsTest.data(1000, 4);
+		byte[] compressed = new ContainerEncoder(EntropyCoderType.RANGE, 1000).encode(data);
+
+		ArithmeticPushDecoder decoder = new ArithmeticPushDecoder();
+		byte[] decoded = new byte[data.length];
+
+		decoder.feed(compressed, 0, 10);
+		assertEquals(0, decoder.decode(decoded, 0, decoded.length));
+
+		decoder.feed(compressed, 10, compressed.length - 10);
+		int n = decoder.decode(decoded, 0, decoded.length);
+		assertTrue(n <= data.length);
+
+		decoder.end_of_input();
+		while (n < data.length) {
+			n += decoder.decode(decoded, n, decoded.length - n);
+		}
+		assertEquals(-1, decoder.decode(decoded, 0, decoded.length));
+		assertTrue(decoder.is_finished());
+		assertArrayEquals(data, decoded);
+	}
+
+	@Test(expected = EofUncheckedException.class)
+	public void truncatedTest() {
+		byte[] compressed = new ContainerEncoder(EntropyCoderType.RANGE, 1000)
+				.encode(ArithmeticChannelsTest.data(3000, 5));
+
+		ArithmeticPushDecoder decoder = new ArithmeticPushDecoder();
+		decoder.feed(compressed, 0, compressed.length - 1);
+		decoder.end_of_input();
+
+		byte[] decoded = new byte[3000];
+		for (;;) {
+			decoder.decode(decoded, 0, decoded.length);
+		}
+	}
+
+	static byte[] push_decode(byte[] compressed, Random rng) {
+		ArithmeticPushDecoder decoder = new ArithmeticPushDecoder();
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		byte[] buf = new byte[300];
+		ByteBuffer piece = ByteBuffer.allocate(1000);
+
+		int pos = 0;
+		for (;;) {
+			if (pos < compressed.length) {
+				int n = Math.min(compressed.length - pos, rng.nextBoolean() ? 1 : rng.nextInt(1000));
+				piece.clear();
+				piece.put(compressed, pos, n);
+				piece.flip();
+				decoder.feed(piece);
+				pos += n;
+				if (pos == compressed.length) {
+					decoder.end_of_input();
+				}
+			}
+
+			int n = decoder.decode(buf, 0, 1 + rng.nextInt(buf.length));
+			if (n < 0) {
+				break;
+			}
+			decoded.write(buf, 0, n);
+		}
+
+		return decoded.toByteArray();
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void corruptModelTest() {
+		decode_all(ContainerTest.zero_model_container(10));
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void corruptBlockModelTest() {
+		decode_all(ContainerTest.zero_block_model_container());
+	}
+
+	private static void decode_all(byte[] compressed) {
+		ArithmeticPushDecoder decoder = new ArithmeticPushDecoder();
+		decoder.feed(compressed, 0, compressed.length);
+		decoder.end_of_input();
+
+		byte[] buf = new byte[1000];
+		while (decoder.decode(buf, 0, buf.length) >= 0) {
+		}
+	}
+}
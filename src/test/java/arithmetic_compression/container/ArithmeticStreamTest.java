@@ -0,0 +1,200 @@
+package arithmetic_compression.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+
+public class ArithmeticStreamTest {
+
+	@Test
+	public void roundTripTest() throws IOException {
+		Random rng = new Random(0);
+
+		for (int len : new int[]{0, 1, 999, 1000, 1001, 25000}) {
+			byte[] data = new byte[len];
+			for (int i = 0; i < len; i++) {
+				data[i] = (byte) (rng.nextGaussian() * 5);
+			}
+
+			byte[] compressed = compress(data, 1000, rng);
+			assertArrayEquals("len " + len, data, decompress(compressed, rng));
+		}
+	}
+
+	/**
+	 * Several streams back to back, the decompressor must not read beyond the
+	 * end of a chunk.
+	 */
+	@Test
+	public void finishTest() throws IOException {
+		byte[] data = new byte[3000];
+		new Random(1).nextBytes(data);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ArithmeticCompressorOutputStream out = new ArithmeticCompressorOutputStream(bytes,
+				EntropyCoderType.ARITHMETIC, 1024);
+		out.write(data, 0, 1500);
+		out.finish();
+		int first_len = bytes.size();
+		out.write(data, 1500, 1500);
+		out.close();
+
+		InputStream in = new ArithmeticDecompressorInputStream(
+				new ByteArrayInputStream(bytes.toByteArray(), 0, first_len));
+		byte[] first = new byte[1500];
+		assertEquals(1500, read_up_to(in, first));
+		assertEquals(-1, in.read());
+
+		assertArrayEquals(data, decompress(bytes.toByteArray(), new Random(2)));
+	}
+
+	@Test(expected = EOFException.class)
+	public void truncatedTest() throws IOException {
+		byte[] data = new byte[3000];
+		new Random(3).nextBytes(data);
+		byte[] compressed = compress(data, 1000, new Random(4));
+
+		decompress(Arrays.copyOf(compressed, compressed.length - 1), new Random(5));
+	}
+
+	@Test(expected = IOException.class)
+	public void corruptTest() throws IOException {
+		byte[] compressed = compress(new byte[100], 1000, new Random(6));
+		compressed[1]++;
+
+		decompress(compressed, new Random(7));
+	}
+
+	@Test(expected = IOException.class)
+	public void corruptModelTest() throws IOException {
+		byte[] compressed = ContainerTest.zero_model_container(10);
+
+		new ArithmeticDecompressorInputStream(new ByteArrayInputStream(compressed)).read();
+	}
+
+	/**
+	 * Fails as corrupt before allocating the block of about 2 GB the block
+	 * table claims, rather than as truncated after it.
+	 */
+	@Test
+	public void forgedBlockTableTest() {
+		byte[] compressed = ContainerTest.forged_block_table_container();
+
+		try {
+			new ArithmeticDecompressorInputStream(new ByteArrayInputStream(compressed)).read();
+			fail();
+		} catch (IOException e) {
+			assertFalse(e.toString(), e instanceof EOFException);
+		}
+	}
+
+	/**
+	 * Fails without allocating the block table of 512 MiB the header claims.
+	 */
+	@Test(expected = EOFException.class)
+	public void hugeBlockTableTest() throws IOException {
+		byte[] compressed = ContainerTest.huge_block_table_header();
+
+		new ArithmeticDecompressorInputStream(new ByteArrayInputStream(compressed)).read();
+	}
+
+	/**
+	 * Reading after close() fails even while decoded bytes are buffered.
+	 */
+	@Test
+	public void closedTest() throws IOException {
+		byte[] compressed = compress(new byte[100], 1000, new Random(8));
+
+		InputStream in = new ArithmeticDecompressorInputStream(new ByteArrayInputStream(compressed));
+		in.read();
+		in.close();
+
+		int failures = 0;
+		try {
+			in.read();
+		} catch (IOException e) {
+			failures++;
+		}
+		try {
+			in.read(new byte[10], 0, 10);
+		} catch (IOException e) {
+			failures++;
+		}
+		try {
+			in.skip(10);
+		} catch (IOException e) {
+			failures++;
+		}
+		assertEquals(3, failures);
+	}
+
+	/**
+	 * Writes data in randomly sized pieces, mixing single byte and array
+	 * writes.
+	 */
+	static byte[] compress(byte[] data, int chunk_size, Random rng) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream out = new ArithmeticCompressorOutputStream(bytes, EntropyCoderType.RANGE, chunk_size)) {
+			int pos = 0;
+			while (pos < data.length) {
+				if (rng.nextBoolean()) {
+					out.write(data[pos++]);
+				} else {
+					int n = Math.min(data.length - pos, rng.nextInt(3000));
+					out.write(data, pos, n);
+					pos += n;
+				}
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	static byte[] decompress(byte[] compressed, Random rng) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream in = new ArithmeticDecompressorInputStream(new ByteArrayInputStream(compressed))) {
+			byte[] buf = new byte[3000];
+			for (;;) {
+				if (rng.nextBoolean()) {
+					int b = in.read();
+					if (b < 0) {
+						break;
+					}
+					bytes.write(b);
+				} else {
+					int n = in.read(buf, 0, 1 + rng.nextInt(buf.length));
+					if (n < 0) {
+						break;
+					}
+					bytes.write(buf, 0, n);
+				}
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	static int read_up_to(InputStream in, byte[] b) throws IOException {
+		int total = 0;
+		while (total < b.length) {
+			int n = in.read(b, total, b.length - total);
+			if (n < 0) {
+				break;
+			}
+			total += n;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,329 @@
+package arithmetic_compression.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import arithmetic_compression.coder.arithmetic.EntropyCoderType;
+import arithmetic_compression.coder.arithmetic.SymbolProbabilityDistribution;
+import arithmetic_compression.io.ByteBufferBitInputStream;
+import arithmetic_compression.io.ByteBufferBitOutputStream;
+
+public class ContainerTest {
+
+	@Test
+	public void roundTripTest() {
+		Random rng = new Random(0);
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			for (int len : new int[]{0, 1, 1000, 12345}) {
+				for (int block_size : new int[]{1, 1000, ContainerFormat.DEFAULT_BLOCK_SIZE}) {
+					if (len / block_size > 2000) {
+						continue;
+					}
+
+					byte[] data = new byte[len];
+					for (int i = 0; i < len; i++) {
+						// skewed, and with unused symbols
+						data[i] = (byte) (rng.nextGaussian() * 10);
+					}
+
+					byte[] container = new ContainerEncoder(type, block_size).encode(data);
+
+					ContainerDecoder decoder = new ContainerDecoder(container);
+					assertEquals(type, decoder.coder_type());
+					assertEquals(len, decoder.symbol_count());
+					assertEquals(container.length, decoder.size());
+					assertArrayEquals(type + ", len " + len + ", block_size " + block_size, data, decoder.decode());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void parallelTest() {
+		Random rng = new Random(4);
+
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++) {
+			// statistics changing from block to block
+			data[i] = (byte) (rng.nextGaussian() * (1 + i / 10000));
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (boolean block_models : new boolean[]{false, true}) {
+				ContainerEncoder encoder = new ContainerEncoder(EntropyCoderType.RANGE, 7000, block_models);
+
+				byte[] sequential = encoder.encode(data, 0, data.length);
+				byte[] parallel = encoder.encode(data, 0, data.length, pool);
+				assertArrayEquals(sequential, parallel);
+
+				ContainerDecoder decoder = new ContainerDecoder(parallel);
+				assertEquals(block_models, decoder.block_models());
+				assertArrayEquals(data, decoder.decode(pool));
+				assertArrayEquals(data, decoder.decode());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void blockModelsTest() {
+		byte[] data = new byte[20000];
+		// first block a single symbol, second one random
+		new Random(5).nextBytes(data);
+		java.util.Arrays.fill(data, 0, 10000, (byte) 3);
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			byte[] container = new ContainerEncoder(type, 10000, true).encode(data);
+			assertArrayEquals(type.toString(), data, new ContainerDecoder(container).decode());
+		}
+	}
+
+	@Test
+	public void singleSymbolTest() {
+		byte[] data = new byte[5000];
+		java.util.Arrays.fill(data, (byte) 7);
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			byte[] container = new ContainerEncoder(type, 1024).encode(data);
+			assertArrayEquals(type.toString(), data, new ContainerDecoder(container).decode());
+		}
+	}
+
+	/**
+	 * The container must be decodable from within a larger buffer, without
+	 * touching the bytes after it.
+	 */
+	@Test
+	public void embeddedTest() {
+		byte[] data = new byte[3000];
+		new Random(1).nextBytes(data);
+
+		byte[] container = new ContainerEncoder(EntropyCoderType.RANGE, 1000).encode(data);
+		byte[] buf = new byte[container.length + 20];
+		java.util.Arrays.fill(buf, (byte) 0x5a);
+		System.arraycopy(container, 0, buf, 10, container.length);
+
+		ContainerDecoder decoder = new ContainerDecoder(buf, 10, buf.length - 10);
+		assertEquals(container.length, decoder.size());
+		assertArrayEquals(data, decoder.decode());
+	}
+
+	@Test
+	public void distributionTest() {
+		Random rng = new Random(2);
+
+		int[] count = new int[300];
+		for (int i = 0; i < count.length; i++) {
+			switch (rng.nextInt(4)) {
+			case 0:
+				count[i] = 0;
+				break;
+			case 1:
+				count[i] = 1;
+				break;
+			default:
+				count[i] = rng.nextInt(1 << rng.nextInt(23));
+			}
+		}
+		count[0] = 1 << 30;
+
+		byte[] buf = new byte[4096];
+		ByteBufferBitOutputStream sink = new ByteBufferBitOutputStream(buf, 0, buf.length);
+		new DistributionSerializer().write(new SymbolProbabilityDistribution(count), sink);
+		sink.flushAll();
+		int size = sink.buffer().position();
+
+		SymbolProbabilityDistribution dist = new DistributionSerializer()
+				.read(new ByteBufferBitInputStream(buf, 0, size));
+		assertEquals(count.length, dist.symbol_count());
+		for (int i = 0; i < count.length; i++) {
+			assertEquals(count[i], dist.count(i));
+		}
+	}
+
+	@Test
+	public void compactDistributionTest() {
+		// a smooth histogram as typical for residuals
+		int[] count = new int[256];
+		for (int i = 0; i < count.length; i++) {
+			count[i] = (int) (1000000 * Math.exp(-i / 8.0));
+		}
+
+		byte[] model = ContainerEncoder.encode_model(new SymbolProbabilityDistribution(count));
+		assertTrue("model size " + model.length, model.length < 512);
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void wrongMagicTest() {
+		byte[] container = new ContainerEncoder(EntropyCoderType.RANGE).encode(new byte[100]);
+		container[0] ^= 1;
+		new ContainerDecoder(container);
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void truncatedTest() {
+		byte[] data = new byte[1000];
+		new Random(3).nextBytes(data);
+		byte[] container = new ContainerEncoder(EntropyCoderType.RANGE, 100).encode(data);
+		new ContainerDecoder(container, 0, container.length - 1);
+	}
+
+	@Test
+	public void coderTypeIdTest() {
+		// stored in existing containers, so these must never change
+		EntropyCoderType[] types = { EntropyCoderType.ARITHMETIC, EntropyCoderType.ARITHMETIC_64,
+				EntropyCoderType.RANGE, EntropyCoderType.RANS, EntropyCoderType.RANS_X4, EntropyCoderType.RANS_X8 };
+		assertEquals(types.length, EntropyCoderType.values().length);
+
+		for (int id = 0; id < types.length; id++) {
+			assertEquals(id, types[id].format_id());
+			assertEquals(types[id], EntropyCoderType.from_format_id(id));
+
+			byte[] container = new ContainerEncoder(types[id]).encode(new byte[] { 1, 2, 3 });
+			assertEquals(id, container[5]);
+		}
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void unknownCoderTypeTest() {
+		byte[] container = new ContainerEncoder(EntropyCoderType.RANGE).encode(new byte[100]);
+		container[5] = (byte) 200;
+		new ContainerDecoder(container);
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void zeroModelTest() {
+		new ContainerDecoder(zero_model_container(10));
+	}
+
+	@Test
+	public void zeroModelNoSymbolsTest() {
+		assertEquals(0, new ContainerDecoder(zero_model_container(0)).decode().length);
+	}
+
+	@Test(expected = ContainerFormatException.class)
+	public void zeroBlockModelTest() {
+		new ContainerDecoder(zero_block_model_container()).decode();
+	}
+
+	@Test
+	public void corruptBlockTest() {
+		// skewed, so that the models have rare symbols as well as frequent ones
+		Random rng = new Random(4);
+		byte[] data = new byte[3000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (rng.nextGaussian() * 8);
+		}
+
+		for (EntropyCoderType type : EntropyCoderType.values()) {
+			byte[] container = new ContainerEncoder(type, 1000).encode(data);
+			ByteBuffer buf = ByteBuffer.wrap(container).order(ByteOrder.LITTLE_ENDIAN);
+			int last_block_size = buf.getInt((int) ContainerFormat.prefix_size(buf, 0) - 4);
+			int last_block = container.length - last_block_size;
+
+			for (int trial = 0; trial < 300; trial++) {
+				byte[] corrupt = container.clone();
+				for (int i = 0; i < 8; i++) {
+					corrupt[last_block + rng.nextInt(last_block_size)] ^= 1 + rng.nextInt(255);
+				}
+
+				// the output may be wrong, but anything else than a
+				// ContainerFormatException fails the test
+				try {
+					new ContainerDecoder(corrupt).decode();
+				} catch (ContainerFormatException e) {
+					assertTrue(type + ": " + e.getMessage(), e.getMessage().startsWith("block 2 "));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a container of symbol_count symbols, of which the model has all
+	 * counts 0, with one block of 8 bytes if symbol_count > 0.
+	 */
+	static byte[] zero_model_container(long symbol_count) {
+		byte[] model = ContainerEncoder.encode_model(new SymbolProbabilityDistribution(new int[256]));
+		int block_count = (symbol_count > 0) ? 1 : 0;
+
+		ByteBuffer buf = ByteBuffer.allocate(ContainerFormat.HEADER_SIZE + model.length + block_count * (4 + 8))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(ContainerFormat.MAGIC);
+		buf.put((byte) ContainerFormat.VERSION);
+		buf.put((byte) EntropyCoderType.ARITHMETIC.format_id());
+		buf.putShort((short) 0);
+		buf.putLong(symbol_count);
+		buf.putInt(ContainerFormat.DEFAULT_BLOCK_SIZE);
+		buf.putInt(model.length);
+		buf.put(model);
+		if (block_count > 0) {
+			buf.putInt(8);
+		}
+
+		return buf.array();
+	}
+
+	/**
+	 * Returns a container of a few bytes whose block table claims a block of
+	 * 0x7f000000 bytes.
+	 */
+	static byte[] forged_block_table_container() {
+		byte[] data = new byte[20];
+		new Random(5).nextBytes(data);
+		byte[] container = new ContainerEncoder(EntropyCoderType.RANGE).encode(data);
+
+		ByteBuffer buf = ByteBuffer.wrap(container).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt((int) ContainerFormat.prefix_size(buf, 0) - 4, 0x7f000000);
+
+		return container;
+	}
+
+	/**
+	 * Returns the header of a container of 1 << 27 blocks of 1 symbol, whose
+	 * block table of 512 MiB doesn't follow.
+	 */
+	static byte[] huge_block_table_header() {
+		ByteBuffer buf = ByteBuffer.allocate(ContainerFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(ContainerFormat.MAGIC);
+		buf.put((byte) ContainerFormat.VERSION);
+		buf.put((byte) EntropyCoderType.RANGE.format_id());
+		buf.putShort((short) ContainerFormat.FLAG_BLOCK_MODELS);
+		buf.putLong(1 << 27);
+		buf.putInt(1);
+		buf.putInt(0);
+
+		return buf.array();
+	}
+
+	/**
+	 * Returns a container with block models, of which the model of the first
+	 * block has all counts 0.
+	 */
+	static byte[] zero_block_model_container() {
+		byte[] data = new byte[100];
+		new Random(4).nextBytes(data);
+		byte[] container = new ContainerEncoder(EntropyCoderType.RANGE, 1000, true).encode(data);
+
+		// replace the block model, the coded data stays where it is
+		byte[] zero_model = ContainerEncoder.encode_model(new SymbolProbabilityDistribution(new int[256]));
+		ByteBuffer buf = ByteBuffer.wrap(container).order(ByteOrder.LITTLE_ENDIAN);
+		int block_pos = ContainerFormat.HEADER_SIZE + 4;
+		int model_size = buf.getInt(block_pos);
+		assertTrue(zero_model.length <= model_size);
+		buf.position(block_pos + 4);
+		buf.put(zero_model);
+
+		return container;
+	}
+}